@@ -53,16 +53,20 @@ public class Compiler {
         ErrorTable errorTable = new ErrorTable();
         // Stage1 词法分析
         // 创建Lexer -> 得到TokenStream -> [输出TokenStream]
-        Lexer lexer = new Lexer(sourceCode.reader(), errorTable);
+        long lexerStart = System.nanoTime();
+        Lexer lexer = new Lexer(sourceCode, errorTable);
         TokenStream tokenStream = lexer.getTokenStream();
+        dumpStageTime("Lexer", lexerStart, sourceCode.byteSize());
         errorHandle(1, errorTable);
         if (Config.dumpTokenStream) {
-            DumpTokenStream.dump(tokenStream.getArrayList());
+            DumpTokenStream.dump(tokenStream);
         }
         tryContinue(1);
         // Stage2 语法分析
         // 创建CompUnit(AST) -> [输出CompUnit(AST)]
+        long parserStart = System.nanoTime();
         CompUnit compUnit = new CompUnit(tokenStream);
+        dumpStageTime("Parser", parserStart, 0);
         errorHandle(2, errorTable);
         if (Config.dumpAST) {
             DumpAST.dump(compUnit);
@@ -70,8 +74,10 @@ public class Compiler {
         tryContinue(2);
         // Stage3 语义分析
         // 创建Visitor -> 得到Module -> 错误处理 -> [输出符号表]
+        long visitorStart = System.nanoTime();
         Visitor visitor = new Visitor(compUnit, errorTable);
         IRModule irModule = visitor.visitCompUnit();
+        dumpStageTime("Visitor", visitorStart, 0);
         errorHandle(3, errorTable);
         if (Config.dumpSymbolTable) {
             DumpSymbolTable.dump(visitor.getSymbolTable());
@@ -92,8 +98,10 @@ public class Compiler {
             DumpLLVM.dump(irModule, Config.dumpLLVMBeforeOptimizedFileName);
         }
         // Stage4 中端优化
+        long optimizerStart = System.nanoTime();
         Optimizer optimizer = new Optimizer(irModule);
         optimizer.optimize();
+        dumpStageTime("Optimizer", optimizerStart, 0);
         // [输出优化后的LLVM]
         if (Config.dumpLLVMAfterOptimized) {
             DumpLLVM.dump(irModule, Config.dumpLLVMAfterOptimizedFileName);
@@ -105,6 +113,7 @@ public class Compiler {
     private static void backend(IRModule irModule) throws IOException {
         // Stage5 目标代码生成
         // 创建Generator -> 得到TargetModule(未分配寄存器) -> 创建Allocator -> 得到TargetModule(已分配寄存器) -> [输出TargetModule]
+        long backendStart = System.nanoTime();
         Generator generator = new Generator(irModule);
         TargetModule targetModule = generator.generateTargetModule();
         if (Config.dumpMIPSAssemblyBeforeAllocation) {
@@ -117,12 +126,25 @@ public class Compiler {
             BasicAllocator basicAllocator = new BasicAllocator(targetModule);
             basicAllocator.allocRegister();
         }
+        dumpStageTime("Backend", backendStart, 0);
         if (Config.dumpMIPSAssemblyAfterAllocation) {
             DumpMIPSAssembly.dump(targetModule, Config.dumpMIPSAssemblyAfterAllocationFileName);
         }
         tryContinue(5);
     }
 
+    // 输出阶段耗时，若给出了处理的字节数则同时输出吞吐量
+    private static void dumpStageTime(String stage, long startNanos, long bytes) {
+        if (Config.dumpStageTime) {
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            if (bytes > 0) {
+                System.err.printf("[%s] %.3f ms, %.2f MB/s%n", stage, seconds * 1e3, bytes / 1048576.0 / seconds);
+            } else {
+                System.err.printf("[%s] %.3f ms%n", stage, seconds * 1e3);
+            }
+        }
+    }
+
     private static void errorHandle(int nowStage, ErrorTable errorTable) throws IOException {
         if (nowStage >= Config.stages && errorTable.notEmpty()) {
             DumpErrorTable.dump(errorTable);
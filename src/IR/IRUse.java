@@ -0,0 +1,45 @@
+package IR;
+
+// 一次使用对应一个IRUse，是user的第operandNo个操作数到value的边
+// 同一个value的所有IRUse串成侵入式的双向链表，替换与删除只需修改链表指针
+public final class IRUse {
+    private final IRUser<?> user;
+    private final int operandNo;
+    private IRValue<?> value;
+    // value的使用链表中的前后节点
+    IRUse pred;
+    IRUse next;
+
+    IRUse(IRUser<?> user, int operandNo, IRValue<?> value) {
+        this.user = user;
+        this.operandNo = operandNo;
+        this.value = value;
+        this.pred = null;
+        this.next = null;
+        value.addUse(this);
+    }
+
+    public IRUser<?> user() {
+        return user;
+    }
+
+    public int operandNo() {
+        return operandNo;
+    }
+
+    public IRValue<?> value() {
+        return value;
+    }
+
+    // 将这次使用改为使用newValue
+    public void set(IRValue<?> newValue) {
+        this.value.removeUse(this);
+        this.value = newValue;
+        newValue.addUse(this);
+    }
+
+    // 从value的使用链表中断开，此后这次使用不再被value记录，重复调用没有影响
+    void drop() {
+        this.value.removeUse(this);
+    }
+}
@@ -3,11 +3,10 @@ package IR;
 import IR.type.IRType;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 public abstract class IRUser<T extends IRType> extends IRValue<T> {
     // 在Sysy中，User的子类仅限于Instruction
-    private final ArrayList<IRValue<?>> operands;
+    private final ArrayList<IRUse> operands;
 
     public IRUser(T type) {
         super(type);
@@ -15,8 +14,12 @@ public abstract class IRUser<T extends IRType> extends IRValue<T> {
     }
 
     protected void addOperand(IRValue<?> operand) {
-        this.operands.add(operand);
-        operand.addUser(this);
+        this.operands.add(new IRUse(this, this.operands.size(), operand));
+    }
+
+    // 删除最后一个操作数，IRUse记录了操作数的序号，只能从末尾删除
+    protected void removeLastOperand() {
+        this.operands.remove(this.operands.size() - 1).drop();
     }
 
     public int getNumOperands() {
@@ -24,17 +27,30 @@ public abstract class IRUser<T extends IRType> extends IRValue<T> {
     }
 
     public IRValue<?> getOperand(int index) {
+        return this.operands.get(index).value();
+    }
+
+    public IRUse getOperandUse(int index) {
         return this.operands.get(index);
     }
 
+    public void setOperand(int index, IRValue<?> operand) {
+        this.operands.get(index).set(operand);
+    }
+
     // 将所有对于某个operand的使用进行替换
     public void replaceUsesOfWith(IRValue<?> operand, IRValue<?> replacement) {
-        for (int i = 0; i < operands.size(); i++) {
-            if (Objects.equals(operands.get(i), operand)) {
-                this.operands.set(i, replacement);
-                replacement.addUser(this);
-                operand.removeUser(this);
+        for (IRUse use : this.operands) {
+            if (use.value() == operand) {
+                use.set(replacement);
             }
         }
     }
+
+    // WARNING 调用本方法后该User必须被移除
+    public void dropAllOperands() {
+        for (IRUse use : this.operands) {
+            use.drop();
+        }
+    }
 }
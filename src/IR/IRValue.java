@@ -2,24 +2,33 @@ package IR;
 
 import IR.type.IRType;
 
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 public abstract class IRValue<T extends IRType> {
     protected final String name;
     protected final T type;
-    protected final HashSet<IRUser<?>> users;
+    // 使用该Value的IRUse组成的双向链表，同一个User使用多次时对应多个IRUse
+    private IRUse useHead;
+    private int useCount;
+    // 函数内的稠密编号，由IRFunction.renumber()给出，-1表示没有编号
+    private int number;
 
     // 匿名初始化
     public IRValue(T type) {
         this.name = null;
         this.type = type;
-        this.users = new HashSet<>();
+        this.useHead = null;
+        this.useCount = 0;
+        this.number = -1;
     }
 
     public IRValue(String name, T type) {
         this.name = name;
         this.type = type;
-        this.users = new HashSet<>();
+        this.useHead = null;
+        this.useCount = 0;
+        this.number = -1;
     }
 
     @SuppressWarnings("unchecked")
@@ -36,20 +45,78 @@ public abstract class IRValue<T extends IRType> {
         return type;
     }
 
-    public HashSet<IRUser<?>> users() {
-        return users;
+    // 迭代时可以修改当前的IRUse（如set()），不影响之后的迭代
+    public Iterable<IRUse> uses() {
+        return () -> new Iterator<>() {
+            private IRUse next = IRValue.this.useHead;
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            public IRUse next() {
+                if (this.next == null) {
+                    throw new NoSuchElementException();
+                }
+                IRUse current = this.next;
+                this.next = current.next;
+                return current;
+            }
+        };
+    }
+
+    public int number() {
+        return number;
+    }
+
+    public void setNumber(int number) {
+        this.number = number;
+    }
+
+    public int useCount() {
+        return useCount;
+    }
+
+    public boolean isUsed() {
+        return this.useHead != null;
     }
 
-    public void addUser(IRUser<?> user) {
-        this.users.add(user);
+    // 并行生成各函数时，全局变量、函数等Value会被多个线程同时使用
+    protected synchronized void addUse(IRUse use) {
+        use.pred = null;
+        use.next = this.useHead;
+        if (this.useHead != null) {
+            this.useHead.pred = use;
+        }
+        this.useHead = use;
+        this.useCount++;
     }
 
-    public void removeUser(IRUser<?> user) {
-        this.users.remove(user);
+    // 已经断开的IRUse不在链表中，再次删除时直接返回，否则会把useHead置为null，丢失其他的使用
+    protected synchronized void removeUse(IRUse use) {
+        if (use.pred == null && this.useHead != use) {
+            return;
+        }
+        if (use.pred != null) {
+            use.pred.next = use.next;
+        } else {
+            this.useHead = use.next;
+        }
+        if (use.next != null) {
+            use.next.pred = use.pred;
+        }
+        use.pred = null;
+        use.next = null;
+        this.useCount--;
     }
 
     public void replaceAllUsesWith(IRValue<?> value) {
-        HashSet<IRUser<?>> tempUser = new HashSet<>(this.users);
-        tempUser.forEach(user -> user.replaceUsesOfWith(this, value));
+        if (value != this) {
+            while (this.useHead != null) {
+                this.useHead.set(value);
+            }
+        }
     }
 }
@@ -10,6 +10,7 @@ public record ArrayType(
 ) implements IRType, SymbolType.Var, SymbolType.Const {
     // 数组类型，在SysY中只有一维数组，数组元素的类型只有IntegerType，并且只能为int和char
     // 数组类型可以作为符号表中变量符号和常量符号的登记类型
+    // 需使用IRType.getArrayTy()获得唯一化的实例
 
     @Override
     public String displayStr() {
@@ -30,8 +30,22 @@ public interface IRType {
         return IntegerType.Int.INSTANCE;
     }
 
+    // 获得唯一化的类型，结构相同时返回同一个对象
+    static ArrayType getArrayTy(IRType elementType, int numElements) {
+        return TypeTable.arrayType(elementType, numElements);
+    }
+
+    static PointerType getPointerTy(IRType referenceType) {
+        return TypeTable.pointerType(referenceType, false);
+    }
+
+    static PointerType getPointerTy(IRType referenceType, boolean arrayDecay) {
+        return TypeTable.pointerType(referenceType, arrayDecay);
+    }
+
     // 两种类型是否相等
+    // 类型都是唯一化的，相等的类型通常是同一个对象，只有arrayDecay不同的PointerType需要按结构比较
     static boolean isEqual(IRType type1, IRType type2) {
-        return Objects.equals(type1, type2);
+        return type1 == type2 || Objects.equals(type1, type2);
     }
 }
@@ -11,10 +11,7 @@ public record PointerType(
 ) implements IRType, SymbolType.Arg {
     // 指针类型，在SysY中没有定义指针类型，但是在函数参数和左值转换中一维数组会退化为指针类型。同时全局变量，alloca的类型也是对应类型的指针类型
     // 指针类型可以作为符号表中参数符号的登记类型
-
-    public PointerType(IRType referenceType) {
-        this(referenceType, false);
-    }
+    // 需使用IRType.getPointerTy()获得唯一化的实例
 
     @Override
     public String displayStr() {
@@ -0,0 +1,36 @@
+package IR.type;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// 可以任意创建的类型（ArrayType、PointerType）的唯一化表，结构相同的类型是同一个对象
+// 组成类型本身也是唯一的，所以Key按照引用比较组成类型；并行生成各函数时会被多个线程同时使用
+final class TypeTable {
+    private record Key(IRType component, int extra) {
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key otherKey && this.component == otherKey.component && this.extra == otherKey.extra;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.component) * 31 + this.extra;
+        }
+    }
+
+    private static final ConcurrentHashMap<Key, ArrayType> arrayTypes = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Key, PointerType> pointerTypes = new ConcurrentHashMap<>();
+
+    static ArrayType arrayType(IRType elementType, int numElements) {
+        return arrayTypes.computeIfAbsent(new Key(elementType, numElements),
+                key -> new ArrayType(elementType, numElements));
+    }
+
+    // arrayDecay只影响语义分析的输出，但仍然区分为两个对象
+    static PointerType pointerType(IRType referenceType, boolean arrayDecay) {
+        return pointerTypes.computeIfAbsent(new Key(referenceType, arrayDecay ? 1 : 0),
+                key -> new PointerType(referenceType, arrayDecay));
+    }
+
+    private TypeTable() {
+    }
+}
@@ -4,72 +4,90 @@ import IR.IRValue;
 import IR.type.IRType;
 import IR.type.LabelType;
 import IR.value.instruction.IRInstruction;
+import IR.value.instruction.PHINode;
 import global.Config;
 import util.DoublyLinkedList;
 import util.LLVMStrRegCounter;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 
 public class IRBasicBlock extends IRValue<LabelType> {
     private final DoublyLinkedList<IRInstruction<?>> instructions;
 
-    // 前驱基本块
-    private final HashSet<IRBasicBlock> predecessors;
-    // 后继基本块
-    private final HashSet<IRBasicBlock> successors;
-    // 严格支配者
-    private final HashSet<IRBasicBlock> dominators;
-    // 严格支配的基本块
-    private final HashSet<IRBasicBlock> dominating;
-    // 直接支配者
-    private IRBasicBlock immediateDominator;
-    // 直接支配的基本块
-    private final HashSet<IRBasicBlock> immediateDominating;
-    // 支配边界
-    private final HashSet<IRBasicBlock> dominanceFrontiers;
+    // CFG信息在GenerateCFG之后才有，只在需要时分配；支配信息由pass.analyzer.DominatorTree保存，不再放在基本块中
+    // 后继基本块，至多两个，使用不可变的List保存，没有后继时为共享的空List
+    private List<IRBasicBlock> successors;
+    // 前驱基本块，第一次加入前驱时才分配
+    private ArrayList<IRBasicBlock> predecessors;
 
     public IRBasicBlock() {
         super(IRType.getLabelTy());
         this.instructions = new DoublyLinkedList<>();
-        this.predecessors = new HashSet<>();
-        this.successors = new HashSet<>();
-        this.dominators = new HashSet<>();
-        this.dominating = new HashSet<>();
-        this.immediateDominator = null;
-        this.immediateDominating = new HashSet<>();
-        this.dominanceFrontiers = new HashSet<>();
+        this.successors = List.of();
+        this.predecessors = null;
     }
 
     public DoublyLinkedList<IRInstruction<?>> instructions() {
         return instructions;
     }
 
-    public HashSet<IRBasicBlock> predecessors() {
-        return predecessors;
+    // WARNING 返回的List不得修改，需使用addSuccessor()与removeSuccessor()维护CFG
+    public List<IRBasicBlock> predecessors() {
+        return this.predecessors == null ? List.of() : this.predecessors;
     }
 
-    public HashSet<IRBasicBlock> successors() {
+    // WARNING 返回的List不得修改，需使用addSuccessor()与removeSuccessor()维护CFG
+    public List<IRBasicBlock> successors() {
         return successors;
     }
 
-    public HashSet<IRBasicBlock> dominators() {
-        return dominators;
-    }
-
-    public HashSet<IRBasicBlock> dominating() {
-        return dominating;
+    // 加入一条到successor的边，同时维护successor的前驱，重复的边只记录一次
+    public void addSuccessor(IRBasicBlock successor) {
+        if (this.successors.contains(successor)) {
+            return;
+        } else if (this.successors.isEmpty()) {
+            this.successors = List.of(successor);
+        } else if (this.successors.size() == 1) {
+            this.successors = List.of(this.successors.get(0), successor);
+        } else {
+            throw new RuntimeException("When addSuccessor(), a basic block can have at most 2 successors");
+        }
+        if (successor.predecessors == null) {
+            successor.predecessors = new ArrayList<>(2);
+        }
+        successor.predecessors.add(this);
     }
 
-    public IRBasicBlock immediateDominator() {
-        return immediateDominator;
+    // 删除到successor的边，同时维护successor的前驱
+    public void removeSuccessor(IRBasicBlock successor) {
+        if (this.successors.size() == 1 && this.successors.get(0) == successor) {
+            this.successors = List.of();
+        } else if (this.successors.size() == 2 && this.successors.get(0) == successor) {
+            this.successors = List.of(this.successors.get(1));
+        } else if (this.successors.size() == 2 && this.successors.get(1) == successor) {
+            this.successors = List.of(this.successors.get(0));
+        } else {
+            throw new RuntimeException("When removeSuccessor(), " + successor + " is not a successor");
+        }
+        successor.predecessors.remove(this);
     }
 
-    public HashSet<IRBasicBlock> immediateDominating() {
-        return immediateDominating;
+    // 删除所有PHI来自incomingBlock的入边，删除到该基本块的边时使用
+    public void removePhiIncoming(IRBasicBlock incomingBlock) {
+        for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : this.instructions) {
+            if (instructionNode.value() instanceof PHINode phiNode) {
+                phiNode.removeIncoming(incomingBlock);
+            } else {
+                break;
+            }
+        }
     }
 
-    public HashSet<IRBasicBlock> dominanceFrontiers() {
-        return dominanceFrontiers;
+    // 清除该基本块记录的前驱与后继，不维护其他基本块，只用于重新生成整个函数的CFG
+    public void clearCFG() {
+        this.successors = List.of();
+        this.predecessors = null;
     }
 
     public void pushInstruction(IRInstruction<?> instruction) {
@@ -80,10 +98,6 @@ public class IRBasicBlock extends IRValue<LabelType> {
         this.instructions.insertAfterTail(instruction.listNode());
     }
 
-    public void setImmediateDominator(IRBasicBlock immediateDominator) {
-        this.immediateDominator = immediateDominator;
-    }
-
     public void eraseAllInstruction() {
         while (this.instructions.tail() != null) {
             this.instructions.tail().value().eliminate();
@@ -91,39 +105,26 @@ public class IRBasicBlock extends IRValue<LabelType> {
     }
 
     public String llvmStr(LLVMStrRegCounter counter) {
+        return this.llvmStr(counter, null);
+    }
+
+    // basicBlockDetail为函数附加的分析信息，可以为null
+    public String llvmStr(LLVMStrRegCounter counter, IRFunction.BasicBlockDetail basicBlockDetail) {
         StringBuilder sb = new StringBuilder();
         if (Config.dumpLLVMDetail) {
             sb.append("\t;preds: ");
-            for (IRBasicBlock predecessor : predecessors) {
+            for (IRBasicBlock predecessor : this.predecessors()) {
                 sb.append(counter.get(predecessor)).append(" ");
             }
             sb.append("\n");
             sb.append("\t;succs: ");
-            for (IRBasicBlock successor : successors) {
+            for (IRBasicBlock successor : this.successors) {
                 sb.append(counter.get(successor)).append(" ");
             }
             sb.append("\n");
-            sb.append("\t;dominators: ");
-            for (IRBasicBlock dominator : dominators) {
-                sb.append(counter.get(dominator)).append(" ");
+            if (basicBlockDetail != null) {
+                sb.append(basicBlockDetail.detailStr(this, counter));
             }
-            sb.append("\n");
-            sb.append("\t;dominating: ");
-            for (IRBasicBlock dominating : dominating) {
-                sb.append(counter.get(dominating)).append(" ");
-            }
-            sb.append("\n");
-            sb.append("\t;immediateDominator: ").append(counter.get(immediateDominator)).append("\n");
-            sb.append("\t;immediateDominating: ");
-            for (IRBasicBlock immediateDominating : immediateDominating) {
-                sb.append(counter.get(immediateDominating)).append(" ");
-            }
-            sb.append("\n");
-            sb.append("\t;dominanceFrontiers: ");
-            for (IRBasicBlock dominanceFrontier : dominanceFrontiers) {
-                sb.append(counter.get(dominanceFrontier)).append(" ");
-            }
-            sb.append("\n");
         }
         for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : this.instructions) {
             sb.append("\t").append(instructionNode.value().llvmStr(counter)).append("\n");
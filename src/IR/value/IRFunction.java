@@ -3,6 +3,8 @@ package IR.value;
 import IR.IRValue;
 import IR.type.FunctionType;
 import IR.type.IRType;
+import IR.value.instruction.IRInstruction;
+import util.DoublyLinkedList;
 import util.LLVMStrRegCounter;
 
 import java.util.ArrayList;
@@ -16,6 +18,16 @@ public class IRFunction extends IRValue<FunctionType> {
     private final ArrayList<Argument> arguments;
     private final LinkedList<IRBasicBlock> basicBlocks;
     private final boolean isLib;
+    // renumber()给出的Argument与指令的个数、基本块的个数
+    private int valueCount;
+    private int basicBlockCount;
+    // 输出LLVM时附加在各基本块前的分析信息，只在Config.dumpLLVMDetail时输出
+    private BasicBlockDetail basicBlockDetail = null;
+
+    // 由分析给出基本块的附加信息，使IR不依赖于具体的分析
+    public interface BasicBlockDetail {
+        String detailStr(IRBasicBlock basicBlock, LLVMStrRegCounter counter);
+    }
 
     public IRFunction(String name, FunctionType functionType) {
         super(name, functionType);
@@ -55,6 +67,11 @@ public class IRFunction extends IRValue<FunctionType> {
         return basicBlocks;
     }
 
+    // 开始基本块，即argBlock和defBlock之后的第一个基本块
+    public IRBasicBlock startBlock() {
+        return this.basicBlocks.get(2);
+    }
+
     public Iterator<IRBasicBlock> getIteratorFromStartBlock() {
         Iterator<IRBasicBlock> iterator = this.basicBlocks.iterator();
         // 跳过argBlock和defBlock
@@ -67,9 +84,49 @@ public class IRFunction extends IRValue<FunctionType> {
         this.basicBlocks.add(basicBlock);
     }
 
+    // 按程序顺序为Argument和指令编号0..valueCount-1，为基本块编号0..basicBlockCount-1
+    // 只需遍历一次函数，修改IR后重新调用即可，供DenseMap、DenseSet以编号为下标使用
+    public void renumber() {
+        if (this.isLib) {
+            return;
+        }
+        int valueNumber = 0;
+        for (Argument argument : this.arguments) {
+            argument.setNumber(valueNumber++);
+        }
+        int basicBlockNumber = 0;
+        for (IRBasicBlock basicBlock : this.basicBlocks) {
+            basicBlock.setNumber(basicBlockNumber++);
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : basicBlock.instructions()) {
+                instructionNode.value().setNumber(valueNumber++);
+            }
+        }
+        this.valueCount = valueNumber;
+        this.basicBlockCount = basicBlockNumber;
+    }
+
+    public int valueCount() {
+        return valueCount;
+    }
+
+    public int basicBlockCount() {
+        return basicBlockCount;
+    }
+
+    public void setBasicBlockDetail(BasicBlockDetail basicBlockDetail) {
+        this.basicBlockDetail = basicBlockDetail;
+    }
+
     public String llvmStr() {
         StringBuilder sb = new StringBuilder();
-        LLVMStrRegCounter counter = new LLVMStrRegCounter();
+        LLVMStrRegCounter counter;
+        if (this.isLib) {
+            counter = new LLVMStrRegCounter();
+        } else {
+            // 输出时pass都已结束，可以重新编号，使counter以编号为下标
+            this.renumber();
+            counter = new LLVMStrRegCounter(this.valueCount, this.basicBlockCount);
+        }
         if (this.isLib) {
             // 函数的声明
             sb.append("declare ");
@@ -103,11 +160,11 @@ public class IRFunction extends IRValue<FunctionType> {
                 sb.append(" {\n");
                 // 第一个基本块占用命名资源，但是不输出
                 counter.get(this.basicBlocks.get(0));
-                sb.append(this.basicBlocks.get(0).llvmStr(counter));
+                sb.append(this.basicBlocks.get(0).llvmStr(counter, this.basicBlockDetail));
                 for (int i = 1; i < this.basicBlocks.size(); i++) {
                     sb.append("\n");
                     sb.append(counter.get(this.basicBlocks.get(i)).substring(1)).append(":\n");
-                    sb.append(this.basicBlocks.get(i).llvmStr(counter));
+                    sb.append(this.basicBlocks.get(i).llvmStr(counter, this.basicBlockDetail));
                 }
                 sb.append("}\n");
             }
@@ -16,7 +16,7 @@ public class IRGlobalVariable extends IRValue<PointerType> {
                             boolean setConstant, boolean setPrivate,
                             IRConstant<?> initVals) {
         // 自动转为对应的指针类型，不需要在传入时包装为指针类型
-        super(name, new PointerType(type));
+        super(name, IRType.getPointerTy(type));
         this.isConstant = setConstant;
         this.isPrivate = setPrivate;
         // 进行传入类型与初始值的匹配检查
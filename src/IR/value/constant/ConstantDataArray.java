@@ -0,0 +1,61 @@
+package IR.value.constant;
+
+import IR.type.ArrayType;
+import IR.type.IRType;
+import IR.type.IntegerType;
+
+public class ConstantDataArray extends IRConstant<ArrayType> {
+    // 元素均为整数常量的数组，直接使用基本类型数组保存元素，不再为每个元素创建ConstantInt
+    // i8数组使用byte[]保存，i32数组使用int[]保存，另一个为null
+    private final byte[] byteElements;
+    private final int[] wordElements;
+
+    // 传入的elementValues不会被复制，调用者此后不得修改
+    public ConstantDataArray(ArrayType arrayType, int[] elementValues) {
+        super(arrayType);
+        // 检查类型是否匹配
+        if (arrayType.numElements() != elementValues.length) {
+            throw new RuntimeException("When ConstantDataArray(), number of elements mismatch. Got " + elementValues.length +
+                    ", expected " + arrayType.numElements());
+        } else if (IRType.isEqual(arrayType.elementType(), IRType.getInt8Ty())) {
+            this.byteElements = new byte[elementValues.length];
+            for (int i = 0; i < elementValues.length; i++) {
+                this.byteElements[i] = (byte) elementValues[i];
+            }
+            this.wordElements = null;
+        } else if (IRType.isEqual(arrayType.elementType(), IRType.getInt32Ty())) {
+            this.byteElements = null;
+            this.wordElements = elementValues;
+        } else {
+            throw new RuntimeException("When ConstantDataArray(), element type is invalid. Got " + arrayType.elementType() +
+                    ", expected i8 or i32");
+        }
+    }
+
+    public IntegerType elementType() {
+        // CAST 构造函数中已检查元素类型只能为i8或i32
+        return (IntegerType) this.type.elementType();
+    }
+
+    public int numElements() {
+        return this.type.numElements();
+    }
+
+    // 与ConstantInt一致，按位宽做符号扩展后的值
+    public int elementValue(int index) {
+        return this.byteElements != null ? this.byteElements[index] : this.wordElements[index];
+    }
+
+    @Override
+    public String llvmStr() {
+        String elementTypeStr = this.type.elementType().llvmStr() + " ";
+        StringBuilder sb = new StringBuilder(this.numElements() * (elementTypeStr.length() + 4) + 2);
+        sb.append("[");
+        for (int i = 0; i < this.numElements(); i++) {
+            sb.append(i > 0 ? ", " : "");
+            sb.append(elementTypeStr).append(this.elementValue(i));
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+}
@@ -3,17 +3,49 @@ package IR.value.constant;
 import IR.type.IRType;
 import IR.type.IntegerType;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 public class ConstantInt extends IRConstant<IntegerType> {
-    private final Integer constantValue;
+    // 整数常量是唯一化的，需使用ConstantInt.get()获得，类型与值相同的常量是同一个对象
+    // 常用的值预先创建在表中，其余的值放入并发的表中（并行生成各函数时会同时创建常量）
+    private static final int CACHED_I32_MIN = -128;
+    private static final int CACHED_I32_MAX = 1023;
+    private static final ConstantInt[] cachedI1 = createCache(IRType.getInt1Ty(), -1, 0);
+    private static final ConstantInt[] cachedI8 = createCache(IRType.getInt8Ty(), -128, 127);
+    private static final ConstantInt[] cachedI32 = createCache(IRType.getInt32Ty(), CACHED_I32_MIN, CACHED_I32_MAX);
+    private static final ConcurrentHashMap<Long, ConstantInt> uncachedConstants = new ConcurrentHashMap<>();
+
+    private final int constantValue;
 
     // 在多处需要使用到i32类型的0
     public static ConstantInt ZERO_I32() {
-        return new ConstantInt(IRType.getInt32Ty(), 0);
+        return get(IRType.getInt32Ty(), 0);
     }
 
-    public ConstantInt(IntegerType type, Integer constantValue) {
-        super(type);
-        // 针对位宽进行处理
+    public static ConstantInt get(IntegerType type, int constantValue) {
+        int normalizedValue = normalize(type, constantValue);
+        if (type == IRType.getInt1Ty()) {
+            return cachedI1[normalizedValue + 1];
+        } else if (type == IRType.getInt8Ty()) {
+            return cachedI8[normalizedValue + 128];
+        } else if (type == IRType.getInt32Ty() && normalizedValue >= CACHED_I32_MIN && normalizedValue <= CACHED_I32_MAX) {
+            return cachedI32[normalizedValue - CACHED_I32_MIN];
+        } else {
+            long key = ((long) type.getBitWidth() << 32) | (normalizedValue & 0xffffffffL);
+            return uncachedConstants.computeIfAbsent(key, k -> new ConstantInt(type, normalizedValue));
+        }
+    }
+
+    private static ConstantInt[] createCache(IntegerType type, int minValue, int maxValue) {
+        ConstantInt[] cache = new ConstantInt[maxValue - minValue + 1];
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new ConstantInt(type, minValue + i);
+        }
+        return cache;
+    }
+
+    // 针对位宽进行处理，按位宽截断后做符号扩展
+    private static int normalize(IntegerType type, int constantValue) {
         int integerBitWidth = type.getBitWidth();
         if (integerBitWidth < IRType.getInt32Ty().getBitWidth()) {
             int lowerMask = (1 << integerBitWidth) - 1;
@@ -21,18 +53,23 @@ public class ConstantInt extends IRConstant<IntegerType> {
             if ((lowerBit & (1 << (integerBitWidth - 1))) != 0) {
                 lowerBit = lowerBit | ~lowerMask;
             }
-            this.constantValue = lowerBit;
+            return lowerBit;
         } else {
-            this.constantValue = constantValue;
+            return constantValue;
         }
     }
 
-    public Integer constantValue() {
+    private ConstantInt(IntegerType type, int constantValue) {
+        super(type);
+        this.constantValue = constantValue;
+    }
+
+    public int constantValue() {
         return constantValue;
     }
 
     @Override
     public String llvmStr() {
-        return this.constantValue.toString();
+        return Integer.toString(this.constantValue);
     }
 }
@@ -1,6 +1,6 @@
 package IR.value.constant;
 
-import IR.IRUser;
+import IR.IRUse;
 import IR.IRValue;
 import IR.type.IRType;
 
@@ -15,7 +15,11 @@ public abstract class IRConstant<CT extends IRType> extends IRValue<CT> {
 
     // 对于Constant，即用即抛，不维护包括其的Use
     @Override
-    public void addUser(IRUser<?> user) {
+    protected void addUse(IRUse use) {
+    }
+
+    @Override
+    protected void removeUse(IRUse use) {
     }
 
     public abstract String llvmStr();
@@ -40,7 +40,7 @@ public class GetElementPtrInst extends IRInstruction<PointerType> {
             }
         }
         // 得到GetElementPtr得到的指针类型
-        return new PointerType(resultElementType);
+        return IRType.getPointerTy(resultElementType);
     }
 
     public IRValue<PointerType> getPointerOperand() {
@@ -32,16 +32,9 @@ public abstract class IRInstruction<IT extends IRType> extends IRUser<IT> {
         this.parent = parent;
     }
 
-    // WARNING 调用本方法后该指令必须被移除
-    public void dropAllOperands() {
-        for (int i = 0; i < this.getNumOperands(); i++) {
-            this.getOperand(i).removeUser(this);
-        }
-    }
-
     // WARNING 不得边迭代边调用本方法
     public void eliminate() {
-        if (this.users.isEmpty()) {
+        if (!this.isUsed()) {
             this.dropAllOperands();
             this.listNode.eliminate();
         } else {
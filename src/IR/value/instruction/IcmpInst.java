@@ -22,6 +22,41 @@ public class IcmpInst extends IRInstruction<IntegerType> {
             this.llvmStr = llvmStr;
         }
 
+        // 结果取反的谓词：!(a < b) 即 a >= b
+        public Predicate inverse() {
+            return switch (this) {
+                case EQ -> NE;
+                case NE -> EQ;
+                case GT -> LE;
+                case GE -> LT;
+                case LT -> GE;
+                case LE -> GT;
+            };
+        }
+
+        // 交换操作数后的谓词：a < b 即 b > a
+        public Predicate swapped() {
+            return switch (this) {
+                case EQ, NE -> this;
+                case GT -> LT;
+                case GE -> LE;
+                case LT -> GT;
+                case LE -> GE;
+            };
+        }
+
+        // 常量按位宽符号扩展保存，直接比较即为有符号比较
+        public boolean evaluate(int value1, int value2) {
+            return switch (this) {
+                case EQ -> value1 == value2;
+                case NE -> value1 != value2;
+                case GT -> value1 > value2;
+                case GE -> value1 >= value2;
+                case LT -> value1 < value2;
+                case LE -> value1 <= value2;
+            };
+        }
+
         @Override
         public String toString() {
             return this.llvmStr;
@@ -21,6 +21,32 @@ public class PHINode extends IRInstruction<IRType> {
         this.addOperand(basicBlock);
     }
 
+    // 删除来自basicBlock的值，最后一对操作数移到被删除的位置，其余操作数的序号不变
+    public void removeIncoming(IRBasicBlock basicBlock) {
+        for (int i = 0; i < this.getNumOperands(); i = i + 2) {
+            if (this.getOperand(i + 1) == basicBlock) {
+                int last = this.getNumOperands() - 2;
+                if (i != last) {
+                    this.setOperand(i, this.getOperand(last));
+                    this.setOperand(i + 1, this.getOperand(last + 1));
+                }
+                this.removeLastOperand();
+                this.removeLastOperand();
+                return;
+            }
+        }
+        throw new RuntimeException("When PHINode.removeIncoming(), the basic block is not an incoming block of the PHINode");
+    }
+
+    public IRValue<?> getIncomingValueForBlock(IRBasicBlock basicBlock) {
+        for (int i = 0; i < this.getNumOperands(); i = i + 2) {
+            if (this.getOperand(i + 1) == basicBlock) {
+                return this.getOperand(i);
+            }
+        }
+        throw new RuntimeException("When PHINode.getIncomingValueForBlock(), the basic block is not an incoming block of the PHINode");
+    }
+
     public ArrayList<Pair<IRBasicBlock, IRValue<?>>> getIncomingBlockValuePairs() {
         if (this.getNumOperands() % 2 == 0) {
             ArrayList<Pair<IRBasicBlock, IRValue<?>>> pairs = new ArrayList<>();
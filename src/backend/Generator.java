@@ -10,6 +10,7 @@ import backend.instruction.*;
 import backend.oprand.*;
 import backend.target.*;
 import global.Config;
+import util.DenseMap;
 import util.DoublyLinkedList;
 import util.Pair;
 
@@ -27,14 +28,14 @@ public class Generator {
     private final HashMap<IRFunction, Integer> syscallMap;
 
     // 存储一个函数内IR的BasicBlock与Target的BasicBlock之间的对应关系，在跳转指令处使用
-    private final HashMap<IRBasicBlock, TargetBasicBlock> basicBlockMap;
+    private final DenseMap<IRBasicBlock, TargetBasicBlock> basicBlockMap;
     // 存储一个函数内跳转到Target的BasicBlock与实际要跳转到的Label之间的对应关系，在处理PHI指令时记录，在跳转指令处使用
     private final HashMap<TargetBasicBlock, HashMap<TargetBasicBlock, TargetBasicBlock>> basicBlockBranchMap;
     // 存储一个函数内Target的BasicBlock中还未释放的消除PHI指令的Move，在跳转指令前释放
     private final HashMap<TargetBasicBlock, LinkedList<Pair<VirtualRegister, TargetOperand>>> basicBlockPhiCopies;
 
     // 存储一个函数内IR的Value与Target的Operand之间的对应关系
-    private final HashMap<IRValue<?>, TargetOperand> valueMap;
+    private final DenseMap<IRValue<?>, TargetOperand> valueMap;
 
     private final TargetModule targetModule;
 
@@ -44,10 +45,10 @@ public class Generator {
         this.globalVariableMap = new HashMap<>();
         this.functionMap = new HashMap<>();
         this.syscallMap = new HashMap<>();
-        this.basicBlockMap = new HashMap<>();
+        this.basicBlockMap = new DenseMap<>();
         this.basicBlockBranchMap = new HashMap<>();
         this.basicBlockPhiCopies = new HashMap<>();
-        this.valueMap = new HashMap<>();
+        this.valueMap = new DenseMap<>();
     }
 
     public TargetModule generateTargetModule() {
@@ -64,13 +65,18 @@ public class Generator {
 
     private TargetOperand valueToOperand(IRValue<?> irValue) {
         if (irValue instanceof ConstantInt constantInt) {
+            // 寄存器中位宽小于32的值都是零扩展的（见TruncInst），常数也按照零扩展给出
+            int bitWidth = constantInt.type().getBitWidth();
+            if (bitWidth < IRType.getInt32Ty().getBitWidth()) {
+                return new Immediate(constantInt.constantValue() & ((1 << bitWidth) - 1));
+            }
             return new Immediate(constantInt.constantValue());
         } else if (irValue instanceof IRGlobalVariable) {
             return this.globalVariableMap.get(irValue);
         } else if (irValue instanceof IRFunction) {
             return this.functionMap.get(irValue).label();
-        } else if (irValue instanceof IRBasicBlock) {
-            return this.basicBlockMap.get(irValue).label();
+        } else if (irValue instanceof IRBasicBlock irBasicBlock) {
+            return this.basicBlockMap.get(irBasicBlock).label();
         } else if (irValue instanceof Argument || irValue instanceof IRInstruction) {
             return this.valueMap.get(irValue);
         } else {
@@ -83,6 +89,8 @@ public class Generator {
         this.globalVariableMap.put(irGlobalVariable, targetDataObject.address());
         if (irGlobalVariable.initVals() instanceof ConstantInt initInt) {
             targetDataObject.appendData(initInt);
+        } else if (irGlobalVariable.initVals() instanceof ConstantDataArray initDataArray) {
+            targetDataObject.appendData(initDataArray);
         } else if (irGlobalVariable.initVals() instanceof ConstantArray initArray
                 && initArray.type().elementType() instanceof IntegerType) {
             // CAST 上方的instanceof确保转换正确
@@ -94,7 +102,9 @@ public class Generator {
         } else if (irGlobalVariable.initVals() instanceof ConstantStruct initStruct) {
             // 由于StructType的IRGlobalVariable只会因为长数组的优化产生，故按照长数组优化形成的结构解析
             for (IRConstant<?> initValue : initStruct.constantValues()) {
-                if (initValue instanceof ConstantInt initInt) {
+                if (initValue instanceof ConstantDataArray initDataArray) {
+                    targetDataObject.appendData(initDataArray);
+                } else if (initValue instanceof ConstantInt initInt) {
                     targetDataObject.appendData(initInt);
                 } else if (initValue instanceof ConstantAggregateZero initAggregateZero
                         && initAggregateZero.type() instanceof ArrayType initZeroArrayType
@@ -129,9 +139,10 @@ public class Generator {
             TargetFunction targetFunction = new TargetFunction(irFunction.name());
             this.functionMap.put(irFunction, targetFunction);
             // 局限于一个函数的数据，新的一个函数需要清空
+            // 重新编号后，basicBlockMap和valueMap以编号为下标
+            irFunction.renumber();
             this.basicBlockMap.clear();
             this.valueMap.clear();
-            this.basicBlockMap.clear();
             this.basicBlockBranchMap.clear();
             this.basicBlockPhiCopies.clear();
             if (irFunction.basicBlocks().size() < 3) {
@@ -415,11 +426,12 @@ public class Generator {
             new Binary(targetBasicBlock, Binary.BinaryOs.SRL, srlRegister, sraRegister, new Immediate(32 - times));
             VirtualRegister addRegister = targetBasicBlock.parent().addTempVirtualRegister();
             new Binary(targetBasicBlock, Binary.BinaryOs.ADD, addRegister, registerSource, srlRegister);
-            // 移位
-            new Binary(targetBasicBlock, Binary.BinaryOs.SRA, destinationRegister, addRegister, new Immediate(times));
-            // 除数是负数要取反
+            // 移位，除数是负数时移位的结果还要取反
+            VirtualRegister quotientRegister = isNegativeDivisor ?
+                    targetBasicBlock.parent().addTempVirtualRegister() : destinationRegister;
+            new Binary(targetBasicBlock, Binary.BinaryOs.SRA, quotientRegister, addRegister, new Immediate(times));
             if (isNegativeDivisor) {
-                new Binary(targetBasicBlock, Binary.BinaryOs.SUB, destinationRegister, PhysicalRegister.ZERO, registerSource);
+                new Binary(targetBasicBlock, Binary.BinaryOs.SUB, destinationRegister, PhysicalRegister.ZERO, quotientRegister);
             }
         } else {
             // 除数不是2的幂次
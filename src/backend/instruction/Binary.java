@@ -148,7 +148,9 @@ public class Binary extends TargetInstruction {
                         "sle " + destination.mipsStr() + ", " + registerSource.mipsStr() + ", " + operandSource.mipsStr();
                 case HIMULT -> "mult " + registerSource.mipsStr() + ", " + operandSource.mipsStr() + "\n\t" +
                         "mfhi " + destination.mipsStr();
+                // LO也要清零，否则LO中残留的值在相加时可能向HI进位
                 case HIMADD -> "mthi " + registerSource.mipsStr() + "\n\t" +
+                        "mtlo " + PhysicalRegister.ZERO.mipsStr() + "\n\t" +
                         "madd " + registerSource.mipsStr() + ", " + operandSource.mipsStr() + "\n\t" +
                         "mfhi " + destination.mipsStr();
             };
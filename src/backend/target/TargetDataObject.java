@@ -2,6 +2,7 @@ package backend.target;
 
 import IR.type.IRType;
 import IR.type.IntegerType;
+import IR.value.constant.ConstantDataArray;
 import IR.value.constant.ConstantInt;
 import backend.oprand.Label;
 import backend.oprand.LabelBaseAddress;
@@ -13,6 +14,8 @@ public class TargetDataObject {
     private final Label label;
     private final LabelBaseAddress address;
     private final LinkedList<Directive> directives;
+    // 连续相同的值至少有这么多个时才合并为value:repeats的形式
+    private static final int MIN_BUNDLE_REPEATS = 4;
 
     public TargetDataObject(String name) {
         // 之所以要加.label，是因为如果name以e结尾，在有立即数偏移的访存指令中，MARS会首先识别e+0x..，然后报告错误
@@ -26,37 +29,65 @@ public class TargetDataObject {
     }
 
     public void appendData(ConstantInt initInt) {
-        if (IRType.isEqual(initInt.type(), IRType.getInt8Ty())) {
-            if (this.directives.isEmpty()
-                    || !(this.directives.peekLast() instanceof DirectiveList)
-                    || this.directives.peekLast().directiveType != DirectiveType.BYTE) {
-                this.directives.add(new DirectiveList(DirectiveType.BYTE));
-            }
-        } else if (IRType.isEqual(initInt.type(), IRType.getInt32Ty())) {
-            if (this.directives.isEmpty()
-                    || !(this.directives.peekLast() instanceof DirectiveList)
-                    || this.directives.peekLast().directiveType != DirectiveType.WORD) {
-                this.directives.add(new DirectiveList(DirectiveType.WORD));
+        this.appendRun(directiveTypeOf(initInt.type()), initInt.constantValue(), 1);
+    }
+
+    // 按游程追加数组的数据，连续相同的值较多时合并为value:repeats的形式，输出的大小只与游程的个数有关
+    public void appendData(ConstantDataArray initArray) {
+        DirectiveType directiveType = directiveTypeOf(initArray.elementType());
+        int runStart = 0;
+        while (runStart < initArray.numElements()) {
+            int value = initArray.elementValue(runStart);
+            int runEnd = runStart + 1;
+            while (runEnd < initArray.numElements() && initArray.elementValue(runEnd) == value) {
+                runEnd++;
             }
-        } else {
-            throw new RuntimeException("When appendData(), the type of initInt is invalid. " +
-                    "Got " + initInt.type());
+            this.appendRun(directiveType, value, runEnd - runStart);
+            runStart = runEnd;
         }
-        // CAST 上方的instanceof确保转换正确
-        ((DirectiveList) directives.peekLast()).values.add(initInt.constantValue());
     }
 
     public void appendZero(IntegerType elementType, Integer repeats) {
+        DirectiveType directiveType = directiveTypeOf(elementType);
+        if (this.directives.peekLast() instanceof DirectiveBundle lastBundle
+                && lastBundle.directiveType == directiveType && lastBundle.value == 0) {
+            lastBundle.repeats += repeats;
+        } else {
+            this.directives.add(new DirectiveBundle(directiveType, 0, repeats));
+        }
+    }
+
+    private static DirectiveType directiveTypeOf(IntegerType elementType) {
         if (IRType.isEqual(elementType, IRType.getInt8Ty())) {
-            this.directives.add(new DirectiveBundle(DirectiveType.BYTE, 0, repeats));
+            return DirectiveType.BYTE;
         } else if (IRType.isEqual(elementType, IRType.getInt32Ty())) {
-            this.directives.add(new DirectiveBundle(DirectiveType.WORD, 0, repeats));
+            return DirectiveType.WORD;
         } else {
-            throw new RuntimeException("When appendZero(), elementType is invalid. " +
+            throw new RuntimeException("When directiveTypeOf(), elementType is invalid. " +
                     "Got " + elementType);
         }
     }
 
+    // 追加repeats个value，重复次数不少于MIN_BUNDLE_REPEATS时使用value:repeats的形式，否则逐个列出
+    private void appendRun(DirectiveType directiveType, int value, int repeats) {
+        Directive lastDirective = this.directives.peekLast();
+        if (lastDirective instanceof DirectiveBundle lastBundle
+                && lastBundle.directiveType == directiveType && lastBundle.value == value) {
+            lastBundle.repeats += repeats;
+        } else if (repeats >= MIN_BUNDLE_REPEATS) {
+            this.directives.add(new DirectiveBundle(directiveType, value, repeats));
+        } else {
+            if (!(lastDirective instanceof DirectiveList) || lastDirective.directiveType != directiveType) {
+                this.directives.add(new DirectiveList(directiveType));
+            }
+            // CAST 上方的instanceof确保转换正确
+            DirectiveList lastList = (DirectiveList) this.directives.peekLast();
+            for (int i = 0; i < repeats; i++) {
+                lastList.values.add(value);
+            }
+        }
+    }
+
     public String mipsStr() {
         StringBuilder sb = new StringBuilder();
         sb.append(label.mipsStr()).append(": ");
@@ -120,11 +151,10 @@ public class TargetDataObject {
     }
 
     private static class DirectiveBundle extends Directive {
-        private final Integer value;
-        private final Integer repeats;
+        private final int value;
+        private int repeats;
 
-        @SuppressWarnings("SameParameterValue")
-        private DirectiveBundle(DirectiveType directiveType, Integer value, Integer repeats) {
+        private DirectiveBundle(DirectiveType directiveType, int value, int repeats) {
             super(directiveType);
             this.value = value;
             this.repeats = repeats;
@@ -15,6 +15,11 @@ public class ErrorTable {
         this.errorRecords.add(new ErrorRecord(line, type, info));
     }
 
+    // 并入另一个错误处理表的记录，每一行仍然只保留先登记的错误
+    public void merge(ErrorTable errorTable) {
+        this.errorRecords.addAll(errorTable.errorRecords);
+    }
+
     public boolean notEmpty() {
         return !this.errorRecords.isEmpty();
     }
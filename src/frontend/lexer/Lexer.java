@@ -5,21 +5,33 @@ import frontend.type.TokenType;
 import frontend.error.ErrorTable;
 import frontend.type.ErrorType;
 
+import input.SourceCode;
+
 import java.io.IOException;
 import java.io.PushbackReader;
 
 public class Lexer {
+    // 源代码的全部字符，Token的文本均由此截取
+    private final char[] buffer;
+    // 未开启Config.lexerBufferedInput时，通过reader逐字符读取，否则直接按下标扫描buffer
     private final PushbackReader reader;
+    // 下一个将要读取的字符的下标，两种读取方式均维护
+    private int cursor = 0;
     private char c = 0;
     private int line = 1;
     private int indexOfLine = 1;
+    private int tokenCount = 0;
+    private boolean started = false;
     private boolean finish = false;
+    // 是否为流式解析，即由TokenStream在需要时调用lexNextToken()
+    private boolean streaming = false;
 
     private final ErrorTable errorTable;
 
     private final TokenStream stream;
 
     private static final char EOF = (char) -1;
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
 
     // Java的Character的实现是基于Unicode的，使用有一定风险，故重写
     private static boolean isDigit(char ch) {
@@ -34,20 +46,30 @@ public class Lexer {
         return isLetter(ch) || isDigit(ch);
     }
 
-    public Lexer(PushbackReader reader, ErrorTable errorTable) {
-        this.reader = reader;
+    public Lexer(SourceCode sourceCode, ErrorTable errorTable) throws IOException {
+        this.buffer = sourceCode.buffer();
+        this.reader = Config.lexerBufferedInput ? null : sourceCode.reader();
         this.errorTable = errorTable;
-        this.stream = new TokenStream(this.errorTable);
+        this.stream = new TokenStream(this.buffer, this.errorTable);
     }
 
     // 从文件中读入下一个字符
     private void fgetc() throws IOException {
-        c = (char) this.reader.read();
+        if (this.reader == null) {
+            // 读到结尾之后下标仍然后移，保证与ungetc()对称
+            c = this.cursor < this.buffer.length ? this.buffer[this.cursor] : EOF;
+        } else {
+            c = (char) this.reader.read();
+        }
+        this.cursor++;
     }
 
     // 退回读入的字符
     private void ungetc() throws IOException {
-        this.reader.unread(c);
+        if (this.reader != null) {
+            this.reader.unread(c);
+        }
+        this.cursor--;
     }
 
     // 读取到新的一行
@@ -56,21 +78,54 @@ public class Lexer {
         this.indexOfLine = 1;
     }
 
-    // 解析到一个新的Token，加入到TokenStream中
-    private void gotToken(TokenType type, String strVal) {
-        this.stream.addToken(new Token(type, strVal, this.line, this.indexOfLine));
+    // 解析到一个新的Token，加入到TokenStream中，文本为源代码中从start开始的length个字符
+    private void gotToken(TokenType type, int start, int length) {
+        this.stream.addToken(type, start, length, this.line, this.indexOfLine);
+        this.indexOfLine++;
+        this.tokenCount++;
+    }
+
+    // 解析到一个文本与源代码不一致的Token
+    private void gotIrregularToken(TokenType type, String strVal) {
+        this.stream.addIrregularToken(type, strVal, this.line, this.indexOfLine);
         this.indexOfLine++;
+        this.tokenCount++;
     }
 
     // 返回从文件中生成的TokenStream
     public TokenStream getTokenStream() throws IOException {
         // 如果已经完成生成TokenStream，直接返回结果
-        if (finish) {
+        if (finish || streaming) {
             return this.stream;
         }
-        fgetc();
+        // 输出TokenStream需要全部的Token，此时不进行流式解析
+        if (Config.lexerStreaming && Config.stages > 1 && !Config.dumpTokenStream) {
+            this.streaming = true;
+            this.stream.setStreaming(this);
+            return this.stream;
+        }
+        while (this.lexNextToken()) {
+            // 解析全部的Token
+        }
+        return this.stream;
+    }
+
+    // 解析直至得到一个Token，加入到TokenStream中，读到文件结尾时加入类型为EOF的Token
+    // 返回false表示已经加入过EOF，不会再有新的Token
+    boolean lexNextToken() throws IOException {
+        if (finish) {
+            return false;
+        }
+        if (this.reader == null && Config.lexerTableDriven) {
+            return this.lexNextTokenByTable();
+        }
+        if (!started) {
+            fgetc();
+            started = true;
+        }
+        int lastTokenCount = this.tokenCount;
         // 约定为每一次循环结束之后都保证c为预读好的一个字符
-        while (c != EOF) {
+        while (c != EOF && this.tokenCount == lastTokenCount) {
             if (c == '\n') {
                 this.newLine(); // 记录行号
                 fgetc();
@@ -88,63 +143,137 @@ public class Lexer {
                 this.lexSymbolComment(); // 各种符号或注释，若为未知字符则直接跳过
             }
         }
-        // 加入类型为EOF的Token，表示TokenStream结束
-        this.gotToken(TokenType.EOF, "");
-        this.finish = true;
-        return this.stream;
+        if (this.tokenCount == lastTokenCount) {
+            // 加入类型为EOF的Token，表示TokenStream结束
+            this.gotToken(TokenType.EOF, this.buffer.length, 0);
+            this.finish = true;
+        }
+        return true;
+    }
+
+    // 表驱动的解析，直接按下标扫描buffer，每次从LexerTable.START出发，走到无法转移时按停机状态的动作处理
+    private boolean lexNextTokenByTable() throws IOException {
+        final char[] buffer = this.buffer;
+        int lastTokenCount = this.tokenCount;
+        while (this.tokenCount == lastTokenCount) {
+            int start = this.cursor;
+            if (start >= buffer.length) {
+                // 加入类型为EOF的Token，表示TokenStream结束
+                this.gotToken(TokenType.EOF, buffer.length, 0);
+                this.finish = true;
+                break;
+            }
+            int state = LexerTable.START;
+            int end = start;
+            while (true) {
+                int charClass = end < buffer.length ? LexerTable.charClass(buffer[end]) : LexerTable.EOF;
+                int nextState = LexerTable.transition(state, charClass);
+                if (nextState == LexerTable.DEAD) {
+                    break;
+                }
+                // 只有空白符号和多行注释会越过换行，注意维护行号
+                if (charClass == LexerTable.NEWLINE) {
+                    this.newLine();
+                }
+                state = nextState;
+                end++;
+            }
+            this.cursor = end;
+            this.acceptByTable(LexerTable.action(state), start, end);
+        }
+        return true;
+    }
+
+    private void acceptByTable(int action, int start, int end) throws IOException {
+        switch (action) {
+            case LexerTable.A_SKIP -> {
+            }
+            case LexerTable.A_IDENT_KEYWORD ->
+                    this.gotToken(LexerTable.identOrKeyword(this.buffer, start, end - start), start, end - start);
+            case LexerTable.A_SINGLE_AND, LexerTable.A_SINGLE_OR -> {
+                boolean isAnd = action == LexerTable.A_SINGLE_AND;
+                this.gotToken(isAnd ? TokenType.AND : TokenType.OR, start, 1);
+                char next = end < this.buffer.length ? this.buffer[end] : EOF;
+                this.errorTable.addErrorRecord(this.line, ErrorType.ILLEGAL_AND_OR,
+                        "Got '" + next + "'(ASCII:" + (int) next + ") when expected '" + (isAnd ? '&' : '|') + "'");
+            }
+            case LexerTable.A_STRING_FALLBACK -> {
+                // 回到Token开始处，由逐字符的解析处理非法字符，之后继续按下标扫描
+                this.cursor = start;
+                fgetc();
+                this.lexStringConst();
+                this.cursor--;
+            }
+            case LexerTable.A_CHAR_FALLBACK -> {
+                this.cursor = start;
+                fgetc();
+                this.lexCharConst();
+                this.cursor--;
+            }
+            case LexerTable.A_UNTERMINATED_COMMENT -> {
+                if (Config.lexerThrowable) {
+                    throw new RuntimeException("When Lexer.lexComment(), unexpected EOF");
+                }
+            }
+            case LexerTable.A_UNKNOWN -> {
+                char unknown = this.buffer[start];
+                if (Config.lexerThrowable) {
+                    throw new RuntimeException("When Lexer.lexSymbolComment()->default, unexpected character '" + unknown
+                            + "'(ASCII:" + (int) unknown + ") at line" + this.line);
+                }
+            }
+            default -> this.gotToken(TOKEN_TYPES[action], start, end - start);
+        }
     }
 
     private void lexIdentKeyword() throws IOException {
-        StringBuilder identStrBuilder = new StringBuilder();
+        int start = this.cursor - 1;
         while (c == '_' || isLetterOrDigit(c)) {
-            identStrBuilder.append(c);
             fgetc();
         }
-        String identStr = identStrBuilder.toString();
+        int length = this.cursor - 1 - start;
+        String identStr = new String(this.buffer, start, length);
         switch (identStr) {
-            case "main" -> this.gotToken(TokenType.MAINTK, identStr);
-            case "const" -> this.gotToken(TokenType.CONSTTK, identStr);
-            case "int" -> this.gotToken(TokenType.INTTK, identStr);
-            case "char" -> this.gotToken(TokenType.CHARTK, identStr);
-            case "void" -> this.gotToken(TokenType.VOIDTK, identStr);
-            case "break" -> this.gotToken(TokenType.BREAKTK, identStr);
-            case "continue" -> this.gotToken(TokenType.CONTINUETK, identStr);
-            case "if" -> this.gotToken(TokenType.IFTK, identStr);
-            case "else" -> this.gotToken(TokenType.ELSETK, identStr);
-            case "for" -> this.gotToken(TokenType.FORTK, identStr);
-            case "return" -> this.gotToken(TokenType.RETURNTK, identStr);
-            case "getint" -> this.gotToken(TokenType.GETINTTK, identStr);
-            case "getchar" -> this.gotToken(TokenType.GETCHARTK, identStr);
-            case "printf" -> this.gotToken(TokenType.PRINTFTK, identStr);
-            default -> this.gotToken(TokenType.IDENFR, identStr);
+            case "main" -> this.gotToken(TokenType.MAINTK, start, length);
+            case "const" -> this.gotToken(TokenType.CONSTTK, start, length);
+            case "int" -> this.gotToken(TokenType.INTTK, start, length);
+            case "char" -> this.gotToken(TokenType.CHARTK, start, length);
+            case "void" -> this.gotToken(TokenType.VOIDTK, start, length);
+            case "break" -> this.gotToken(TokenType.BREAKTK, start, length);
+            case "continue" -> this.gotToken(TokenType.CONTINUETK, start, length);
+            case "if" -> this.gotToken(TokenType.IFTK, start, length);
+            case "else" -> this.gotToken(TokenType.ELSETK, start, length);
+            case "for" -> this.gotToken(TokenType.FORTK, start, length);
+            case "return" -> this.gotToken(TokenType.RETURNTK, start, length);
+            case "getint" -> this.gotToken(TokenType.GETINTTK, start, length);
+            case "getchar" -> this.gotToken(TokenType.GETCHARTK, start, length);
+            case "printf" -> this.gotToken(TokenType.PRINTFTK, start, length);
+            default -> this.gotToken(TokenType.IDENFR, start, length);
         }
     }
 
     private void lexIntConst() throws IOException {
-        StringBuilder intConstStrBuilder = new StringBuilder();
+        int start = this.cursor - 1;
         while (isDigit(c)) {
-            intConstStrBuilder.append(c);
             fgetc();
         }
-        String intConstStr = intConstStrBuilder.toString();
-        this.gotToken(TokenType.INTCON, intConstStr);
+        this.gotToken(TokenType.INTCON, start, this.cursor - 1 - start);
     }
 
     private void lexStringConst() throws IOException {
-        StringBuilder stringConstStrBuilder = new StringBuilder();
-        stringConstStrBuilder.append('"');
+        int start = this.cursor - 1;
+        // 出现被忽略的非法字符时，Token的文本与源代码不一致
+        boolean irregular = false;
         fgetc();
         while (c != '"') {
             // 包括32-126的所有ASCII字符
             if (32 <= c && c <= 126) {
-                stringConstStrBuilder.append(c);
                 // '\' (92) 出现需要特别处理转义字符
                 if (c == '\\') {
                     fgetc();
                     switch (c) {
                         // 合法的转义字符
                         case 'a', 'b', 't', 'n', 'v', 'f', '"', '\'', '\\', '0':
-                            stringConstStrBuilder.append(c);
                             break;
                         default:
                             ungetc();
@@ -160,29 +289,37 @@ public class Lexer {
                     throw new RuntimeException("When lexStringConst(), got '" + c
                             + "'(ASCII:" + (int) c + ") at line " + this.line);
                 }
+                irregular = true;
             }
             fgetc();
         } // UNSTABLE 此处没有考虑字符串中非法的换行导致的行数统计错误的问题
-        stringConstStrBuilder.append('"');
         fgetc();
-        String stringConstStr = stringConstStrBuilder.toString();
-        this.gotToken(TokenType.STRCON, stringConstStr);
+        int length = this.cursor - 1 - start;
+        if (irregular) {
+            // 文本中只保留32-126的ASCII字符
+            StringBuilder stringConstStrBuilder = new StringBuilder();
+            for (int i = start; i < start + length; i++) {
+                if (32 <= this.buffer[i] && this.buffer[i] <= 126) {
+                    stringConstStrBuilder.append(this.buffer[i]);
+                }
+            }
+            this.gotIrregularToken(TokenType.STRCON, stringConstStrBuilder.toString());
+        } else {
+            this.gotToken(TokenType.STRCON, start, length);
+        }
     }
 
     private void lexCharConst() throws IOException {
-        StringBuilder charConstStrBuilder = new StringBuilder();
-        charConstStrBuilder.append('\'');
+        int start = this.cursor - 1;
         fgetc();
         // 包括32-126的所有ASCII字符
         if (32 <= c && c <= 126) {
-            charConstStrBuilder.append(c);
             // '\' (92) 出现需要特别处理转义字符
             if (c == '\\') {
                 fgetc();
                 switch (c) {
                     // 合法的转义字符
                     case 'a', 'b', 't', 'n', 'v', 'f', '"', '\'', '\\', '0':
-                        charConstStrBuilder.append(c);
                         break;
                     default:
                         ungetc();
@@ -198,19 +335,17 @@ public class Lexer {
                     + "'(ASCII:" + (int) c + ") at line " + this.line);
         }
         fgetc();
-        if (c == '\'') {
-            charConstStrBuilder.append('\'');
-        } else {
+        if (c != '\'') {
             ungetc();
             throw new RuntimeException("When lexCharConst(), more than one character in single quotation mark at line " + this.line);
         }
         // UNSTABLE 此处没有考虑字符中非法的换行导致的行数统计错误的问题
         fgetc();
-        String charConstStr = charConstStrBuilder.toString();
-        this.gotToken(TokenType.CHRCON, charConstStr);
+        this.gotToken(TokenType.CHRCON, start, this.cursor - 1 - start);
     }
 
     private void lexSymbolComment() throws IOException {
+        int start = this.cursor - 1;
         switch (c) {
             case '/' -> {
                 fgetc();
@@ -219,28 +354,28 @@ public class Lexer {
                     return; // 由于单行注释有可能直接读到结尾，故直接return以不执行本函数的预读，将预读给到lexComment
                 } else {
                     ungetc();
-                    this.gotToken(TokenType.DIV, "/");
+                    this.gotToken(TokenType.DIV, start, 1);
                 }
             }
-            case '+' -> this.gotToken(TokenType.PLUS, "+");
-            case '-' -> this.gotToken(TokenType.MINU, "-");
-            case '*' -> this.gotToken(TokenType.MULT, "*");
-            case '%' -> this.gotToken(TokenType.MOD, "%");
+            case '+' -> this.gotToken(TokenType.PLUS, start, 1);
+            case '-' -> this.gotToken(TokenType.MINU, start, 1);
+            case '*' -> this.gotToken(TokenType.MULT, start, 1);
+            case '%' -> this.gotToken(TokenType.MOD, start, 1);
             case '!' -> {
                 fgetc();
                 if (c == '=') {
-                    this.gotToken(TokenType.NEQ, "!=");
+                    this.gotToken(TokenType.NEQ, start, 2);
                 } else {
                     ungetc();
-                    this.gotToken(TokenType.NOT, "!");
+                    this.gotToken(TokenType.NOT, start, 1);
                 }
             }
             case '&' -> {
                 fgetc();
                 if (c == '&') {
-                    this.gotToken(TokenType.AND, "&&");
+                    this.gotToken(TokenType.AND, start, 2);
                 } else {
-                    this.gotToken(TokenType.AND, "&");
+                    this.gotToken(TokenType.AND, start, 1);
                     this.errorTable.addErrorRecord(this.line, ErrorType.ILLEGAL_AND_OR,
                             "Got '" + c + "'(ASCII:" + (int) c + ") when expected '&'");
                     ungetc();
@@ -249,9 +384,9 @@ public class Lexer {
             case '|' -> {
                 fgetc();
                 if (c == '|') {
-                    this.gotToken(TokenType.OR, "||");
+                    this.gotToken(TokenType.OR, start, 2);
                 } else {
-                    this.gotToken(TokenType.OR, "|");
+                    this.gotToken(TokenType.OR, start, 1);
                     this.errorTable.addErrorRecord(this.line, ErrorType.ILLEGAL_AND_OR,
                             "Got '" + c + "'(ASCII:" + (int) c + ") when expected '|'");
                     ungetc();
@@ -260,38 +395,38 @@ public class Lexer {
             case '<' -> {
                 fgetc();
                 if (c == '=') {
-                    this.gotToken(TokenType.LEQ, "<=");
+                    this.gotToken(TokenType.LEQ, start, 2);
                 } else {
                     ungetc();
-                    this.gotToken(TokenType.LSS, "<");
+                    this.gotToken(TokenType.LSS, start, 1);
                 }
             }
             case '>' -> {
                 fgetc();
                 if (c == '=') {
-                    this.gotToken(TokenType.GEQ, ">=");
+                    this.gotToken(TokenType.GEQ, start, 2);
                 } else {
                     ungetc();
-                    this.gotToken(TokenType.GRE, ">");
+                    this.gotToken(TokenType.GRE, start, 1);
                 }
             }
             case '=' -> {
                 fgetc();
                 if (c == '=') {
-                    this.gotToken(TokenType.EQL, "==");
+                    this.gotToken(TokenType.EQL, start, 2);
                 } else {
                     ungetc();
-                    this.gotToken(TokenType.ASSIGN, "=");
+                    this.gotToken(TokenType.ASSIGN, start, 1);
                 }
             }
-            case ';' -> this.gotToken(TokenType.SEMICN, ";");
-            case ',' -> this.gotToken(TokenType.COMMA, ",");
-            case '(' -> this.gotToken(TokenType.LPARENT, "(");
-            case ')' -> this.gotToken(TokenType.RPARENT, ")");
-            case '[' -> this.gotToken(TokenType.LBRACK, "[");
-            case ']' -> this.gotToken(TokenType.RBRACK, "]");
-            case '{' -> this.gotToken(TokenType.LBRACE, "{");
-            case '}' -> this.gotToken(TokenType.RBRACE, "}");
+            case ';' -> this.gotToken(TokenType.SEMICN, start, 1);
+            case ',' -> this.gotToken(TokenType.COMMA, start, 1);
+            case '(' -> this.gotToken(TokenType.LPARENT, start, 1);
+            case ')' -> this.gotToken(TokenType.RPARENT, start, 1);
+            case '[' -> this.gotToken(TokenType.LBRACK, start, 1);
+            case ']' -> this.gotToken(TokenType.RBRACK, start, 1);
+            case '{' -> this.gotToken(TokenType.LBRACE, start, 1);
+            case '}' -> this.gotToken(TokenType.RBRACE, start, 1);
             default -> {
                 if (Config.lexerThrowable) {
                     throw new RuntimeException("When Lexer.lexSymbolComment()->default, unexpected character '" + c
@@ -0,0 +1,312 @@
+package frontend.lexer;
+
+import frontend.type.TokenType;
+
+import java.util.Arrays;
+
+// 表驱动词法分析所用的字符类别表、状态转移表和关键字完美哈希表
+final class LexerTable {
+    // ==== 字符类别 ====
+    static final int OTHER = 0;         // 非ASCII字符、控制字符等
+    static final int LETTER = 1;        // 字母和'_'（不含ESC_LETTER）
+    static final int ESC_LETTER = 2;    // 可以用于转义的字母 a b f n t v
+    static final int ZERO = 3;          // 0
+    static final int DIGIT = 4;         // 1-9
+    static final int NEWLINE = 5;       // \n
+    static final int SPACE = 6;         // ' '
+    static final int BLANK = 7;         // \t \f \r
+    static final int QUOTE = 8;         // "
+    static final int APOS = 9;          // '
+    static final int BACKSLASH = 10;    // \
+    static final int SLASH = 11;        // /
+    static final int STAR = 12;         // *
+    static final int PLUS = 13;         // +
+    static final int MINUS = 14;        // -
+    static final int PERCENT = 15;      // %
+    static final int BANG = 16;         // !
+    static final int AMP = 17;          // &
+    static final int BAR = 18;          // |
+    static final int LT = 19;           // <
+    static final int GT = 20;           // >
+    static final int EQ = 21;           // =
+    static final int SEMI = 22;         // ;
+    static final int COMMA = 23;        // ,
+    static final int LPAREN = 24;       // (
+    static final int RPAREN = 25;       // )
+    static final int LBRACK = 26;       // [
+    static final int RBRACK = 27;       // ]
+    static final int LBRACE = 28;       // {
+    static final int RBRACE = 29;       // }
+    static final int PRINTABLE = 30;    // 其余32-126的ASCII字符
+    static final int EOF = 31;          // 文件结尾
+    private static final int CLASS_COUNT = 32;
+
+    // ==== 状态 ====
+    static final int DEAD = -1;
+    static final int START = 0;
+    private static final int S_BLANK = 1;
+    private static final int S_NEWLINE = 2;
+    private static final int S_IDENT = 3;
+    private static final int S_INT = 4;
+    private static final int S_STR_BODY = 5;
+    private static final int S_STR_ESC = 6;
+    private static final int S_STR_END = 7;
+    private static final int S_CHR_OPEN = 8;
+    private static final int S_CHR_ESC = 9;
+    private static final int S_CHR_CHAR = 10;
+    private static final int S_CHR_END = 11;
+    private static final int S_SLASH = 12;
+    private static final int S_LINE_COMMENT = 13;
+    private static final int S_BLOCK_COMMENT = 14;
+    private static final int S_BLOCK_STAR = 15;
+    private static final int S_BLOCK_END = 16;
+    private static final int S_BANG = 17;
+    private static final int S_AMP = 18;
+    private static final int S_BAR = 19;
+    private static final int S_LT = 20;
+    private static final int S_GT = 21;
+    private static final int S_EQ = 22;
+    private static final int S_UNKNOWN = 23;
+    // 之后的状态均为只含一个字符或两个字符的符号，没有出边
+    private static final int S_SYMBOL = 24;
+    private static final TokenType[] SYMBOL_TYPES = {
+            TokenType.PLUS, TokenType.MINU, TokenType.MULT, TokenType.MOD,
+            TokenType.SEMICN, TokenType.COMMA, TokenType.LPARENT, TokenType.RPARENT,
+            TokenType.LBRACK, TokenType.RBRACK, TokenType.LBRACE, TokenType.RBRACE,
+            TokenType.NEQ, TokenType.AND, TokenType.OR, TokenType.LEQ, TokenType.GEQ, TokenType.EQL
+    };
+    private static final int STATE_COUNT = S_SYMBOL + SYMBOL_TYPES.length;
+
+    // ==== 停机时的动作 ====
+    // 非负数为TokenType的ordinal，负数为以下特殊动作
+    static final int A_SKIP = -1;                   // 空白符号或注释
+    static final int A_IDENT_KEYWORD = -2;          // 标识符或关键字
+    static final int A_SINGLE_AND = -3;             // 单个'&'，需要登记错误
+    static final int A_SINGLE_OR = -4;              // 单个'|'，需要登记错误
+    static final int A_STRING_FALLBACK = -5;        // 字符串常量中出现非法字符，交由逐字符解析处理
+    static final int A_CHAR_FALLBACK = -6;          // 字符常量中出现非法字符，交由逐字符解析处理
+    static final int A_UNTERMINATED_COMMENT = -7;   // 多行注释没有结束
+    static final int A_UNKNOWN = -8;                // 未知字符
+
+    private static final byte[] CHAR_CLASS = new byte[128];
+    private static final byte[] TRANSITIONS = new byte[STATE_COUNT * CLASS_COUNT];
+    private static final int[] ACTIONS = new int[STATE_COUNT];
+
+    // ==== 关键字完美哈希 ====
+    // hash = (长度 + 首字符 + 末字符 * 12) & 15，对14个关键字无冲突
+    private static final char[][] KEYWORD_TEXTS = new char[16][];
+    private static final TokenType[] KEYWORD_TYPES = new TokenType[16];
+
+    static {
+        // 字符类别
+        for (int ch = 32; ch <= 126; ch++) {
+            CHAR_CLASS[ch] = PRINTABLE;
+        }
+        for (int ch = 'a'; ch <= 'z'; ch++) {
+            CHAR_CLASS[ch] = LETTER;
+        }
+        for (int ch = 'A'; ch <= 'Z'; ch++) {
+            CHAR_CLASS[ch] = LETTER;
+        }
+        CHAR_CLASS['_'] = LETTER;
+        for (char ch : "abfntv".toCharArray()) {
+            CHAR_CLASS[ch] = ESC_LETTER;
+        }
+        CHAR_CLASS['0'] = ZERO;
+        for (int ch = '1'; ch <= '9'; ch++) {
+            CHAR_CLASS[ch] = DIGIT;
+        }
+        CHAR_CLASS['\n'] = NEWLINE;
+        CHAR_CLASS[' '] = SPACE;
+        CHAR_CLASS['\t'] = BLANK;
+        CHAR_CLASS['\f'] = BLANK;
+        CHAR_CLASS['\r'] = BLANK;
+        CHAR_CLASS['"'] = QUOTE;
+        CHAR_CLASS['\''] = APOS;
+        CHAR_CLASS['\\'] = BACKSLASH;
+        CHAR_CLASS['/'] = SLASH;
+        CHAR_CLASS['*'] = STAR;
+        CHAR_CLASS['+'] = PLUS;
+        CHAR_CLASS['-'] = MINUS;
+        CHAR_CLASS['%'] = PERCENT;
+        CHAR_CLASS['!'] = BANG;
+        CHAR_CLASS['&'] = AMP;
+        CHAR_CLASS['|'] = BAR;
+        CHAR_CLASS['<'] = LT;
+        CHAR_CLASS['>'] = GT;
+        CHAR_CLASS['='] = EQ;
+        CHAR_CLASS[';'] = SEMI;
+        CHAR_CLASS[','] = COMMA;
+        CHAR_CLASS['('] = LPAREN;
+        CHAR_CLASS[')'] = RPAREN;
+        CHAR_CLASS['['] = LBRACK;
+        CHAR_CLASS[']'] = RBRACK;
+        CHAR_CLASS['{'] = LBRACE;
+        CHAR_CLASS['}'] = RBRACE;
+
+        // 状态转移，默认均为DEAD
+        Arrays.fill(TRANSITIONS, (byte) DEAD);
+        int[] identClasses = {LETTER, ESC_LETTER, ZERO, DIGIT};
+        int[] printableClasses = {LETTER, ESC_LETTER, ZERO, DIGIT, SPACE, QUOTE, APOS, BACKSLASH, SLASH, STAR,
+                PLUS, MINUS, PERCENT, BANG, AMP, BAR, LT, GT, EQ, SEMI, COMMA,
+                LPAREN, RPAREN, LBRACK, RBRACK, LBRACE, RBRACE, PRINTABLE};
+        int[] escapeClasses = {ESC_LETTER, ZERO, QUOTE, APOS, BACKSLASH};
+        // 空白符号
+        setTransition(START, new int[]{SPACE, BLANK}, S_BLANK);
+        setTransition(S_BLANK, new int[]{SPACE, BLANK}, S_BLANK);
+        setTransition(START, new int[]{NEWLINE}, S_NEWLINE);
+        // 标识符或关键字、整型数字常量
+        setTransition(START, new int[]{LETTER, ESC_LETTER}, S_IDENT);
+        setTransition(S_IDENT, identClasses, S_IDENT);
+        setTransition(START, new int[]{ZERO, DIGIT}, S_INT);
+        setTransition(S_INT, new int[]{ZERO, DIGIT}, S_INT);
+        // 字符串常量
+        setTransition(START, new int[]{QUOTE}, S_STR_BODY);
+        setTransition(S_STR_BODY, printableClasses, S_STR_BODY);
+        setTransition(S_STR_BODY, new int[]{BACKSLASH}, S_STR_ESC);
+        setTransition(S_STR_BODY, new int[]{QUOTE}, S_STR_END);
+        setTransition(S_STR_ESC, escapeClasses, S_STR_BODY);
+        // 字符常量
+        setTransition(START, new int[]{APOS}, S_CHR_OPEN);
+        setTransition(S_CHR_OPEN, printableClasses, S_CHR_CHAR);
+        setTransition(S_CHR_OPEN, new int[]{BACKSLASH}, S_CHR_ESC);
+        setTransition(S_CHR_ESC, escapeClasses, S_CHR_CHAR);
+        setTransition(S_CHR_CHAR, new int[]{APOS}, S_CHR_END);
+        // 除号或注释，与逐字符解析一致，"/*"中的'*'也可以作为结束的"*/"的一部分
+        setTransition(START, new int[]{SLASH}, S_SLASH);
+        setTransition(S_SLASH, new int[]{SLASH}, S_LINE_COMMENT);
+        setTransition(S_SLASH, new int[]{STAR}, S_BLOCK_STAR);
+        for (int charClass = 0; charClass < EOF; charClass++) {
+            if (charClass != NEWLINE) {
+                setTransition(S_LINE_COMMENT, new int[]{charClass}, S_LINE_COMMENT);
+            }
+            setTransition(S_BLOCK_COMMENT, new int[]{charClass}, charClass == STAR ? S_BLOCK_STAR : S_BLOCK_COMMENT);
+            setTransition(S_BLOCK_STAR, new int[]{charClass},
+                    charClass == STAR ? S_BLOCK_STAR : charClass == SLASH ? S_BLOCK_END : S_BLOCK_COMMENT);
+        }
+        // 各种符号
+        setTransition(START, new int[]{BANG}, S_BANG);
+        setTransition(START, new int[]{AMP}, S_AMP);
+        setTransition(START, new int[]{BAR}, S_BAR);
+        setTransition(START, new int[]{LT}, S_LT);
+        setTransition(START, new int[]{GT}, S_GT);
+        setTransition(START, new int[]{EQ}, S_EQ);
+        int[] singleSymbolClasses = {PLUS, MINUS, STAR, PERCENT, SEMI, COMMA, LPAREN, RPAREN, LBRACK, RBRACK, LBRACE, RBRACE};
+        for (int i = 0; i < singleSymbolClasses.length; i++) {
+            setTransition(START, new int[]{singleSymbolClasses[i]}, S_SYMBOL + i);
+        }
+        setTransition(S_BANG, new int[]{EQ}, symbolState(TokenType.NEQ));
+        setTransition(S_AMP, new int[]{AMP}, symbolState(TokenType.AND));
+        setTransition(S_BAR, new int[]{BAR}, symbolState(TokenType.OR));
+        setTransition(S_LT, new int[]{EQ}, symbolState(TokenType.LEQ));
+        setTransition(S_GT, new int[]{EQ}, symbolState(TokenType.GEQ));
+        setTransition(S_EQ, new int[]{EQ}, symbolState(TokenType.EQL));
+        // 未知字符
+        setTransition(START, new int[]{OTHER, BACKSLASH, PRINTABLE}, S_UNKNOWN);
+
+        // 停机时的动作
+        ACTIONS[START] = A_SKIP;
+        ACTIONS[S_BLANK] = A_SKIP;
+        ACTIONS[S_NEWLINE] = A_SKIP;
+        ACTIONS[S_IDENT] = A_IDENT_KEYWORD;
+        ACTIONS[S_INT] = TokenType.INTCON.ordinal();
+        ACTIONS[S_STR_BODY] = A_STRING_FALLBACK;
+        ACTIONS[S_STR_ESC] = A_STRING_FALLBACK;
+        ACTIONS[S_STR_END] = TokenType.STRCON.ordinal();
+        ACTIONS[S_CHR_OPEN] = A_CHAR_FALLBACK;
+        ACTIONS[S_CHR_ESC] = A_CHAR_FALLBACK;
+        ACTIONS[S_CHR_CHAR] = A_CHAR_FALLBACK;
+        ACTIONS[S_CHR_END] = TokenType.CHRCON.ordinal();
+        ACTIONS[S_SLASH] = TokenType.DIV.ordinal();
+        ACTIONS[S_LINE_COMMENT] = A_SKIP;
+        ACTIONS[S_BLOCK_COMMENT] = A_UNTERMINATED_COMMENT;
+        ACTIONS[S_BLOCK_STAR] = A_UNTERMINATED_COMMENT;
+        ACTIONS[S_BLOCK_END] = A_SKIP;
+        ACTIONS[S_BANG] = TokenType.NOT.ordinal();
+        ACTIONS[S_AMP] = A_SINGLE_AND;
+        ACTIONS[S_BAR] = A_SINGLE_OR;
+        ACTIONS[S_LT] = TokenType.LSS.ordinal();
+        ACTIONS[S_GT] = TokenType.GRE.ordinal();
+        ACTIONS[S_EQ] = TokenType.ASSIGN.ordinal();
+        ACTIONS[S_UNKNOWN] = A_UNKNOWN;
+        for (int i = 0; i < SYMBOL_TYPES.length; i++) {
+            ACTIONS[S_SYMBOL + i] = SYMBOL_TYPES[i].ordinal();
+        }
+
+        // 关键字
+        addKeyword("main", TokenType.MAINTK);
+        addKeyword("const", TokenType.CONSTTK);
+        addKeyword("int", TokenType.INTTK);
+        addKeyword("char", TokenType.CHARTK);
+        addKeyword("void", TokenType.VOIDTK);
+        addKeyword("break", TokenType.BREAKTK);
+        addKeyword("continue", TokenType.CONTINUETK);
+        addKeyword("if", TokenType.IFTK);
+        addKeyword("else", TokenType.ELSETK);
+        addKeyword("for", TokenType.FORTK);
+        addKeyword("return", TokenType.RETURNTK);
+        addKeyword("getint", TokenType.GETINTTK);
+        addKeyword("getchar", TokenType.GETCHARTK);
+        addKeyword("printf", TokenType.PRINTFTK);
+    }
+
+    private static void setTransition(int state, int[] charClasses, int nextState) {
+        for (int charClass : charClasses) {
+            TRANSITIONS[state * CLASS_COUNT + charClass] = (byte) nextState;
+        }
+    }
+
+    private static int symbolState(TokenType type) {
+        for (int i = 0; i < SYMBOL_TYPES.length; i++) {
+            if (SYMBOL_TYPES[i] == type) {
+                return S_SYMBOL + i;
+            }
+        }
+        throw new RuntimeException("When LexerTable.symbolState(), " + type + " is not a symbol");
+    }
+
+    private static int keywordHash(char[] buffer, int start, int length) {
+        return (length + buffer[start] + buffer[start + length - 1] * 12) & 15;
+    }
+
+    private static void addKeyword(String keyword, TokenType type) {
+        char[] text = keyword.toCharArray();
+        int hash = keywordHash(text, 0, text.length);
+        if (KEYWORD_TEXTS[hash] != null) {
+            throw new RuntimeException("When LexerTable.addKeyword(), hash of '" + keyword + "' collides with '"
+                    + new String(KEYWORD_TEXTS[hash]) + "'");
+        }
+        KEYWORD_TEXTS[hash] = text;
+        KEYWORD_TYPES[hash] = type;
+    }
+
+    static int charClass(char ch) {
+        return ch < 128 ? CHAR_CLASS[ch] : OTHER;
+    }
+
+    static int transition(int state, int charClass) {
+        return TRANSITIONS[state * CLASS_COUNT + charClass];
+    }
+
+    static int action(int state) {
+        return ACTIONS[state];
+    }
+
+    // 标识符是否为关键字，是则返回关键字的类型，否则返回IDENFR
+    static TokenType identOrKeyword(char[] buffer, int start, int length) {
+        int hash = keywordHash(buffer, start, length);
+        char[] keyword = KEYWORD_TEXTS[hash];
+        if (keyword != null && keyword.length == length) {
+            for (int i = 0; i < length; i++) {
+                if (keyword[i] != buffer[start + i]) {
+                    return TokenType.IDENFR;
+                }
+            }
+            return KEYWORD_TYPES[hash];
+        }
+        return TokenType.IDENFR;
+    }
+
+    private LexerTable() {
+    }
+}
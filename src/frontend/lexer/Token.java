@@ -2,5 +2,54 @@ package frontend.lexer;
 
 import frontend.type.TokenType;
 
-public record Token(TokenType type, String strVal, int line, int indexOfLine) {
+// Token的文本不在生成时拷贝，而是在第一次调用strVal()时从源代码中截取
+public final class Token {
+    private final TokenType type;
+    private final char[] source;
+    private final int start;
+    private final int length;
+    private final int line;
+    private final int indexOfLine;
+    private String strVal;
+
+    Token(TokenType type, char[] source, int start, int length, int line, int indexOfLine) {
+        this.type = type;
+        this.source = source;
+        this.start = start;
+        this.length = length;
+        this.line = line;
+        this.indexOfLine = indexOfLine;
+        this.strVal = null;
+    }
+
+    // 文本与源代码不一致的Token直接给出文本
+    Token(TokenType type, String strVal, int line, int indexOfLine) {
+        this(type, null, 0, strVal.length(), line, indexOfLine);
+        this.strVal = strVal;
+    }
+
+    public TokenType type() {
+        return type;
+    }
+
+    public String strVal() {
+        if (this.strVal == null) {
+            this.strVal = new String(this.source, this.start, this.length);
+        }
+        return this.strVal;
+    }
+
+    public int line() {
+        return line;
+    }
+
+    public int indexOfLine() {
+        return indexOfLine;
+    }
+
+    // 与原先record的格式保持一致
+    @Override
+    public String toString() {
+        return "Token[type=" + type + ", strVal=" + this.strVal() + ", line=" + line + ", indexOfLine=" + indexOfLine + "]";
+    }
 }
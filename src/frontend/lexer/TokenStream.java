@@ -5,32 +5,197 @@ import frontend.type.TokenType;
 import frontend.error.ErrorTable;
 import frontend.type.ErrorType;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 
 public class TokenStream {
-    private final ArrayList<Token> list = new ArrayList<>();
+    // 以并列数组的形式保存Token，Token的文本通过start和length从源代码中截取
+    // TokenType的种类数少于128，类型以byte保存其ordinal
+    // 数组作为环形缓冲区使用，下标为index的Token存放在index & mask处，[begin, end)为当前保存的Token
+    private final char[] source;
+    private byte[] types;
+    private int[] lines;
+    private int[] indexOfLines;
+    private int[] starts;
+    private int[] lengths;
+    private int mask;
+    private int begin = 0;
+    private int end = 0;
+    // 文本与源代码不一致的Token（例如字符串中被忽略的非法字符），按下标记录其文本，其length记为IRREGULAR
+    private final HashMap<Integer, String> irregularStrVals;
+
+    // 流式解析时，需要时再从lexer获取Token，已经越过且不会再访问的Token将被丢弃
+    // 非流式解析时为null，所有Token一直保存
+    private Lexer lexer = null;
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int STREAMING_INITIAL_CAPACITY = 64;
+    private static final int IRREGULAR = -1;
+    // 语法分析会通过getNext(-1)访问前一个Token
+    private static final int LOOKBEHIND = 1;
+
     private int pos = 0;
 
     private final ArrayList<CheckPoint> checkpoints = new ArrayList<>();
 
     private final ErrorTable errorTable;
 
-    public TokenStream(ErrorTable errorTable) {
+    public TokenStream(char[] source, ErrorTable errorTable) {
+        this.source = source;
+        this.irregularStrVals = new HashMap<>();
+        this.allocate(INITIAL_CAPACITY);
         this.errorTable = errorTable;
     }
 
+    // 与parent共享全部Token，只读访问，指针、检查点和错误处理表独立
+    private TokenStream(TokenStream parent, int pos) {
+        this.source = parent.source;
+        this.irregularStrVals = parent.irregularStrVals;
+        this.types = parent.types;
+        this.lines = parent.lines;
+        this.indexOfLines = parent.indexOfLines;
+        this.starts = parent.starts;
+        this.lengths = parent.lengths;
+        this.mask = parent.mask;
+        this.begin = parent.begin;
+        this.end = parent.end;
+        this.pos = pos;
+        this.errorTable = new ErrorTable();
+    }
+
     private record CheckPoint(int pos, String description) {
     }
 
+    private void allocate(int capacity) {
+        this.types = new byte[capacity];
+        this.lines = new int[capacity];
+        this.indexOfLines = new int[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    // 设置为流式解析，仅同package的Lexer可访问
+    void setStreaming(Lexer lexer) {
+        this.lexer = lexer;
+        this.allocate(STREAMING_INITIAL_CAPACITY);
+    }
+
     // 添加Token到TokenStream中，仅同package的Lexer可访问
-    void addToken(Token token) {
-        this.list.add(token);
+    void addToken(TokenType type, int start, int length, int line, int indexOfLine) {
+        if (this.end - this.begin == this.types.length) {
+            this.discard();
+            if (this.end - this.begin == this.types.length) {
+                this.grow();
+            }
+        }
+        int slot = this.end & this.mask;
+        this.types[slot] = (byte) type.ordinal();
+        this.lines[slot] = line;
+        this.indexOfLines[slot] = indexOfLine;
+        this.starts[slot] = start;
+        this.lengths[slot] = length;
+        this.end++;
+    }
+
+    // 添加文本与源代码不一致的Token
+    void addIrregularToken(TokenType type, String strVal, int line, int indexOfLine) {
+        this.irregularStrVals.put(this.end, strVal);
+        this.addToken(type, 0, IRREGULAR, line, indexOfLine);
+    }
+
+    // 流式解析时，丢弃当前位置之前、且不被检查点引用的Token
+    private void discard() {
+        if (this.lexer == null) {
+            return;
+        }
+        int floor = this.pos - LOOKBEHIND;
+        for (CheckPoint checkpoint : this.checkpoints) {
+            floor = Math.min(floor, checkpoint.pos());
+        }
+        if (floor > this.begin) {
+            this.begin = Math.min(floor, this.end);
+            if (!this.irregularStrVals.isEmpty()) {
+                this.irregularStrVals.keySet().removeIf(index -> index < this.begin);
+            }
+        }
+    }
+
+    // 环形缓冲区容量翻倍，Token按下标重新放置
+    private void grow() {
+        byte[] oldTypes = this.types;
+        int[] oldLines = this.lines;
+        int[] oldIndexOfLines = this.indexOfLines;
+        int[] oldStarts = this.starts;
+        int[] oldLengths = this.lengths;
+        int oldMask = this.mask;
+        this.allocate(oldTypes.length * 2);
+        for (int index = this.begin; index < this.end; index++) {
+            int oldSlot = index & oldMask;
+            int slot = index & this.mask;
+            this.types[slot] = oldTypes[oldSlot];
+            this.lines[slot] = oldLines[oldSlot];
+            this.indexOfLines[slot] = oldIndexOfLines[oldSlot];
+            this.starts[slot] = oldStarts[oldSlot];
+            this.lengths[slot] = oldLengths[oldSlot];
+        }
+    }
+
+    // 流式解析时，从lexer获取Token直至下标为index的Token可用
+    // 之后继续解析到出现下一行的Token为止，保证同一行的词法错误先于语法错误登记到错误处理表中
+    private void pull(int index) {
+        try {
+            while (this.end <= index && this.lexer.lexNextToken()) {
+                // 继续获取Token
+            }
+            if (this.end > index) {
+                int line = this.lines[index & this.mask];
+                while (this.lines[(this.end - 1) & this.mask] == line && this.lexer.lexNextToken()) {
+                    // 继续获取Token
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 下标为index的Token在数组中的位置
+    private int slot(int index) {
+        if (index >= this.end && this.lexer != null) {
+            this.pull(index);
+        }
+        if (index < this.begin || index >= this.end) {
+            throw new IndexOutOfBoundsException("When TokenStream.slot(), index " + index
+                    + " out of bounds [" + this.begin + ", " + this.end + ")");
+        }
+        return index & this.mask;
+    }
+
+    // 按下标生成Token对象，文本在需要时才截取
+    private Token tokenAt(int index) {
+        int slot = this.slot(index);
+        TokenType type = TOKEN_TYPES[this.types[slot]];
+        if (this.lengths[slot] == IRREGULAR) {
+            return new Token(type, this.irregularStrVals.get(index), this.lines[slot], this.indexOfLines[slot]);
+        }
+        return new Token(type, this.source, this.starts[slot], this.lengths[slot],
+                this.lines[slot], this.indexOfLines[slot]);
+    }
+
+    // 下标为index的Token的类型
+    private TokenType typeAt(int index) {
+        // 先取得位置，获取Token时可能扩容，数组会被替换
+        int slot = this.slot(index);
+        return TOKEN_TYPES[this.types[slot]];
     }
 
     // 添加检查点
     public int checkpoint(String description) {
-        this.checkpoints.add(new CheckPoint(pos, description + " at " + this.getNow()));
+        this.checkpoints.add(new CheckPoint(pos, description));
         return this.checkpoints.size() - 1;
     }
 
@@ -44,20 +209,59 @@ public class TokenStream {
         return this.pos - this.checkpoints.get(checkpointID).pos();
     }
 
+    // 释放不再需要恢复的检查点，流式解析时其后的Token才可以被丢弃
+    // 检查点按照嵌套顺序使用，在其之后添加的检查点一并释放
+    public void release(int checkpointID) {
+        while (this.checkpoints.size() > checkpointID) {
+            this.checkpoints.remove(this.checkpoints.size() - 1);
+        }
+    }
+
+    // 当前指向的Token的下标
+    public int position() {
+        return this.pos;
+    }
+
+    // 是否可以fork，流式解析时Token会被丢弃，不能共享
+    public boolean forkable() {
+        return this.lexer == null;
+    }
+
+    // 创建从下标from开始的TokenStream，用于在其他线程中分析互不相关的Token区间
+    // 分析过程中登记的错误暂存在新TokenStream自己的错误处理表中，由join()并入
+    public TokenStream fork(int from) {
+        if (!this.forkable()) {
+            throw new RuntimeException("When TokenStream.fork(), the streaming TokenStream can not be forked");
+        }
+        return new TokenStream(this, from);
+    }
+
+    // 接受fork得到的TokenStream的分析结果：并入其登记的错误，指针移动到其当前位置
+    // 按照源代码顺序依次join，结果与顺序分析相同
+    public void join(TokenStream forked) {
+        this.errorTable.merge(forked.errorTable);
+        this.pos = forked.pos;
+    }
+
     // 是否还有Token
     public boolean hasNext() {
-        return this.list.get(this.pos).type() != TokenType.EOF;
+        return this.typeAt(this.pos) != TokenType.EOF;
     }
 
     // 获取当前指向的Token
     public Token getNow() {
-        return this.list.get(this.pos);
+        return this.tokenAt(this.pos);
+    }
+
+    // 获取当前指向的Token的类型，不构造Token
+    public TokenType getNowType() {
+        return this.typeAt(this.pos);
     }
 
     // 获取后offset指向的Token
     public Token getNext(int offset) {
         if (this.hasNext()) {
-            return this.list.get(this.pos + offset);
+            return this.tokenAt(this.pos + offset);
         } else {
             return null;
         }
@@ -65,9 +269,9 @@ public class TokenStream {
 
     // 检查当前指向的Token是否是指定的类型
     public boolean isNow(TokenType... types) {
-        Token nowToken = this.getNow();
+        TokenType nowType = this.typeAt(this.pos);
         for (TokenType type : types) {
-            if (nowToken.type() == type) {
+            if (nowType == type) {
                 return true;
             }
         }
@@ -87,17 +291,16 @@ public class TokenStream {
 
     // 获取当前指向的Token，并指针向后移动一位
     public Token consume() {
-        return this.list.get(this.pos++);
+        return this.tokenAt(this.pos++);
     }
 
     // 如果当前指向的Token为types中指定的类型，则返回并且指针向后移动一位
     // 否则返回null
     public Token consumeOrNull(TokenType... types) {
-        Token nowToken = this.getNow();
+        TokenType nowType = this.typeAt(this.pos);
         for (TokenType type : types) {
-            if (nowToken.type() == type) {
-                this.pos++;
-                return nowToken;
+            if (nowType == type) {
+                return this.tokenAt(this.pos++);
             }
         }
         return null;
@@ -137,8 +340,26 @@ public class TokenStream {
         return ret;
     }
 
-    // 获取token的ArrayList
-    public ArrayList<Token> getArrayList() {
-        return this.list;
+    // Token的总数，包括结尾的EOF，仅在非流式解析时可用
+    public int size() {
+        return this.end;
+    }
+
+    // 按下标获取Token的信息，供输出TokenStream时使用，不生成Token对象
+    public TokenType type(int index) {
+        return this.typeAt(index);
+    }
+
+    public String strVal(int index) {
+        int slot = this.slot(index);
+        if (this.lengths[slot] == IRREGULAR) {
+            return this.irregularStrVals.get(index);
+        }
+        return new String(this.source, this.starts[slot], this.lengths[slot]);
+    }
+
+    public int line(int index) {
+        int slot = this.slot(index);
+        return this.lines[slot];
     }
 }
@@ -9,12 +9,17 @@ import frontend.type.TokenType;
 import global.Config;
 
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class CompUnit implements ASTNode {
     private final ArrayList<Decl> decls;
     private final ArrayList<FuncDef> funcDefs;
     private final MainFuncDef mainFuncDef;
 
+    private record ForkedFuncDef(FuncDef funcDef, TokenStream stream) {
+    }
+
     // CompUnit → {Decl} {FuncDef} MainFuncDef
     public CompUnit(TokenStream stream) {
         decls = new ArrayList<>();
@@ -30,6 +35,10 @@ public class CompUnit implements ASTNode {
         }
         // FuncDef → FuncType $Ident$ '(' [FuncFParams] ')' Block
         // MainFuncDef → 'int' $'main'$ '(' ')' Block
+        if (Config.parserParallel && stream.forkable()) {
+            this.parseFuncDefsInParallel(stream);
+        }
+        // 顺序分析剩余的FuncDef
         while (stream.getNext(1).type() != TokenType.MAINTK) {
             funcDefs.add(new FuncDef(stream));
         }
@@ -41,6 +50,62 @@ public class CompUnit implements ASTNode {
         }
     }
 
+    // 并行分析FuncDef，按照源代码顺序依次接受结果
+    // 某个FuncDef分析失败，或者结束位置与预先划分的区间不一致时，从该FuncDef开始交由顺序分析，保证结果与顺序分析相同
+    private void parseFuncDefsInParallel(TokenStream stream) {
+        ArrayList<Integer> bounds = scanFuncDefBounds(stream);
+        ArrayList<ForkJoinTask<ForkedFuncDef>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            TokenStream forked = stream.fork(bounds.get(i));
+            tasks.add(ForkJoinPool.commonPool().submit(() -> new ForkedFuncDef(new FuncDef(forked), forked)));
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            ForkedFuncDef forkedFuncDef;
+            try {
+                forkedFuncDef = tasks.get(i).join();
+            } catch (RuntimeException | StackOverflowError e) {
+                forkedFuncDef = null;
+            }
+            if (forkedFuncDef == null || forkedFuncDef.stream().position() != bounds.get(i + 1)) {
+                tasks.subList(i + 1, tasks.size()).forEach(task -> task.cancel(false));
+                return;
+            }
+            stream.join(forkedFuncDef.stream());
+            funcDefs.add(forkedFuncDef.funcDef());
+        }
+    }
+
+    // 从当前位置开始，通过括号匹配找出各个FuncDef的Token区间[bounds[i], bounds[i + 1])，到MainFuncDef为止
+    // 括号无法匹配时，只返回此前已经找到的区间
+    private static ArrayList<Integer> scanFuncDefBounds(TokenStream stream) {
+        ArrayList<Integer> bounds = new ArrayList<>();
+        int index = stream.position();
+        bounds.add(index);
+        while (stream.type(index) != TokenType.EOF && stream.type(index + 1) != TokenType.MAINTK) {
+            // 找到函数体的'{'
+            while (stream.type(index) != TokenType.LBRACE) {
+                if (stream.type(index) == TokenType.EOF) {
+                    return bounds;
+                }
+                index++;
+            }
+            // 找到与之匹配的'}'
+            int depth = 0;
+            do {
+                if (stream.type(index) == TokenType.LBRACE) {
+                    depth++;
+                } else if (stream.type(index) == TokenType.RBRACE) {
+                    depth--;
+                } else if (stream.type(index) == TokenType.EOF) {
+                    return bounds;
+                }
+                index++;
+            } while (depth > 0);
+            bounds.add(index);
+        }
+        return bounds;
+    }
+
     @Override
     public ArrayList<Object> explore() {
         ArrayList<Object> ret = new ArrayList<>();
@@ -27,7 +27,7 @@ public class AddExp implements ASTNode {
     }
 
     // 按照左递归文法构建
-    private AddExp(List<MulExp> mulExpsSubList, List<Token> symbolsSubList) {
+    AddExp(List<MulExp> mulExpsSubList, List<Token> symbolsSubList) {
         mulExps = new ArrayList<>(mulExpsSubList);
         symbols = new ArrayList<>(symbolsSubList);
     }
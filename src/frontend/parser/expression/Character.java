@@ -16,6 +16,10 @@ public class Character implements ASTNode {
         charConst = stream.consumeOrThrow(place, TokenType.CHRCON);
     }
 
+    Character(Token charConst) {
+        this.charConst = charConst;
+    }
+
     @Override
     public ArrayList<Object> explore() {
         ArrayList<Object> ret = new ArrayList<>();
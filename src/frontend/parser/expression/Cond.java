@@ -2,25 +2,39 @@ package frontend.parser.expression;
 
 import frontend.lexer.TokenStream;
 import frontend.type.ASTNode;
+import global.Config;
 
 import java.util.ArrayList;
 
 public class Cond implements ASTNode {
+    // 两种分析方式只设置其中之一，同Exp
     private final LOrExp lOrExp;
+    private final ExpNode node;
 
     // Cond → LOrExp
     public Cond(TokenStream stream) {
-        lOrExp = new LOrExp(stream);
+        if (Config.parserPrecedenceClimbing) {
+            lOrExp = null;
+            node = ExpParser.parse(stream, ExpParser.LOR);
+        } else {
+            lOrExp = new LOrExp(stream);
+            node = null;
+        }
     }
 
     @Override
     public ArrayList<Object> explore() {
         ArrayList<Object> ret = new ArrayList<>();
-        ret.add(lOrExp);
+        ret.add(this.lOrExp());
         return ret;
     }
 
     public LOrExp lOrExp() {
-        return lOrExp;
+        return lOrExp != null ? lOrExp : ExpAdapter.toLOrExp(node);
+    }
+
+    // 未使用运算符优先级分析时为null
+    public ExpNode node() {
+        return node;
     }
 }
@@ -2,26 +2,40 @@ package frontend.parser.expression;
 
 import frontend.lexer.TokenStream;
 import frontend.type.ASTNode;
+import global.Config;
 
 import java.util.ArrayList;
 
 public class ConstExp implements ASTNode {
+    // 两种分析方式只设置其中之一，同Exp
     private final AddExp addExp;
+    private final ExpNode node;
 
     // Exp → AddExp
     // 注：使用的Ident必须是常量，具体判断不在语法分析中完成
     public ConstExp(TokenStream stream) {
-        addExp = new AddExp(stream);
+        if (Config.parserPrecedenceClimbing) {
+            addExp = null;
+            node = ExpParser.parse(stream, ExpParser.ADD);
+        } else {
+            addExp = new AddExp(stream);
+            node = null;
+        }
     }
 
     @Override
     public ArrayList<Object> explore() {
         ArrayList<Object> ret = new ArrayList<>();
-        ret.add(addExp);
+        ret.add(this.addExp());
         return ret;
     }
 
     public AddExp addExp() {
-        return addExp;
+        return addExp != null ? addExp : ExpAdapter.toAddExp(node);
+    }
+
+    // 未使用运算符优先级分析时为null
+    public ExpNode node() {
+        return node;
     }
 }
@@ -26,7 +26,7 @@ public class EqExp implements ASTNode {
         }
     }
 
-    private EqExp(List<RelExp> EqExpsSubList, List<Token> symbolsSubList) {
+    EqExp(List<RelExp> EqExpsSubList, List<Token> symbolsSubList) {
         relExps = new ArrayList<>(EqExpsSubList);
         symbols = new ArrayList<>(symbolsSubList);
     }
@@ -2,25 +2,67 @@ package frontend.parser.expression;
 
 import frontend.lexer.TokenStream;
 import frontend.type.ASTNode;
+import frontend.type.TokenType;
+import global.Config;
 
 import java.util.ArrayList;
 
 public class Exp implements ASTNode {
+    // 两种分析方式只设置其中之一，使用运算符优先级分析时，AddExp在输出AST时才由ExpNode还原
     private final AddExp addExp;
+    private final ExpNode node;
+
+    // Exp的FIRST集合，即UnaryExp.parse()可以接受的Token
+    private static final TokenType[] FIRST = {TokenType.PLUS, TokenType.MINU, TokenType.NOT,
+            TokenType.LPARENT, TokenType.IDENFR, TokenType.INTCON, TokenType.CHRCON};
+
+    // 当前指向的Token是否可以作为Exp的开始，用于预测可选的Exp是否存在
+    public static boolean isFirst(TokenStream stream) {
+        return stream.isNow(FIRST);
+    }
 
     // Exp → AddExp
     public Exp(TokenStream stream) {
-        addExp = new AddExp(stream);
+        if (Config.parserPrecedenceClimbing) {
+            addExp = null;
+            node = ExpParser.parse(stream, ExpParser.ADD);
+        } else {
+            addExp = new AddExp(stream);
+            node = null;
+        }
+    }
+
+    Exp(ExpNode node) {
+        this.addExp = null;
+        this.node = node;
     }
 
     @Override
     public ArrayList<Object> explore() {
         ArrayList<Object> ret = new ArrayList<>();
-        ret.add(addExp);
+        ret.add(this.addExp());
         return ret;
     }
 
     public AddExp addExp() {
-        return addExp;
+        return addExp != null ? addExp : ExpAdapter.toAddExp(node);
+    }
+
+    // 未使用运算符优先级分析时为null
+    public ExpNode node() {
+        return node;
+    }
+
+    // 如果Exp仅由一个LVal构成，则返回该LVal，否则返回null
+    public LVal lValOrNull() {
+        if (node != null) {
+            return node instanceof ExpNode.Variable variable ? variable.lVal() : null;
+        } else if (addExp.mulExps().size() == 1 && addExp.mulExps().get(0).unaryExps().size() == 1
+                && addExp.mulExps().get(0).unaryExps().get(0).extract() instanceof UnaryExp.UnaryExp_PrimaryExp unaryExp_primaryExp
+                && unaryExp_primaryExp.primaryExp().extract() instanceof PrimaryExp.PrimaryExp_LVal primaryExp_lVal) {
+            return primaryExp_lVal.lVal();
+        } else {
+            return null;
+        }
     }
 }
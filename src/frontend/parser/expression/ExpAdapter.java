@@ -0,0 +1,73 @@
+package frontend.parser.expression;
+
+import frontend.lexer.Token;
+import frontend.type.TokenType;
+
+import java.util.ArrayList;
+
+// 将ExpNode还原为按文法逐层构建的AST，仅在输出AST时使用，保证输出与递归下降分析完全一致
+final class ExpAdapter {
+    static LOrExp toLOrExp(ExpNode node) {
+        ArrayList<Token> symbols = new ArrayList<>();
+        ArrayList<ExpNode> operands = ExpNode.flatten(node, type -> ExpParser.precedence(type) == ExpParser.LOR, symbols);
+        return new LOrExp(operands.stream().map(ExpAdapter::toLAndExp).toList(), symbols);
+    }
+
+    private static LAndExp toLAndExp(ExpNode node) {
+        ArrayList<Token> symbols = new ArrayList<>();
+        ArrayList<ExpNode> operands = ExpNode.flatten(node, type -> ExpParser.precedence(type) == ExpParser.LAND, symbols);
+        return new LAndExp(operands.stream().map(ExpAdapter::toEqExp).toList(), symbols);
+    }
+
+    private static EqExp toEqExp(ExpNode node) {
+        ArrayList<Token> symbols = new ArrayList<>();
+        ArrayList<ExpNode> operands = ExpNode.flatten(node, type -> ExpParser.precedence(type) == ExpParser.EQ, symbols);
+        return new EqExp(operands.stream().map(ExpAdapter::toRelExp).toList(), symbols);
+    }
+
+    private static RelExp toRelExp(ExpNode node) {
+        ArrayList<Token> symbols = new ArrayList<>();
+        ArrayList<ExpNode> operands = ExpNode.flatten(node, type -> ExpParser.precedence(type) == ExpParser.REL, symbols);
+        return new RelExp(operands.stream().map(ExpAdapter::toAddExp).toList(), symbols);
+    }
+
+    static AddExp toAddExp(ExpNode node) {
+        ArrayList<Token> symbols = new ArrayList<>();
+        ArrayList<ExpNode> operands = ExpNode.flatten(node, type -> ExpParser.precedence(type) == ExpParser.ADD, symbols);
+        return new AddExp(operands.stream().map(ExpAdapter::toMulExp).toList(), symbols);
+    }
+
+    private static MulExp toMulExp(ExpNode node) {
+        ArrayList<Token> symbols = new ArrayList<>();
+        ArrayList<ExpNode> operands = ExpNode.flatten(node, type -> ExpParser.precedence(type) == ExpParser.MUL, symbols);
+        return new MulExp(operands.stream().map(ExpAdapter::toUnaryExp).toList(), symbols);
+    }
+
+    private static UnaryExp toUnaryExp(ExpNode node) {
+        if (node instanceof ExpNode.Unary unary) {
+            return new UnaryExp(new UnaryExp.UnaryExp_UnaryOp(new UnaryOp(unary.symbol()), toUnaryExp(unary.operand())));
+        } else if (node instanceof ExpNode.Call call) {
+            return new UnaryExp(new UnaryExp.UnaryExp_IdentFuncCall(call.ident(), call.lparentToken(),
+                    call.funcRParams(), call.rparentToken()));
+        } else {
+            return new UnaryExp(new UnaryExp.UnaryExp_PrimaryExp(toPrimaryExp(node)));
+        }
+    }
+
+    private static PrimaryExp toPrimaryExp(ExpNode node) {
+        if (node instanceof ExpNode.Paren paren) {
+            return new PrimaryExp(new PrimaryExp.PrimaryExp_Exp(paren.lparentToken(), new Exp(paren.exp()), paren.rparentToken()));
+        } else if (node instanceof ExpNode.Variable variable) {
+            return new PrimaryExp(new PrimaryExp.PrimaryExp_LVal(variable.lVal()));
+        } else if (node instanceof ExpNode.Constant constant && constant.token().type() == TokenType.INTCON) {
+            return new PrimaryExp(new PrimaryExp.PrimaryExp_Number(new Number(constant.token())));
+        } else if (node instanceof ExpNode.Constant constant && constant.token().type() == TokenType.CHRCON) {
+            return new PrimaryExp(new PrimaryExp.PrimaryExp_Character(new Character(constant.token())));
+        } else {
+            throw new RuntimeException("When toPrimaryExp(), got unexpected ExpNode " + node);
+        }
+    }
+
+    private ExpAdapter() {
+    }
+}
@@ -0,0 +1,51 @@
+package frontend.parser.expression;
+
+import frontend.lexer.Token;
+import frontend.type.TokenType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.function.Predicate;
+
+// 运算符优先级分析得到的紧凑表达式结点，每个运算符对应一个结点，不再逐层经过 LOrExp → ... → PrimaryExp
+// 按文法逐层构建的AST由ExpAdapter在输出时还原
+public interface ExpNode {
+    // lhs symbol rhs，所有二元运算符都是左结合的
+    record Binary(Token symbol, ExpNode lhs, ExpNode rhs) implements ExpNode {
+    }
+
+    // symbol operand，其中symbol为 '+' | '−' | '!'
+    record Unary(Token symbol, ExpNode operand) implements ExpNode {
+    }
+
+    // '(' Exp ')'，保留括号是为了还原AST
+    record Paren(Token lparentToken, ExpNode exp, Token rparentToken) implements ExpNode {
+    }
+
+    // IntConst | CharConst
+    record Constant(Token token) implements ExpNode {
+    }
+
+    // LVal
+    record Variable(LVal lVal) implements ExpNode {
+    }
+
+    // Ident '(' [FuncRParams] ')'
+    record Call(Token ident, Token lparentToken, FuncRParams funcRParams, Token rparentToken) implements ExpNode {
+    }
+
+    // 沿左侧展开连续的、运算符满足accepts的二元运算：((a op b) op c) → [a, b, c]，运算符按顺序放入symbols
+    // 以循环代替沿左侧的递归，很长的表达式也不会造成过深的递归
+    static ArrayList<ExpNode> flatten(ExpNode node, Predicate<TokenType> accepts, ArrayList<Token> symbols) {
+        ArrayList<ExpNode> operands = new ArrayList<>();
+        while (node instanceof Binary binary && accepts.test(binary.symbol().type())) {
+            operands.add(binary.rhs());
+            symbols.add(binary.symbol());
+            node = binary.lhs();
+        }
+        operands.add(node);
+        Collections.reverse(operands);
+        Collections.reverse(symbols);
+        return operands;
+    }
+}
@@ -0,0 +1,77 @@
+package frontend.parser.expression;
+
+import frontend.lexer.Token;
+import frontend.lexer.TokenStream;
+import frontend.type.CatchableUnexpectedToken;
+import frontend.type.ErrorType;
+import frontend.type.TokenType;
+
+// 运算符优先级分析（Pratt），一次循环即可处理同一优先级的连续运算，不需要为每一层文法递归
+final class ExpParser {
+    // 二元运算符的优先级，数值越大结合越紧，0表示不是二元运算符
+    static final int LOR = 1;
+    static final int LAND = 2;
+    static final int EQ = 3;
+    static final int REL = 4;
+    static final int ADD = 5;
+    static final int MUL = 6;
+
+    static int precedence(TokenType type) {
+        return switch (type) {
+            case OR -> LOR;
+            case AND -> LAND;
+            case EQL, NEQ -> EQ;
+            case LSS, LEQ, GRE, GEQ -> REL;
+            case PLUS, MINU -> ADD;
+            case MULT, DIV, MOD -> MUL;
+            default -> 0;
+        };
+    }
+
+    // 解析一个表达式，只接受优先级不低于minPrecedence的二元运算
+    // Exp、ConstExp从ADD开始，即AddExp；Cond从LOR开始，即LOrExp
+    static ExpNode parse(TokenStream stream, int minPrecedence) {
+        ExpNode lhs = parseUnary(stream);
+        int precedence;
+        while ((precedence = precedence(stream.getNowType())) >= minPrecedence) {
+            Token symbol = stream.consume();
+            // 左结合，右侧只接受优先级更高的运算
+            ExpNode rhs = parse(stream, precedence + 1);
+            lhs = new ExpNode.Binary(symbol, lhs, rhs);
+        }
+        return lhs;
+    }
+
+    // UnaryExp → PrimaryExp | Ident '(' [FuncRParams] ')' | UnaryOp UnaryExp
+    // PrimaryExp → '(' Exp ')' | LVal | Number | Character
+    private static ExpNode parseUnary(TokenStream stream) {
+        if (stream.isNow(TokenType.PLUS, TokenType.MINU, TokenType.NOT)) {
+            Token symbol = stream.consume();
+            return new ExpNode.Unary(symbol, parseUnary(stream));
+        } else if (stream.isNow(TokenType.IDENFR) && stream.isNext(1, TokenType.LPARENT)) {
+            // 与UnaryExp_IdentFuncCall()使用相同的place，保证错误信息一致
+            String place = "UnaryExp_IdentFuncCall()";
+            Token ident = stream.consume();
+            Token lparentToken = stream.consume();
+            FuncRParams funcRParams = Exp.isFirst(stream) ? new FuncRParams(stream) : null;
+            Token rparentToken = stream.consumeOrError(place, ErrorType.MISSING_RPARENT, TokenType.RPARENT);
+            return new ExpNode.Call(ident, lparentToken, funcRParams, rparentToken);
+        } else if (stream.isNow(TokenType.LPARENT)) {
+            // 与PrimaryExp_Exp()使用相同的place，保证错误信息一致
+            String place = "PrimaryExp_Exp()";
+            Token lparentToken = stream.consume();
+            ExpNode exp = parse(stream, ADD);
+            Token rparentToken = stream.consumeOrError(place, ErrorType.MISSING_RPARENT, TokenType.RPARENT);
+            return new ExpNode.Paren(lparentToken, exp, rparentToken);
+        } else if (stream.isNow(TokenType.IDENFR)) {
+            return new ExpNode.Variable(new LVal(stream));
+        } else if (stream.isNow(TokenType.INTCON, TokenType.CHRCON)) {
+            return new ExpNode.Constant(stream.consume());
+        } else {
+            throw new CatchableUnexpectedToken("When ExpParser.parseUnary(), unexpected token: " + stream.getNow());
+        }
+    }
+
+    private ExpParser() {
+    }
+}
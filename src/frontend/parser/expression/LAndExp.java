@@ -26,7 +26,7 @@ public class LAndExp implements ASTNode {
         }
     }
 
-    private LAndExp(List<EqExp> lAndExpsSubList, List<Token> symbolsSubList) {
+    LAndExp(List<EqExp> lAndExpsSubList, List<Token> symbolsSubList) {
         eqExps = new ArrayList<>(lAndExpsSubList);
         symbols = new ArrayList<>(symbolsSubList);
     }
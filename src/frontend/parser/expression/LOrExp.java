@@ -26,7 +26,7 @@ public class LOrExp implements ASTNode {
         }
     }
 
-    private LOrExp(List<LAndExp> lAndExpsSubList, List<Token> symbolsSubList) {
+    LOrExp(List<LAndExp> lAndExpsSubList, List<Token> symbolsSubList) {
         lAndExps = new ArrayList<>(lAndExpsSubList);
         symbols = new ArrayList<>(symbolsSubList);
     }
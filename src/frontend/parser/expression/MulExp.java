@@ -27,7 +27,7 @@ public class MulExp implements ASTNode {
     }
 
     // 按照左递归文法构建
-    private MulExp(List<UnaryExp> unaryExpsSubList, List<Token> symbolsSubList) {
+    MulExp(List<UnaryExp> unaryExpsSubList, List<Token> symbolsSubList) {
         unaryExps = new ArrayList<>(unaryExpsSubList);
         symbols = new ArrayList<>(symbolsSubList);
     }
@@ -16,6 +16,10 @@ public class Number implements ASTNode {
         intConst = stream.consumeOrThrow(place, TokenType.INTCON);
     }
 
+    Number(Token intConst) {
+        this.intConst = intConst;
+    }
+
     @Override
     public ArrayList<Object> explore() {
         ArrayList<Object> ret = new ArrayList<>();
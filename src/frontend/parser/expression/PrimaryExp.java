@@ -7,7 +7,7 @@ import frontend.type.*;
 import java.util.ArrayList;
 
 public class PrimaryExp extends ASTNodeWithOption<PrimaryExp.PrimaryExpOption> {
-    private PrimaryExp(PrimaryExpOption option) {
+    PrimaryExp(PrimaryExpOption option) {
         super(option);
     }
 
@@ -45,6 +45,12 @@ public class PrimaryExp extends ASTNodeWithOption<PrimaryExp.PrimaryExpOption> {
             rparentToken = stream.consumeOrError(place, ErrorType.MISSING_RPARENT, TokenType.RPARENT);
         }
 
+        PrimaryExp_Exp(Token lparentToken, Exp exp, Token rparentToken) {
+            this.lparentToken = lparentToken;
+            this.exp = exp;
+            this.rparentToken = rparentToken;
+        }
+
         @Override
         public ArrayList<Object> explore() {
             ArrayList<Object> ret = new ArrayList<>();
@@ -67,6 +73,10 @@ public class PrimaryExp extends ASTNodeWithOption<PrimaryExp.PrimaryExpOption> {
             lVal = new LVal(stream);
         }
 
+        PrimaryExp_LVal(LVal lVal) {
+            this.lVal = lVal;
+        }
+
         @Override
         public ArrayList<Object> explore() {
             ArrayList<Object> ret = new ArrayList<>();
@@ -87,6 +97,10 @@ public class PrimaryExp extends ASTNodeWithOption<PrimaryExp.PrimaryExpOption> {
             number = new Number(stream);
         }
 
+        PrimaryExp_Number(Number number) {
+            this.number = number;
+        }
+
         @Override
         public ArrayList<Object> explore() {
             ArrayList<Object> ret = new ArrayList<>();
@@ -106,6 +120,10 @@ public class PrimaryExp extends ASTNodeWithOption<PrimaryExp.PrimaryExpOption> {
             character = new Character(stream);
         }
 
+        PrimaryExp_Character(Character character) {
+            this.character = character;
+        }
+
         @Override
         public ArrayList<Object> explore() {
             ArrayList<Object> ret = new ArrayList<>();
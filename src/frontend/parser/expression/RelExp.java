@@ -26,7 +26,7 @@ public class RelExp implements ASTNode {
         }
     }
 
-    private RelExp(List<AddExp> RelExpsSubList, List<Token> symbolsSubList) {
+    RelExp(List<AddExp> RelExpsSubList, List<Token> symbolsSubList) {
         addExps = new ArrayList<>(RelExpsSubList);
         symbols = new ArrayList<>(symbolsSubList);
     }
@@ -7,7 +7,7 @@ import frontend.type.*;
 import java.util.ArrayList;
 
 public class UnaryExp extends ASTNodeWithOption<UnaryExp.UnaryExpOption> {
-    private UnaryExp(UnaryExpOption option) {
+    UnaryExp(UnaryExpOption option) {
         super(option);
     }
 
@@ -40,6 +40,10 @@ public class UnaryExp extends ASTNodeWithOption<UnaryExp.UnaryExpOption> {
             primaryExp = PrimaryExp.parse(stream);
         }
 
+        UnaryExp_PrimaryExp(PrimaryExp primaryExp) {
+            this.primaryExp = primaryExp;
+        }
+
         @Override
         public ArrayList<Object> explore() {
             ArrayList<Object> ret = new ArrayList<>();
@@ -64,24 +68,18 @@ public class UnaryExp extends ASTNodeWithOption<UnaryExp.UnaryExpOption> {
             ident = stream.consumeOrThrow(place, TokenType.IDENFR);
             lparentToken = stream.consumeOrThrow(place, TokenType.LPARENT);
             // FuncRParams → Exp { ',' Exp }
-            FuncRParams tryfuncRParams;
-            int checkpointID = stream.checkpoint("IdentFuncCallTry");
-            try {
-                new Exp(stream);
-                stream.restore(checkpointID);
-                tryfuncRParams = new FuncRParams(stream);
-            } catch (CatchableUnexpectedToken e) {
-                // 尝试读取一次Exp，如果有RuntimeError并且和checkpoint的比较偏移为0，说明没有Exp，也就是没有funcRParams
-                if (stream.offset(checkpointID) == 0) {
-                    tryfuncRParams = null;
-                } else {
-                    throw e;
-                }
-            }
-            funcRParams = tryfuncRParams;
+            // 当前Token可以作为Exp的开始时，才有FuncRParams
+            funcRParams = Exp.isFirst(stream) ? new FuncRParams(stream) : null;
             rparentToken = stream.consumeOrError(place, ErrorType.MISSING_RPARENT, TokenType.RPARENT);
         }
 
+        UnaryExp_IdentFuncCall(Token ident, Token lparentToken, FuncRParams funcRParams, Token rparentToken) {
+            this.ident = ident;
+            this.lparentToken = lparentToken;
+            this.funcRParams = funcRParams;
+            this.rparentToken = rparentToken;
+        }
+
         @Override
         public ArrayList<Object> explore() {
             ArrayList<Object> ret = new ArrayList<>();
@@ -113,6 +111,11 @@ public class UnaryExp extends ASTNodeWithOption<UnaryExp.UnaryExpOption> {
             unaryExp = UnaryExp.parse(stream);
         }
 
+        UnaryExp_UnaryOp(UnaryOp unaryOp, UnaryExp unaryExp) {
+            this.unaryOp = unaryOp;
+            this.unaryExp = unaryExp;
+        }
+
         @Override
         public ArrayList<Object> explore() {
             ArrayList<Object> ret = new ArrayList<>();
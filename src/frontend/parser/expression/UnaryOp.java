@@ -16,6 +16,10 @@ public class UnaryOp implements ASTNode {
         symbol = stream.consumeOrThrow(place, TokenType.PLUS, TokenType.MINU, TokenType.NOT);
     }
 
+    UnaryOp(Token symbol) {
+        this.symbol = symbol;
+    }
+
     @Override
     public ArrayList<Object> explore() {
         ArrayList<Object> ret = new ArrayList<>();
@@ -7,7 +7,6 @@ import frontend.parser.expression.Exp;
 import frontend.parser.expression.LVal;
 import frontend.type.ASTNodeOption;
 import frontend.type.ASTNodeWithOption;
-import frontend.type.CatchableUnexpectedToken;
 import frontend.type.TokenType;
 import frontend.type.ErrorType;
 
@@ -48,20 +47,28 @@ public class Stmt extends ASTNodeWithOption<Stmt.StmtOption> implements BlockIte
                 //      | Exp ';'
                 //      | LVal '=' 'getint' '(' ')' ';'
                 //      | LVal '=' 'getchar' '(' ')' ';'
+                // 先按Exp解析，若其后为'='且Exp仅由一个LVal构成，则直接将该LVal用于赋值语句，不再回溯重新解析
                 int checkpointID = stream.checkpoint("StmtTry");
                 Exp tryExp = new Exp(stream);
                 if (stream.isNow(TokenType.ASSIGN)) {
-                    if (stream.isNext(1, TokenType.GETINTTK)) {
+                    boolean isGetint = stream.isNext(1, TokenType.GETINTTK);
+                    boolean isGetchar = stream.isNext(1, TokenType.GETCHARTK);
+                    LVal lVal = tryExp.lValOrNull();
+                    if (lVal == null) {
+                        // '='之前不是LVal，程序不合法，恢复检查点后按照LVal解析，由此给出对应的异常
                         stream.restore(checkpointID);
-                        yield new Stmt(new Stmt_LValGetint(stream));
-                    } else if (stream.isNext(1, TokenType.GETCHARTK)) {
-                        stream.restore(checkpointID);
-                        yield new Stmt(new Stmt_LValGetchar(stream));
+                        lVal = new LVal(stream);
+                    }
+                    stream.release(checkpointID);
+                    if (isGetint) {
+                        yield new Stmt(new Stmt_LValGetint(lVal, stream));
+                    } else if (isGetchar) {
+                        yield new Stmt(new Stmt_LValGetchar(lVal, stream));
                     } else {
-                        stream.restore(checkpointID);
-                        yield new Stmt(new Stmt_LValAssign(stream));
+                        yield new Stmt(new Stmt_LValAssign(lVal, stream));
                     }
                 } else {
+                    stream.release(checkpointID);
                     yield new Stmt(new Stmt_Exp(tryExp, stream));
                 }
             }
@@ -75,9 +82,9 @@ public class Stmt extends ASTNodeWithOption<Stmt.StmtOption> implements BlockIte
         private final Exp exp;
         private final Token semicnToken;
 
-        private Stmt_LValAssign(TokenStream stream) {
+        private Stmt_LValAssign(LVal lVal, TokenStream stream) {
             String place = "Stmt_LValAssign()";
-            lVal = new LVal(stream);
+            this.lVal = lVal;
             assignToken = stream.consumeOrThrow(place, TokenType.ASSIGN);
             exp = new Exp(stream);
             semicnToken = stream.consumeOrError(place, ErrorType.MISSING_SEMICN, TokenType.SEMICN);
@@ -332,19 +339,8 @@ public class Stmt extends ASTNodeWithOption<Stmt.StmtOption> implements BlockIte
         private Stmt_Return(TokenStream stream) {
             String place = "Stmt_Return()";
             returnToken = stream.consumeOrThrow(place, TokenType.RETURNTK);
-            Exp tryExp;
-            int checkpointID = stream.checkpoint("ReturnTry");
-            try {
-                tryExp = new Exp(stream);
-            } catch (CatchableUnexpectedToken e) {
-                // 尝试读取一次Exp，如果有RuntimeError并且和checkpoint的比较偏移为0，说明没有Exp
-                if (stream.offset(checkpointID) == 0) {
-                    tryExp = null;
-                } else {
-                    throw e;
-                }
-            }
-            exp = tryExp;
+            // 当前Token可以作为Exp的开始时，才有Exp
+            exp = Exp.isFirst(stream) ? new Exp(stream) : null;
             semicnToken = stream.consumeOrError(place, ErrorType.MISSING_SEMICN, TokenType.SEMICN);
         }
 
@@ -377,9 +373,9 @@ public class Stmt extends ASTNodeWithOption<Stmt.StmtOption> implements BlockIte
         private final Token rparentToken;
         private final Token semicnToken;
 
-        private Stmt_LValGetint(TokenStream stream) {
+        private Stmt_LValGetint(LVal lVal, TokenStream stream) {
             String place = "Stmt_LValGetint()";
-            lVal = new LVal(stream);
+            this.lVal = lVal;
             assignToken = stream.consumeOrThrow(place, TokenType.ASSIGN);
             getintToken = stream.consumeOrThrow(place, TokenType.GETINTTK);
             lparentToken = stream.consumeOrThrow(place, TokenType.LPARENT);
@@ -413,9 +409,9 @@ public class Stmt extends ASTNodeWithOption<Stmt.StmtOption> implements BlockIte
         private final Token rparentToken;
         private final Token semicnToken;
 
-        private Stmt_LValGetchar(TokenStream stream) {
+        private Stmt_LValGetchar(LVal lVal, TokenStream stream) {
             String place = "Stmt_LValGetint()";
-            lVal = new LVal(stream);
+            this.lVal = lVal;
             assignToken = stream.consumeOrThrow(place, TokenType.ASSIGN);
             getcharToken = stream.consumeOrThrow(place, TokenType.GETCHARTK);
             lparentToken = stream.consumeOrThrow(place, TokenType.LPARENT);
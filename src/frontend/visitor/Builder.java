@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 class Builder {
     private final IRModule irModule;
@@ -25,15 +26,41 @@ class Builder {
     private final HashMap<String, IRGlobalVariable> constStr;
     // 当前访问的函数
     private IRFunction nowFunction = null;
+    // 是否是fork得到的Builder
+    private final boolean forked;
 
     Builder(IRModule irModule) {
         this.irModule = irModule;
         this.libFunctions = getLibFunctions();
         this.constStr = new HashMap<>();
+        this.forked = false;
         // 将库函数的定义添加到IRModule中
         this.libFunctions.forEach((name, function) -> irModule.appendFunctions(function));
     }
 
+    // 创建生成一个函数所用的Builder，与parent共享IRModule和库函数
+    // 静态字符串按照首次使用的顺序暂存，不加入IRModule，由join()并入parent
+    private Builder(Builder parent) {
+        this.irModule = parent.irModule;
+        this.libFunctions = parent.libFunctions;
+        this.constStr = new LinkedHashMap<>();
+        this.forked = true;
+    }
+
+    Builder fork() {
+        return new Builder(this);
+    }
+
+    // 按函数的顺序接受fork得到的Builder暂存的静态字符串，命名和在IRModule中的顺序与顺序生成相同
+    void join(Builder forked) {
+        forked.constStr.forEach((str, forkedConstStr) -> {
+            if (!this.constStr.containsKey(str)) {
+                this.constStr.put(str, this.newConstStr(forkedConstStr.type().referenceType(), forkedConstStr.initVals()));
+            }
+            forkedConstStr.replaceAllUsesWith(this.constStr.get(str));
+        });
+    }
+
     private static HashMap<String, IRFunction> getLibFunctions() {
         HashMap<String, IRFunction> libFunctions = new HashMap<>();
         // 库函数均为声明，无需给出Argument
@@ -49,7 +76,7 @@ class Builder {
         parameters = new ArrayList<>(Collections.singletonList(IRType.getInt32Ty()));
         libFunctions.put("putch", new IRFunction("putch", new FunctionType(IRType.getVoidTy(), parameters)));
         // declare void @putstr(i8*)  输出字符串
-        parameters = new ArrayList<>(Collections.singletonList(new PointerType(IRType.getInt8Ty(), false)));
+        parameters = new ArrayList<>(Collections.singletonList(IRType.getPointerTy(IRType.getInt8Ty(), false)));
         libFunctions.put("putstr", new IRFunction("putstr", new FunctionType(IRType.getVoidTy(), parameters)));
         return libFunctions;
     }
@@ -59,7 +86,7 @@ class Builder {
         if (constSymbol.type() instanceof IntegerType constSymbolType) {
             globalConstant = new IRGlobalVariable(constSymbol.name(), constSymbol.type(),
                     true, false,
-                    new ConstantInt(constSymbolType, constSymbol.initVals().get(0)));
+                    ConstantInt.get(constSymbolType, constSymbol.initVals().get(0)));
         } else if (constSymbol.type() instanceof ArrayType constSymbolType) {
             Pair<IRType, IRConstant<?>> optimizedArray = optimizeGlobalArray(constSymbolType, constSymbol.initVals());
             globalConstant = new IRGlobalVariable(constSymbol.name(), optimizedArray.key(),
@@ -78,7 +105,7 @@ class Builder {
         if (varSymbol.type() instanceof IntegerType varSymbolType) {
             globalConstant = new IRGlobalVariable(varSymbol.name(), varSymbol.type(),
                     false, false,
-                    new ConstantInt(varSymbolType, initVals.get(0)));
+                    ConstantInt.get(varSymbolType, initVals.get(0)));
         } else if (varSymbol.type() instanceof ArrayType varSymbolType) {
             Pair<IRType, IRConstant<?>> optimizedArray = optimizeGlobalArray(varSymbolType, initVals);
             globalConstant = new IRGlobalVariable(varSymbol.name(), optimizedArray.key(),
@@ -103,41 +130,29 @@ class Builder {
             return new Pair<>(originType, new ConstantAggregateZero(originType));
         } else if (Config.disableLongArrayOptimization || originInitVals.size() - 1 - lastNotZero < 10) {
             // 如果不对长数组做优化或者结尾非0的数据不足10个，那么保留原样
-            ArrayList<IRConstant<?>> constantValues = new ArrayList<>(convertInitValIntegerArray(originType, originInitVals, -1));
-            return new Pair<>(originType, new ConstantArray(originType, constantValues));
+            return new Pair<>(originType, new ConstantDataArray(originType, toElementValues(originInitVals, originInitVals.size())));
         } else {
-            // 如果结尾有较多的0，转换为结构体使用
-            ArrayList<IRType> structMemberTypes = new ArrayList<>();
-            // 有数据的部分
-            for (int i = 0; i <= lastNotZero; i++) {
-                structMemberTypes.add(originType.elementType());
-            }
-            // 均为0的部分
-            ArrayType zeroPartType = new ArrayType(originType.elementType(), originInitVals.size() - 1 - lastNotZero);
-            structMemberTypes.add(zeroPartType);
+            // 如果结尾有较多的0，转换为结构体使用：有数据的部分与均为0的部分各为一个数组
+            ArrayType dataPartType = IRType.getArrayTy(originType.elementType(), lastNotZero + 1);
+            ArrayType zeroPartType = IRType.getArrayTy(originType.elementType(), originInitVals.size() - 1 - lastNotZero);
             // 结构体类型
-            StructType structType = new StructType(structMemberTypes);
+            StructType structType = new StructType(new ArrayList<>(Arrays.asList(dataPartType, zeroPartType)));
+            ArrayList<IRConstant<?>> constantValues = new ArrayList<>();
             // 有数据的部分的数据
-            ArrayList<IRConstant<?>> constantValues = new ArrayList<>(convertInitValIntegerArray(originType, originInitVals, lastNotZero));
+            constantValues.add(new ConstantDataArray(dataPartType, toElementValues(originInitVals, lastNotZero + 1)));
             // 均为0的部分使用zeroinitializer
             constantValues.add(new ConstantAggregateZero(zeroPartType));
             return new Pair<>(structType, new ConstantStruct(structType, constantValues));
         }
     }
 
-    private static ArrayList<ConstantInt> convertInitValIntegerArray(ArrayType type, ArrayList<Integer> initVals, int endIndex) {
-        ArrayList<ConstantInt> constantValues = new ArrayList<>();
-        if (endIndex < 0) {
-            endIndex = initVals.size() - 1;
-        } else if (endIndex >= initVals.size()) {
-            throw new IndexOutOfBoundsException("When convertInitValIntegerArray(), endIndex is greater than the getBitWidth of initVals. " +
-                    "Got " + endIndex + ", expected " + initVals.size());
-        }
-        for (int i = 0; i <= endIndex; i++) {
-            // CAST 由于BType只有int和char，此处强制转换不会出错
-            constantValues.add(new ConstantInt((IntegerType) type.elementType(), initVals.get(i)));
+    // 取initVals的前length个值
+    private static int[] toElementValues(ArrayList<Integer> initVals, int length) {
+        int[] elementValues = new int[length];
+        for (int i = 0; i < length; i++) {
+            elementValues[i] = initVals.get(i);
         }
-        return constantValues;
+        return elementValues;
     }
 
     IRFunction addFunction(FuncSymbol funcSymbol, ArrayList<Argument> arguments) {
@@ -176,13 +191,13 @@ class Builder {
     AllocaInst addLocalConstant(ConstSymbol constSymbol, IRBasicBlock defBlock, IRBasicBlock insertBlock) {
         AllocaInst allocaInst = new AllocaInst(constSymbol.type(), defBlock);
         if (constSymbol.type() instanceof IntegerType constSymbolType) {
-            new StoreInst(new ConstantInt(constSymbolType, constSymbol.initVals().get(0)), allocaInst, insertBlock);
+            new StoreInst(ConstantInt.get(constSymbolType, constSymbol.initVals().get(0)), allocaInst, insertBlock);
         } else if (constSymbol.type() instanceof ArrayType constSymbolType) {
             for (int i = 0; i < constSymbol.initVals().size(); i++) {
                 GetElementPtrInst arrayElementPointer =
-                        this.addGetArrayElementPointer(allocaInst, new ConstantInt(IRType.getInt32Ty(), i), insertBlock);
+                        this.addGetArrayElementPointer(allocaInst, ConstantInt.get(IRType.getInt32Ty(), i), insertBlock);
                 // CAST 由于BType只有int和char，此处强制转换不会出错
-                new StoreInst(new ConstantInt((IntegerType) constSymbolType.elementType(), constSymbol.initVals().get(i)),
+                new StoreInst(ConstantInt.get((IntegerType) constSymbolType.elementType(), constSymbol.initVals().get(i)),
                         arrayElementPointer, insertBlock);
             }
         } else {
@@ -202,7 +217,7 @@ class Builder {
             } else if (varSymbol.type() instanceof ArrayType) {
                 for (int i = 0; i < initVals.size(); i++) {
                     GetElementPtrInst arrayElementPointer =
-                            this.addGetArrayElementPointer(allocaInst, new ConstantInt(IRType.getInt32Ty(), i), insertBlock);
+                            this.addGetArrayElementPointer(allocaInst, ConstantInt.get(IRType.getInt32Ty(), i), insertBlock);
                     // CAST 由于BType只有int和char，此处强制转换不会出错
                     this.storeLVal(initVals.get(i), arrayElementPointer, insertBlock);
                 }
@@ -219,19 +234,25 @@ class Builder {
         strChar.forEach(c -> sb.append((char) c.byteValue()));
         String str = sb.toString();
         if (!this.constStr.containsKey(str)) {
-            ArrayType constStrArrayType = new ArrayType(IRType.getInt8Ty(), strChar.size());
-            ConstantArray constStrArray = new ConstantArray(constStrArrayType,
-                    new ArrayList<>(strChar.stream().map(c -> new ConstantInt(IRType.getInt8Ty(), c)).toList()));
-            IRGlobalVariable constStrGlobalVariable =
-                    new IRGlobalVariable(".str." + this.constStr.size(), constStrArrayType,
-                            true, true,
-                            constStrArray);
-            irModule.appendGlobalVariables(constStrGlobalVariable);
-            this.constStr.put(str, constStrGlobalVariable);
+            ArrayType constStrArrayType = IRType.getArrayTy(IRType.getInt8Ty(), strChar.size());
+            ConstantDataArray constStrArray = new ConstantDataArray(constStrArrayType, toElementValues(strChar, strChar.size()));
+            this.constStr.put(str, this.newConstStr(constStrArrayType, constStrArray));
         }
         return this.constStr.get(str);
     }
 
+    private IRGlobalVariable newConstStr(IRType type, IRConstant<?> initVals) {
+        IRGlobalVariable constStrGlobalVariable =
+                new IRGlobalVariable(".str." + this.constStr.size(), type,
+                        true, true,
+                        initVals);
+        // fork得到的Builder中的名字只是暂时的，join()时会被替换
+        if (!this.forked) {
+            irModule.appendGlobalVariables(constStrGlobalVariable);
+        }
+        return constStrGlobalVariable;
+    }
+
     GetElementPtrInst addGetArrayElementPointer(IRValue<PointerType> pointer, IRValue<IntegerType> index, IRBasicBlock insertBlock) {
         // 在SysY中，只有一维数组，访问时就分为两种情况
         if (pointer.type().referenceType() instanceof ArrayType) {
@@ -271,7 +292,7 @@ class Builder {
         return new LoadInst(lValAddress, insertBlock);
     }
 
-    BinaryOperator addBinaryOperation(Token symbol, IRValue<IntegerType> value1, IRValue<IntegerType> value2, IRBasicBlock insertBlock) {
+    IRValue<IntegerType> addBinaryOperation(Token symbol, IRValue<IntegerType> value1, IRValue<IntegerType> value2, IRBasicBlock insertBlock) {
         // 自动处理类型转换
         if (value1.type().getBitWidth() < IRType.getInt32Ty().getBitWidth()) {
             value1 = this.addExtendOperation(value1, IRType.getInt32Ty(), insertBlock);
@@ -279,15 +300,74 @@ class Builder {
         if (value2.type().getBitWidth() < IRType.getInt32Ty().getBitWidth()) {
             value2 = this.addExtendOperation(value2, IRType.getInt32Ty(), insertBlock);
         }
-        return switch (symbol.type()) {
-            case PLUS -> new BinaryOperator(BinaryOperator.BinaryOps.ADD, value1, value2, insertBlock);
-            case MINU -> new BinaryOperator(BinaryOperator.BinaryOps.SUB, value1, value2, insertBlock);
-            case MULT -> new BinaryOperator(BinaryOperator.BinaryOps.MUL, value1, value2, insertBlock);
-            case DIV -> new BinaryOperator(BinaryOperator.BinaryOps.DIV, value1, value2, insertBlock);
-            case MOD -> new BinaryOperator(BinaryOperator.BinaryOps.MOD, value1, value2, insertBlock);
+        BinaryOperator.BinaryOps binaryOp = switch (symbol.type()) {
+            case PLUS -> BinaryOperator.BinaryOps.ADD;
+            case MINU -> BinaryOperator.BinaryOps.SUB;
+            case MULT -> BinaryOperator.BinaryOps.MUL;
+            case DIV -> BinaryOperator.BinaryOps.DIV;
+            case MOD -> BinaryOperator.BinaryOps.MOD;
             default ->
                     throw new RuntimeException("When addBinaryOperation(), illegal symbol type. Got " + symbol.type());
         };
+        IRValue<IntegerType> foldedValue = Config.visitorConstantFolding ? foldBinaryOperation(binaryOp, value1, value2) : null;
+        return foldedValue != null ? foldedValue : new BinaryOperator(binaryOp, value1, value2, insertBlock);
+    }
+
+    // 两个操作数都是常数，或者满足代数恒等式时，不生成指令，直接给出结果；否则返回null
+    // 规则与CalculateConst相同，其中操作数已经计算过，不会丢失副作用
+    private static IRValue<IntegerType> foldBinaryOperation(BinaryOperator.BinaryOps binaryOp,
+                                                            IRValue<IntegerType> value1, IRValue<IntegerType> value2) {
+        if (value1 instanceof ConstantInt constantInt1 && value2 instanceof ConstantInt constantInt2) {
+            int constantValue1 = constantInt1.constantValue();
+            int constantValue2 = constantInt2.constantValue();
+            if ((binaryOp == BinaryOperator.BinaryOps.DIV || binaryOp == BinaryOperator.BinaryOps.MOD) && constantValue2 == 0) {
+                // 除0是未定义行为，保留指令
+                return null;
+            }
+            return ConstantInt.get(value1.type(), switch (binaryOp) {
+                case ADD -> constantValue1 + constantValue2;
+                case SUB -> constantValue1 - constantValue2;
+                case MUL -> constantValue1 * constantValue2;
+                case DIV -> constantValue1 / constantValue2;
+                case MOD -> constantValue1 % constantValue2;
+            });
+        } else if (value1 instanceof ConstantInt constantInt1) {
+            if (constantInt1.constantValue() == 0) {
+                if (binaryOp == BinaryOperator.BinaryOps.ADD) {
+                    // 0 + x = x
+                    return value2;
+                } else if (binaryOp != BinaryOperator.BinaryOps.SUB) {
+                    // 0 * x = 0
+                    // 0 / x = 0 (此时x未知是否为0，但是除0是未定义行为，可直接优化掉）
+                    // 0 % x = 0 (此时x未知是否为0，但是模0是未定义行为，可直接优化掉）
+                    return ConstantInt.get(value1.type(), 0);
+                }
+            } else if (constantInt1.constantValue() == 1 && binaryOp == BinaryOperator.BinaryOps.MUL) {
+                // 1 * x = x
+                return value2;
+            }
+        } else if (value2 instanceof ConstantInt constantInt2) {
+            if (constantInt2.constantValue() == 0) {
+                if (binaryOp == BinaryOperator.BinaryOps.ADD || binaryOp == BinaryOperator.BinaryOps.SUB) {
+                    // x + 0 = x
+                    // x - 0 = x
+                    return value1;
+                } else if (binaryOp == BinaryOperator.BinaryOps.MUL) {
+                    // x * 0 = 0
+                    return ConstantInt.get(value1.type(), 0);
+                }
+            } else if (constantInt2.constantValue() == 1) {
+                if (binaryOp == BinaryOperator.BinaryOps.MUL || binaryOp == BinaryOperator.BinaryOps.DIV) {
+                    // x * 1 = x
+                    // x / 1 = x
+                    return value1;
+                } else if (binaryOp == BinaryOperator.BinaryOps.MOD) {
+                    // x % 1 = 0
+                    return ConstantInt.get(value1.type(), 0);
+                }
+            }
+        }
+        return null;
     }
 
     CallInst addCallFunction(IRFunction function, ArrayList<IRValue<?>> arguments, IRBasicBlock insertBlock) {
@@ -304,11 +384,21 @@ class Builder {
         }
     }
 
-    CastInst.TruncInst addTruncOperation(IRValue<IntegerType> src, IntegerType destType, IRBasicBlock insertBlock) {
+    IRValue<IntegerType> addTruncOperation(IRValue<IntegerType> src, IntegerType destType, IRBasicBlock insertBlock) {
+        if (Config.visitorConstantFolding && src instanceof ConstantInt constantInt) {
+            // ConstantInt会按照位宽截断
+            return ConstantInt.get(destType, constantInt.constantValue());
+        }
         return new CastInst.TruncInst(src, destType, insertBlock);
     }
 
-    CastInst.ZExtInst addExtendOperation(IRValue<IntegerType> src, IntegerType destType, IRBasicBlock insertBlock) {
+    IRValue<IntegerType> addExtendOperation(IRValue<IntegerType> src, IntegerType destType, IRBasicBlock insertBlock) {
+        if (Config.visitorConstantFolding && src instanceof ConstantInt constantInt) {
+            // ConstantInt按有符号数存储，零扩展时需要去掉高位
+            int srcBitWidth = src.type().getBitWidth();
+            int srcMask = srcBitWidth < IRType.getInt32Ty().getBitWidth() ? (1 << srcBitWidth) - 1 : -1;
+            return ConstantInt.get(destType, constantInt.constantValue() & srcMask);
+        }
         return new CastInst.ZExtInst(src, destType, insertBlock);
     }
 
@@ -316,7 +406,8 @@ class Builder {
         return new CastInst.BitCastInst<>(src, destType, insertBlock);
     }
 
-    IcmpInst addIcmpOperation(Token symbol, IRValue<IntegerType> value1, IRValue<IntegerType> value2, IRBasicBlock insertBlock) {
+    IRValue<IntegerType> addIcmpOperation(Token symbol, IRValue<IntegerType> value1, IRValue<IntegerType> value2, IRBasicBlock insertBlock) {
+        IcmpInst.Predicate predicate;
         if (value2 != null) {
             // 自动处理类型转换
             if (value1.type().getBitWidth() < value2.type().getBitWidth()) {
@@ -324,27 +415,44 @@ class Builder {
             } else if (value1.type().getBitWidth() > value2.type().getBitWidth()) {
                 value2 = this.addExtendOperation(value2, value1.type(), insertBlock);
             }
-            return switch (symbol.type()) {
-                case LSS -> new IcmpInst(IcmpInst.Predicate.LT, value1, value2, insertBlock); // <
-                case GRE -> new IcmpInst(IcmpInst.Predicate.GT, value1, value2, insertBlock); // >
-                case LEQ -> new IcmpInst(IcmpInst.Predicate.LE, value1, value2, insertBlock); // <=
-                case GEQ -> new IcmpInst(IcmpInst.Predicate.GE, value1, value2, insertBlock); // >=
-                case EQL -> new IcmpInst(IcmpInst.Predicate.EQ, value1, value2, insertBlock); // ==
-                case NEQ -> new IcmpInst(IcmpInst.Predicate.NE, value1, value2, insertBlock); // !=
+            predicate = switch (symbol.type()) {
+                case LSS -> IcmpInst.Predicate.LT; // <
+                case GRE -> IcmpInst.Predicate.GT; // >
+                case LEQ -> IcmpInst.Predicate.LE; // <=
+                case GEQ -> IcmpInst.Predicate.GE; // >=
+                case EQL -> IcmpInst.Predicate.EQ; // ==
+                case NEQ -> IcmpInst.Predicate.NE; // !=
                 default ->
                         throw new RuntimeException("When addIcmpOperation(), illegal symbol type. Got " + symbol.type());
             };
         } else {
             if (symbol == null) {
                 // 如果EqExp层和RelExp层都没有做过比较那么在离开EqExp层需要做一次比较
-                return new IcmpInst(IcmpInst.Predicate.NE, value1, new ConstantInt(value1.type(), 0), insertBlock);
+                predicate = IcmpInst.Predicate.NE;
             } else if (symbol.type() == TokenType.NOT) {
                 // UnaryExp中的'!' UnaryExp
-                return new IcmpInst(IcmpInst.Predicate.EQ, value1, new ConstantInt(value1.type(), 0), insertBlock);
+                predicate = IcmpInst.Predicate.EQ;
             } else {
                 throw new RuntimeException("When addIcmpOperation(), value2 is null but the symbol type is not " + TokenType.NOT);
             }
+            value2 = ConstantInt.get(value1.type(), 0);
+        }
+        if (Config.visitorConstantFolding &&
+                value1 instanceof ConstantInt constantInt1 && value2 instanceof ConstantInt constantInt2) {
+            // ConstantInt按有符号数存储，与有符号比较一致
+            int constantValue1 = constantInt1.constantValue();
+            int constantValue2 = constantInt2.constantValue();
+            boolean result = switch (predicate) {
+                case LT -> constantValue1 < constantValue2;
+                case GT -> constantValue1 > constantValue2;
+                case LE -> constantValue1 <= constantValue2;
+                case GE -> constantValue1 >= constantValue2;
+                case EQ -> constantValue1 == constantValue2;
+                case NE -> constantValue1 != constantValue2;
+            };
+            return ConstantInt.get(IRType.getInt1Ty(), result ? 1 : 0);
         }
+        return new IcmpInst(predicate, value1, value2, insertBlock);
     }
 
     void addReturnInstruction(IRValue<IntegerType> returnValue, IRBasicBlock insertBlock) {
@@ -365,6 +473,9 @@ class Builder {
             new BranchInst(trueBlock, insertBlock);
         } else if (cond == null || falseBlock == null) {
             throw new RuntimeException("When addBranchInstruction(), cond is null or falseBlock is null, but not both of them are null.");
+        } else if (cond instanceof ConstantInt constantCond) {
+            // 条件在生成时已经确定，只跳转到一侧，另一侧不可到达的基本块由RemoveUnreachableBasicBlock消除
+            new BranchInst(constantCond.constantValue() != 0 ? trueBlock : falseBlock, insertBlock);
         } else {
             new BranchInst(cond, trueBlock, falseBlock, insertBlock);
         }
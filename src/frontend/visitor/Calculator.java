@@ -2,11 +2,14 @@ package frontend.visitor;
 
 import IR.type.ArrayType;
 import IR.type.IntegerType;
+import frontend.lexer.Token;
 import frontend.parser.expression.*;
 import frontend.type.TokenType;
 import frontend.visitor.symbol.ConstSymbol;
 import frontend.type.Symbol;
 
+import java.util.ArrayList;
+
 class Calculator {
     private final SymbolTable symbolTable;
 
@@ -15,11 +18,78 @@ class Calculator {
     }
 
     Integer calculateConstExp(ConstExp constExp) {
-        return this.calculateAddExp(constExp.addExp());
+        if (constExp.node() != null) {
+            return this.calculateExpNode(constExp.node());
+        } else {
+            return this.calculateAddExp(constExp.addExp());
+        }
     }
 
     Integer calculateExp(Exp exp) {
-        return this.calculateAddExp(exp.addExp());
+        if (exp.node() != null) {
+            return this.calculateExpNode(exp.node());
+        } else {
+            return this.calculateAddExp(exp.addExp());
+        }
+    }
+
+    // 运算符优先级分析得到的ExpNode，计算顺序与calculateAddExp()等相同
+    private Integer calculateExpNode(ExpNode node) {
+        if (node instanceof ExpNode.Binary) {
+            // 左结合的连续运算展开后依次计算
+            ArrayList<Token> symbols = new ArrayList<>();
+            ArrayList<ExpNode> operands = ExpNode.flatten(node, type -> true, symbols);
+            Integer result = this.calculateExpNode(operands.get(0));
+            for (int i = 0; i < symbols.size(); i++) {
+                Integer value = this.calculateExpNode(operands.get(i + 1));
+                if (symbols.get(i).type() == TokenType.PLUS) {
+                    result += value;
+                } else if (symbols.get(i).type() == TokenType.MINU) {
+                    result -= value;
+                } else if (symbols.get(i).type() == TokenType.MULT) {
+                    result *= value;
+                } else if (symbols.get(i).type() == TokenType.DIV) {
+                    // 发现了除以0，强制置为0
+                    if (value == 0) {
+                        result = 0;
+                        System.out.println("When calculateExpNode(), caught a division of error, forced the result to 0!");
+                    } else {
+                        result /= value;
+                    }
+                } else if (symbols.get(i).type() == TokenType.MOD) {
+                    result %= value;
+                } else {
+                    throw new RuntimeException("When calculateExpNode(), got unexpected symbol " + symbols.get(i)
+                            + ", expected " + TokenType.PLUS + "/" + TokenType.MINU + "/"
+                            + TokenType.MULT + "/" + TokenType.DIV + "/" + TokenType.MOD);
+                }
+            }
+            return result;
+        } else if (node instanceof ExpNode.Unary unary) {
+            if (unary.symbol().type() == TokenType.PLUS) {
+                return this.calculateExpNode(unary.operand());
+            } else if (unary.symbol().type() == TokenType.MINU) {
+                return -this.calculateExpNode(unary.operand());
+            } else {
+                throw new RuntimeException("When calculateExpNode(), got unexpected symbol " + unary.symbol()
+                        + ", expected " + TokenType.PLUS + "/" + TokenType.MINU);
+            }
+        } else if (node instanceof ExpNode.Paren paren) {
+            return this.calculateExpNode(paren.exp());
+        } else if (node instanceof ExpNode.Variable variable) {
+            return this.calculateLVal(variable.lVal());
+        } else if (node instanceof ExpNode.Constant constant && constant.token().type() == TokenType.INTCON) {
+            return Integer.parseInt(constant.token().strVal());
+        } else if (node instanceof ExpNode.Constant constant && constant.token().type() == TokenType.CHRCON) {
+            // 由于char参加运算的方式为先零拓展为int再参加运算，故此处可以直接提升为int
+            return Translator.translateCharConst(constant.token());
+        } else if (node instanceof ExpNode.Call call) {
+            throw new RuntimeException("When calculateExpNode(), used variable content, which identifier token is "
+                    + call.ident());
+        } else {
+            throw new RuntimeException("When calculateExpNode(), got unknown type of ExpNode ("
+                    + node.getClass().getSimpleName() + ")");
+        }
     }
 
     private Integer calculateAddExp(AddExp addExp) {
@@ -8,35 +8,94 @@ import global.Config;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 
 public class SymbolTable {
     private final ErrorTable errorTable;
 
-    private final LinkedList<HashMap<String, Symbol<?, ?>>> subTableStack;
+    // 名字到当前可见的符号，被遮蔽的同名符号通过shadowed串成栈，查找只需一次哈希
+    private final HashMap<String, Binding> bindings;
+    // 各作用域中插入的名字，弹出作用域时按此撤销bindings中的修改
+    private final LinkedList<ArrayList<String>> undoLogStack;
     private final ArrayList<ArrayList<Symbol<?, ?>>> symbolList;
     private final LinkedList<Integer> subSymbolListIndexStack;
+    // 全局作用域中各符号的插入顺序
+    private final IdentityHashMap<Symbol<?, ?>, Integer> globalOrders;
+
+    // fork得到的SymbolTable只读访问parent的全局作用域，其中只有先插入的parentVisibleCount个符号可见
+    // 保证与顺序访问时一样，函数中看不到在其之后定义的函数
+    private final SymbolTable parent;
+    private int parentVisibleCount;
+
+    // depth为符号所在作用域的层数，全局作用域为1
+    private record Binding(Symbol<?, ?> symbol, int depth, Binding shadowed) {
+    }
 
     SymbolTable(ErrorTable errorTable) {
         this.errorTable = errorTable;
-        this.subTableStack = new LinkedList<>();
+        this.bindings = new HashMap<>();
+        this.undoLogStack = new LinkedList<>();
         this.subSymbolListIndexStack = new LinkedList<>();
         this.symbolList = new ArrayList<>();
+        this.globalOrders = new IdentityHashMap<>();
+        this.parent = null;
+        this.parentVisibleCount = 0;
+    }
+
+    private SymbolTable(SymbolTable parent, ErrorTable errorTable) {
+        this.errorTable = errorTable;
+        this.bindings = new HashMap<>();
+        this.undoLogStack = new LinkedList<>();
+        this.subSymbolListIndexStack = new LinkedList<>();
+        this.symbolList = new ArrayList<>();
+        this.globalOrders = new IdentityHashMap<>();
+        this.parent = parent;
+        this.parentVisibleCount = parent.globalOrders.size();
+    }
+
+    // 创建访问一个函数所用的SymbolTable，错误登记到errorTable中
+    // 之后parent的全局作用域只能读取，函数的符号通过fork得到的SymbolTable插入
+    SymbolTable fork(ErrorTable errorTable) {
+        return new SymbolTable(this, errorTable);
+    }
+
+    // 按函数的顺序接受fork得到的SymbolTable登记的各作用域，结果与顺序访问相同
+    void join(SymbolTable forked) {
+        this.symbolList.addAll(forked.symbolList);
     }
 
     void push() {
-        this.subTableStack.push(new HashMap<>());
+        this.undoLogStack.push(new ArrayList<>());
         this.subSymbolListIndexStack.push(this.symbolList.size());
         this.symbolList.add(new ArrayList<>());
     }
 
     void pop() {
-        this.subTableStack.pop();
+        for (String name : this.undoLogStack.pop()) {
+            Binding shadowed = this.bindings.get(name).shadowed();
+            if (shadowed == null) {
+                this.bindings.remove(name);
+            } else {
+                this.bindings.put(name, shadowed);
+            }
+        }
         this.subSymbolListIndexStack.pop();
     }
 
     boolean insert(Symbol<?, ?> newSymbol) {
-        if (this.subTableStack.isEmpty() || this.subSymbolListIndexStack.isEmpty()) {
+        if (this.undoLogStack.isEmpty() && this.parent != null) {
+            // 尚未进入函数的作用域，插入parent的全局作用域，错误仍然登记到自己的错误处理表中
+            boolean ret = this.parent.insert(newSymbol, this.errorTable);
+            this.parentVisibleCount = this.parent.globalOrders.size();
+            return ret;
+        } else {
+            return this.insert(newSymbol, this.errorTable);
+        }
+    }
+
+    private boolean insert(Symbol<?, ?> newSymbol, ErrorTable errorTable) {
+        if (this.undoLogStack.isEmpty() || this.subSymbolListIndexStack.isEmpty()) {
             if (Config.visitorThrowable) {
                 throw new RuntimeException("The stack of sub symbol table is empty when insert symbol '" +
                         newSymbol.name() + "' at line" + newSymbol.line());
@@ -44,23 +103,27 @@ public class SymbolTable {
                 return false;
             }
         } else {
-            HashMap<String, Symbol<?, ?>> currentSubTable = this.subTableStack.peek();
-            ArrayList<Symbol<?, ?>> currentSymbolList = this.symbolList.get(this.subSymbolListIndexStack.peek());
-            if (currentSubTable.containsKey(newSymbol.name())) {
+            int depth = this.undoLogStack.size();
+            Binding lastBinding = this.bindings.get(newSymbol.name());
+            if (lastBinding != null && lastBinding.depth() == depth) {
                 errorTable.addErrorRecord(newSymbol.line(), ErrorType.DUPLICATED_IDENT,
                         "Duplicated symbol '" + newSymbol.name() + "' at line " + newSymbol.line() + ", " +
-                                "last defined at line " + currentSubTable.get(newSymbol.name()).line());
+                                "last defined at line " + lastBinding.symbol().line());
                 return false;
             } else {
-                currentSubTable.put(newSymbol.name(), newSymbol);
-                currentSymbolList.add(newSymbol);
+                this.bindings.put(newSymbol.name(), new Binding(newSymbol, depth, lastBinding));
+                this.undoLogStack.peek().add(newSymbol.name());
+                this.symbolList.get(this.subSymbolListIndexStack.peek()).add(newSymbol);
+                if (depth == 1) {
+                    this.globalOrders.put(newSymbol, this.globalOrders.size());
+                }
                 return true;
             }
         }
     }
 
     Symbol<?, ?> searchOrNull(Token ident) {
-        if (this.subTableStack.isEmpty()) {
+        if (this.undoLogStack.isEmpty() && this.parent == null) {
             if (Config.visitorThrowable) {
                 throw new RuntimeException("The stack of sub symbol table is empty when search symbol '" +
                         ident.strVal() + "' at line " + ident.line());
@@ -68,9 +131,15 @@ public class SymbolTable {
                 return null;
             }
         } else {
-            for (HashMap<String, Symbol<?, ?>> subTable : this.subTableStack) {
-                if (subTable.containsKey(ident.strVal())) {
-                    return subTable.get(ident.strVal());
+            Binding binding = this.bindings.get(ident.strVal());
+            if (binding != null) {
+                return binding.symbol();
+            }
+            if (this.parent != null) {
+                // parent此时只有全局作用域
+                Binding globalBinding = this.parent.bindings.get(ident.strVal());
+                if (globalBinding != null && this.parent.globalOrders.get(globalBinding.symbol()) < this.parentVisibleCount) {
+                    return globalBinding.symbol();
                 }
             }
             return null;
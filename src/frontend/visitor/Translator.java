@@ -118,9 +118,9 @@ class Translator {
                 }
             } else if (length >= 0) {
                 if (bType.type() == TokenType.CHARTK) {
-                    return new ArrayType(IRType.getInt8Ty(), length);
+                    return IRType.getArrayTy(IRType.getInt8Ty(), length);
                 } else { // bType.type() == TokenType.INTTK
-                    return new ArrayType(IRType.getInt32Ty(), length);
+                    return IRType.getArrayTy(IRType.getInt32Ty(), length);
                 }
             } else {
                 throw new RuntimeException("When getConstIRType(), the numElements " + length + " of " + bType + " is illegal");
@@ -141,9 +141,9 @@ class Translator {
                 }
             } else if (length >= 0) {
                 if (bType.type() == TokenType.CHARTK) {
-                    return new ArrayType(IRType.getInt8Ty(), length);
+                    return IRType.getArrayTy(IRType.getInt8Ty(), length);
                 } else { // bType.type() == TokenType.INTTK
-                    return new ArrayType(IRType.getInt32Ty(), length);
+                    return IRType.getArrayTy(IRType.getInt32Ty(), length);
                 }
             } else {
                 throw new RuntimeException("When getVarIRType(), the numElements " + length + " of " + bType + " is illegal");
@@ -157,9 +157,9 @@ class Translator {
         if (bType.type() == TokenType.INTTK || bType.type() == TokenType.CHARTK) {
             if (arrayDecay) {
                 if (bType.type() == TokenType.CHARTK) {
-                    return new PointerType(IRType.getInt8Ty(), true);
+                    return IRType.getPointerTy(IRType.getInt8Ty(), true);
                 } else { // bType.type() == TokenType.INTTK
-                    return new PointerType(IRType.getInt32Ty(), true);
+                    return IRType.getPointerTy(IRType.getInt32Ty(), true);
                 }
             } else {
                 if (bType.type() == TokenType.CHARTK) {
@@ -25,6 +25,8 @@ import util.Pair;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class Visitor {
     private final CompUnit compUnit;
@@ -51,6 +53,18 @@ public class Visitor {
         this.builder = new Builder(this.irModule);
     }
 
+    // 并行访问时，每个函数使用fork得到的Visitor，拥有独立的符号表、Builder和错误处理表
+    private Visitor(Visitor parent) {
+        this.compUnit = parent.compUnit;
+        this.errorTable = new ErrorTable();
+        this.symbolTable = parent.symbolTable.fork(this.errorTable);
+        this.calculator = new Calculator(this.symbolTable);
+        this.forEndBlocks = new LinkedList<>();
+        this.forTailBlocks = new LinkedList<>();
+        this.irModule = parent.irModule;
+        this.builder = parent.builder.fork();
+    }
+
     public SymbolTable getSymbolTable() {
         return this.symbolTable;
     }
@@ -64,10 +78,14 @@ public class Visitor {
         this.symbolTable.push();
         // 全局变量
         this.compUnit.decls().forEach(this::visitGlobalDecl);
-        // 各函数
-        this.compUnit.funcDefs().forEach(this::visitFuncDef);
-        // 主函数
-        this.visitMainFuncDef(this.compUnit.mainFuncDef());
+        if (Config.visitorParallel) {
+            this.visitFuncDefsInParallel();
+        } else {
+            // 各函数
+            this.compUnit.funcDefs().forEach(this::visitFuncDef);
+            // 主函数
+            this.visitMainFuncDef(this.compUnit.mainFuncDef());
+        }
         // 全局符号表弹出
         this.symbolTable.pop();
         this.finish = true;
@@ -88,9 +106,45 @@ public class Visitor {
         }
     }
 
+    // 先按顺序访问各函数的函数头，函数在符号表和IRModule中的顺序与顺序访问相同
+    // 再并行访问各函数体，最后按照函数的顺序接受各函数的符号、错误与静态字符串
+    private void visitFuncDefsInParallel() {
+        ArrayList<Visitor> forkedVisitors = new ArrayList<>();
+        ArrayList<ArrayList<ArgSymbol>> funcFParamsList = new ArrayList<>();
+        for (FuncDef funcDef : this.compUnit.funcDefs()) {
+            Visitor forkedVisitor = new Visitor(this);
+            funcFParamsList.add(forkedVisitor.visitFuncHead(funcDef));
+            forkedVisitors.add(forkedVisitor);
+        }
+        Visitor forkedMainVisitor = new Visitor(this);
+        forkedMainVisitor.builder.addMainFunction();
+        // 函数头全部访问完后，全局作用域不再改变，才可以开始并行访问
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < forkedVisitors.size(); i++) {
+            Visitor forkedVisitor = forkedVisitors.get(i);
+            ArrayList<ArgSymbol> funcFParams = funcFParamsList.get(i);
+            Block block = this.compUnit.funcDefs().get(i).block();
+            tasks.add(ForkJoinPool.commonPool().submit(() -> forkedVisitor.visitFuncBody(funcFParams, block)));
+        }
+        tasks.add(ForkJoinPool.commonPool().submit(() -> forkedMainVisitor.visitMainFuncBody(this.compUnit.mainFuncDef())));
+        forkedVisitors.add(forkedMainVisitor);
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).join();
+            this.errorTable.merge(forkedVisitors.get(i).errorTable);
+            this.symbolTable.join(forkedVisitors.get(i).symbolTable);
+            this.builder.join(forkedVisitors.get(i).builder);
+        }
+    }
+
     // FuncDef → FuncType Ident '(' [FuncFParams] ')' Block
     // FuncType → 'void' | 'int' | 'char'
     private void visitFuncDef(FuncDef funcDef) {
+        ArrayList<ArgSymbol> funcFParams = this.visitFuncHead(funcDef);
+        this.visitFuncBody(funcFParams, funcDef.block());
+    }
+
+    // FuncType Ident '(' [FuncFParams] ')'
+    private ArrayList<ArgSymbol> visitFuncHead(FuncDef funcDef) {
         // visitFuncType()
         Token funcType = funcDef.funcType().typeToken();
         Token ident = funcDef.ident();
@@ -110,13 +164,18 @@ public class Visitor {
         // 给函数符号对应的IRValue
         newFuncSymbol.setIRValue(this.builder.addFunction(newFuncSymbol,
                 new ArrayList<>(funcFParams.stream().map(ArgSymbol::argument).toList())));
+        return funcFParams;
+    }
+
+    // Block
+    private void visitFuncBody(ArrayList<ArgSymbol> funcFParams, Block block) {
         // 进入函数的作用域
         this.symbolTable.push();
         // 参数尝试进入符号表
         for (ArgSymbol argSymbol : funcFParams) {
             this.symbolTable.insert(argSymbol);
         }
-        this.visitFunctionBlock(funcFParams, funcDef.block());
+        this.visitFunctionBlock(funcFParams, block);
         // 离开函数的作用域
         this.symbolTable.pop();
     }
@@ -125,6 +184,10 @@ public class Visitor {
     private void visitMainFuncDef(MainFuncDef mainFuncDef) {
         // 主函数不需要进入符号表，也没有参数
         this.builder.addMainFunction();
+        this.visitMainFuncBody(mainFuncDef);
+    }
+
+    private void visitMainFuncBody(MainFuncDef mainFuncDef) {
         // 进入主函数的作用域
         this.symbolTable.push();
         this.visitFunctionBlock(new ArrayList<>(), mainFuncDef.block());
@@ -312,7 +375,7 @@ public class Visitor {
                 // 也不需要检查函数体内其他的 return 语句是否有值
                 // 报错，报错行号为函数结尾的’}’所在行号。强制补充一条返回0
                 this.errorTable.addErrorRecord(block.rbraceToken().line(), ErrorType.MISSING_RETURN);
-                this.builder.addReturnInstruction(new ConstantInt(returnIntegerType, 0), nowBlock);
+                this.builder.addReturnInstruction(ConstantInt.get(returnIntegerType, 0), nowBlock);
             }
         }
     }
@@ -372,7 +435,7 @@ public class Visitor {
                     } else if (varDef.initVal().getType() == InitVal.Type.STRING) {
                         // 只有char数组能用字符串值进行初始化，此处强制指定类型为char，如果给int[]初始化，会出现CastInst
                         initVals = new ArrayList<>(Translator.translateStringConst(varDef.initVal().stringConst()).stream()
-                                .map((character) -> new ConstantInt(IRType.getInt8Ty(), character)).toList());
+                                .map((character) -> ConstantInt.get(IRType.getInt8Ty(), character)).toList());
                     } else {
                         throw new RuntimeException("When visitLocalVarDecl(), initVals of identifier " + ident + " mismatch its type. " +
                                 "Got " + varDef.initVal().getType() + ", expected " + InitVal.Type.ARRAY + "/" + InitVal.Type.STRING);
@@ -383,7 +446,7 @@ public class Visitor {
                         // 补齐未显示写出的0
                         IntegerType initValType = bType.type() == TokenType.CHARTK ? IRType.getInt8Ty() : IRType.getInt32Ty();
                         for (int i = initVals.size(); i < length; i++) {
-                            initVals.add(new ConstantInt(initValType, 0));
+                            initVals.add(ConstantInt.get(initValType, 0));
                         }
                     }
                     newSymbol.setIRValue(this.builder.addLocalVariable(newSymbol, initVals, defBlock, nowBlock));
@@ -398,7 +461,55 @@ public class Visitor {
 
     // Exp → AddExp
     private IRValue<?> visitExp(Exp exp, IRBasicBlock insertBlock) {
-        return this.visitAddExp(exp.addExp(), insertBlock);
+        if (exp.node() != null) {
+            return this.visitExpNode(exp.node(), insertBlock);
+        } else {
+            return this.visitAddExp(exp.addExp(), insertBlock);
+        }
+    }
+
+    // 运算符优先级分析得到的ExpNode，直接按照结点生成指令，生成的顺序与visitAddExp()等相同
+    private IRValue<?> visitExpNode(ExpNode node, IRBasicBlock insertBlock) {
+        if (node instanceof ExpNode.Binary) {
+            // 左结合的连续运算，如a + b * c - d展开为[a, b * c, d]
+            ArrayList<Token> symbols = new ArrayList<>();
+            ArrayList<ExpNode> operands = ExpNode.flatten(node, type -> true, symbols);
+            // CAST SysY语法保证参与二元运算的值的类型为IntegerType，SysY中不存在指针类型的加减的（使用GetElementPtr）
+            IRValue<IntegerType> resultValue = IRValue.cast(this.visitExpNode(operands.get(0), insertBlock));
+            for (int i = 0; i < symbols.size(); i++) {
+                IRValue<IntegerType> newValue = IRValue.cast(this.visitExpNode(operands.get(i + 1), insertBlock));
+                resultValue = this.builder.addBinaryOperation(symbols.get(i), resultValue, newValue, insertBlock);
+            }
+            return resultValue;
+        } else if (node instanceof ExpNode.Unary unary) {
+            // CAST 并非函数调用处，SysY保证UnaryExp经过evaluation的类型为IntegerType
+            IRValue<IntegerType> operandValue = IRValue.cast(this.visitExpNode(unary.operand(), insertBlock));
+            if (unary.symbol().type() == TokenType.PLUS) {
+                return operandValue;
+            } else if (unary.symbol().type() == TokenType.MINU) {
+                return this.builder.addBinaryOperation(unary.symbol(), ConstantInt.ZERO_I32(), operandValue, insertBlock);
+            } else if (unary.symbol().type() == TokenType.NOT) {
+                // 仅在条件表达式中有可能出现
+                return this.builder.addIcmpOperation(unary.symbol(), operandValue, null, insertBlock);
+            } else {
+                throw new RuntimeException("When visitExpNode(), got unexpected symbol " + unary.symbol()
+                        + ", expected " + TokenType.PLUS + "/" + TokenType.MINU + "/" + TokenType.NOT);
+            }
+        } else if (node instanceof ExpNode.Paren paren) {
+            return this.visitExpNode(paren.exp(), insertBlock);
+        } else if (node instanceof ExpNode.Variable variable) {
+            return this.visitLValEvaluation(variable.lVal(), insertBlock);
+        } else if (node instanceof ExpNode.Constant constant && constant.token().type() == TokenType.INTCON) {
+            return ConstantInt.get(IRType.getInt32Ty(), Integer.parseInt(constant.token().strVal()));
+        } else if (node instanceof ExpNode.Constant constant && constant.token().type() == TokenType.CHRCON) {
+            // 根据C语言的标准，字符的类型为int
+            return ConstantInt.get(IRType.getInt32Ty(), Translator.translateCharConst(constant.token()));
+        } else if (node instanceof ExpNode.Call call) {
+            return this.visitFuncCall(call.ident(), call.funcRParams(), insertBlock);
+        } else {
+            throw new RuntimeException("When visitExpNode(), got unknown type of ExpNode ("
+                    + node.getClass().getSimpleName() + ")");
+        }
     }
 
     // AddExp → MulExp | AddExp ('+' | '−') MulExp
@@ -460,22 +571,26 @@ public class Visitor {
         } else if (unaryExpExtract instanceof UnaryExp.UnaryExp_PrimaryExp unaryExp_primaryExp) {
             return this.visitPrimaryExp(unaryExp_primaryExp.primaryExp(), insertBlock);
         } else if (unaryExpExtract instanceof UnaryExp.UnaryExp_IdentFuncCall unaryExp_identFuncCall) {
-            Symbol<?, ?> searchedSymbol = this.symbolTable.searchOrError(unaryExp_identFuncCall.ident());
-            if (searchedSymbol instanceof FuncSymbol funcSymbol) {
-                ArrayList<IRValue<?>> funcRParamsValues = this.visitFuncRParams(unaryExp_identFuncCall.funcRParams(),
-                        unaryExp_identFuncCall.ident(), funcSymbol, insertBlock);
-                // 检查函数的参数的数量和类型在visitFuncRParams中
-                return this.builder.addCallFunction(funcSymbol.irValue(), funcRParamsValues, insertBlock);
-            } else {
-                // 查找不到符号，或者符号不是函数，强制置为0
-                return ConstantInt.ZERO_I32();
-            }
+            return this.visitFuncCall(unaryExp_identFuncCall.ident(), unaryExp_identFuncCall.funcRParams(), insertBlock);
         } else {
             throw new RuntimeException("When visitUnaryExp(), got unknown type of UnaryExp ("
                     + unaryExpExtract.getClass().getSimpleName() + ")");
         }
     }
 
+    // Ident '(' [FuncRParams] ')'
+    private IRValue<?> visitFuncCall(Token ident, FuncRParams funcRParams, IRBasicBlock insertBlock) {
+        Symbol<?, ?> searchedSymbol = this.symbolTable.searchOrError(ident);
+        if (searchedSymbol instanceof FuncSymbol funcSymbol) {
+            ArrayList<IRValue<?>> funcRParamsValues = this.visitFuncRParams(funcRParams, ident, funcSymbol, insertBlock);
+            // 检查函数的参数的数量和类型在visitFuncRParams中
+            return this.builder.addCallFunction(funcSymbol.irValue(), funcRParamsValues, insertBlock);
+        } else {
+            // 查找不到符号，或者符号不是函数，强制置为0
+            return ConstantInt.ZERO_I32();
+        }
+    }
+
     // FuncRParams → Exp { ',' Exp }
     private ArrayList<IRValue<?>> visitFuncRParams(FuncRParams funcRParams,
                                                    Token indentFuncCall, FuncSymbol funcSymbol, IRBasicBlock insertBlock) {
@@ -543,10 +658,10 @@ public class Visitor {
         } else if (primaryExpExtract instanceof PrimaryExp.PrimaryExp_LVal primaryExp_lVal) {
             return this.visitLValEvaluation(primaryExp_lVal.lVal(), insertBlock);
         } else if (primaryExpExtract instanceof PrimaryExp.PrimaryExp_Number primaryExp_number) {
-            return new ConstantInt(IRType.getInt32Ty(), Integer.parseInt(primaryExp_number.number().intConst().strVal()));
+            return ConstantInt.get(IRType.getInt32Ty(), Integer.parseInt(primaryExp_number.number().intConst().strVal()));
         } else if (primaryExpExtract instanceof PrimaryExp.PrimaryExp_Character primaryExp_character) {
             // 根据C语言的标准，字符的类型为int
-            return new ConstantInt(IRType.getInt32Ty(), Translator.translateCharConst(primaryExp_character.character().charConst()));
+            return ConstantInt.get(IRType.getInt32Ty(), Translator.translateCharConst(primaryExp_character.character().charConst()));
         } else {
             throw new RuntimeException("When visitPrimaryExp(), got unknown type of PrimaryExp ("
                     + primaryExpExtract.getClass().getSimpleName() + ")");
@@ -564,7 +679,7 @@ public class Visitor {
             IRValue<PointerType> lValAddress = IRValue.cast(searchedSymbol.irValue());
             // 处理由于优化初始化造成的符号对应的Value指向的类型与符号的登记类型不一致的问题
             if (!IRType.isEqual(searchedSymbol.type(), lValAddress.type().referenceType())) {
-                lValAddress = this.builder.addBitCastOperation(searchedSymbol.irValue(), new PointerType(searchedSymbol.type()), insertBlock);
+                lValAddress = this.builder.addBitCastOperation(searchedSymbol.irValue(), IRType.getPointerTy(searchedSymbol.type()), insertBlock);
             }
             if (lVal.getType() == LVal.Type.BASIC && lValAddress.type().referenceType() instanceof IntegerType) {
                 // 变量、常量
@@ -671,7 +786,7 @@ public class Visitor {
         } else if (this.builder.getNowFunctionReturnType() instanceof IntegerType returnIntegerType) {
             if (stmt_return.exp() == null) {
                 // 有返回值函数如果没有给定Exp，强制置为0
-                this.builder.addReturnInstruction(new ConstantInt(returnIntegerType, 0), nowBlock);
+                this.builder.addReturnInstruction(ConstantInt.get(returnIntegerType, 0), nowBlock);
             } else {
                 // CAST 并非函数调用处，SysY保证Exp经过evaluation的类型为IntegerType
                 IRValue<IntegerType> returnValue = IRValue.cast(this.visitExp(stmt_return.exp(), nowBlock));
@@ -712,7 +827,7 @@ public class Visitor {
             IRValue<PointerType> lValAddress = IRValue.cast(searchedSymbol.irValue());
             // 处理由于优化初始化造成的符号对应的Value指向的类型与符号的登记类型不一致的问题
             if (!IRType.isEqual(searchedSymbol.type(), lValAddress.type().referenceType())) {
-                lValAddress = this.builder.addBitCastOperation(searchedSymbol.irValue(), new PointerType(searchedSymbol.type()), insertBlock);
+                lValAddress = this.builder.addBitCastOperation(searchedSymbol.irValue(), IRType.getPointerTy(searchedSymbol.type()), insertBlock);
             }
             if (lVal.getType() == LVal.Type.BASIC && lValAddress.type().referenceType() instanceof IntegerType) {
                 // 变量、常量
@@ -833,7 +948,71 @@ public class Visitor {
 
     // Cond → LOrExp
     private void visitCond(Cond cond, IRBasicBlock trueBlock, IRBasicBlock falseBlock, IRBasicBlock insertBlock) {
-        this.visitLOrExp(cond.lOrExp(), trueBlock, falseBlock, insertBlock);
+        if (cond.node() != null) {
+            this.visitLOrNode(cond.node(), trueBlock, falseBlock, insertBlock);
+        } else {
+            this.visitLOrExp(cond.lOrExp(), trueBlock, falseBlock, insertBlock);
+        }
+    }
+
+    // 运算符优先级分析得到的Cond，与visitLOrExp()等相同，按照展开后的运算对象依次生成
+    private void visitLOrNode(ExpNode node, IRBasicBlock trueBlock, IRBasicBlock falseBlock, IRBasicBlock insertBlock) {
+        ArrayList<ExpNode> lAndNodes = ExpNode.flatten(node, type -> type == TokenType.OR, new ArrayList<>());
+        for (int i = 0; i < lAndNodes.size(); i++) {
+            if (i == lAndNodes.size() - 1) {
+                // 最后一个LAndExp，为假时要跳转到falseBlock
+                this.visitLAndNode(lAndNodes.get(i), trueBlock, falseBlock, insertBlock);
+            } else {
+                // 不是最后一个LAndExp，为假时跳转到下一个判断条件所在的block
+                // 真则直接进入trueBlock，实现短路求值
+                IRBasicBlock nextBlock = this.builder.newBasicBlock();
+                this.visitLAndNode(lAndNodes.get(i), trueBlock, nextBlock, insertBlock);
+                this.builder.appendBasicBlock(nextBlock);
+                insertBlock = nextBlock;
+            }
+        }
+    }
+
+    private void visitLAndNode(ExpNode node, IRBasicBlock trueBlock, IRBasicBlock falseBlock, IRBasicBlock insertBlock) {
+        ArrayList<ExpNode> eqNodes = ExpNode.flatten(node, type -> type == TokenType.AND, new ArrayList<>());
+        for (int i = 0; i < eqNodes.size(); i++) {
+            IRValue<IntegerType> icmpResult = this.visitCompareNode(eqNodes.get(i), insertBlock);
+            if (!IRType.isEqual(icmpResult.type(), IRType.getInt1Ty())) {
+                // 如果EqExp层和RelExp层都没有做过比较那么在离开EqExp层需要做一次比较
+                icmpResult = this.builder.addIcmpOperation(null, icmpResult, null, insertBlock);
+            }
+            if (i == eqNodes.size() - 1) {
+                // 最后一个EqExp，为真时要跳转到trueBlock
+                this.builder.addBranchInstruction(icmpResult, trueBlock, falseBlock, insertBlock);
+            } else {
+                // 不是最后一个EqExp，为真时跳转到下一个判断条件所在的block
+                // 假则直接进入falseBlock，实现短路求值
+                IRBasicBlock nextBlock = this.builder.newBasicBlock();
+                this.builder.addBranchInstruction(icmpResult, nextBlock, falseBlock, insertBlock);
+                this.builder.appendBasicBlock(nextBlock);
+                insertBlock = nextBlock;
+            }
+        }
+    }
+
+    // EqExp层与RelExp层的比较运算，二者都是左结合的，可以一并展开
+    private IRValue<IntegerType> visitCompareNode(ExpNode node, IRBasicBlock insertBlock) {
+        ArrayList<Token> symbols = new ArrayList<>();
+        ArrayList<ExpNode> operands = ExpNode.flatten(node, Visitor::isCompareSymbol, symbols);
+        // CAST 并非函数调用处，SysY保证AddExp经过evaluation的类型为IntegerType
+        IRValue<IntegerType> resultValue = IRValue.cast(this.visitExpNode(operands.get(0), insertBlock));
+        for (int i = 0; i < symbols.size(); i++) {
+            IRValue<IntegerType> newValue = IRValue.cast(this.visitExpNode(operands.get(i + 1), insertBlock));
+            resultValue = this.builder.addIcmpOperation(symbols.get(i), resultValue, newValue, insertBlock);
+        }
+        return resultValue;
+    }
+
+    private static boolean isCompareSymbol(TokenType type) {
+        return switch (type) {
+            case EQL, NEQ, LSS, LEQ, GRE, GEQ -> true;
+            default -> false;
+        };
     }
 
     // LOrExp → LAndExp | LOrExp '||' LAndExp
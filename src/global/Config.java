@@ -17,12 +17,40 @@ public class Config {
     // 语义分析，如果不允许抛出异常，默认处理方式为return null;或无操作
     public static boolean visitorThrowable = true;
 
+    // 词法分析时，是否一次性读入源代码后按下标扫描，否则通过PushbackReader逐字符读取
+    public static boolean lexerBufferedInput = true;
+
+    // 词法分析时，是否使用表驱动的DFA解析，否则逐字符手工解析，仅在一次性读入源代码时生效
+    public static boolean lexerTableDriven = true;
+
+    // 词法分析时，是否流式解析，即语法分析需要时才解析下一个Token，已经越过的Token被丢弃
+    // 需要输出TokenStream时，仍然一次性解析全部的Token
+    public static boolean lexerStreaming = false;
+
+    // 语法分析时，是否使用运算符优先级分析表达式，生成紧凑的ExpNode，否则按文法逐层递归下降
+    public static boolean parserPrecedenceClimbing = true;
+
+    // 语法分析时，是否通过括号匹配预先划分各个FuncDef的Token区间，并行地分析FuncDef，流式解析时不生效
+    public static boolean parserParallel = false;
+
+    // 语义分析时，是否在按顺序访问各函数头后，并行地访问各函数体并生成LLVM IR
+    public static boolean visitorParallel = false;
+
+    // 生成LLVM IR时，是否直接计算常数运算和代数恒等式，而不生成指令
+    public static boolean visitorConstantFolding = true;
+
     // 生成LLVM IR时，是否禁止对长数组进行优化
     public static final boolean disableLongArrayOptimization = false;
 
     // 是否开启中端优化
     public static boolean enableMiddleOptimization = true;
 
+    // 中端优化依次运行的pass，重复运行直到不再修改IR，可由--passes=mem2reg,sccp,instcombine,gvn,constfold,adce,jumpthreading,simplifycfg指定
+    public static String[] middlePasses = {"mem2reg", "sccp", "instcombine", "gvn", "constfold", "adce", "jumpthreading", "simplifycfg"};
+
+    // 中端优化时，是否并行地对各函数运行FunctionPass
+    public static boolean optimizerParallel = false;
+
     // 是否开启后端优化
     public static boolean enableBackendOptimization = true;
 
@@ -79,6 +107,9 @@ public class Config {
     public static boolean dumpMIPSAssemblyAfterAllocation = true;
     public static String dumpMIPSAssemblyAfterAllocationFileName = "mips.txt";
 
+    // 是否在标准错误输出各阶段的耗时，词法分析阶段同时输出吞吐量
+    public static boolean dumpStageTime = false;
+
     // 通过传递的参数设置全局配置
     public static void setConfigByArgs(String[] args) {
         for (String arg : args) {
@@ -92,6 +123,20 @@ public class Config {
                 case "--no-lexer-throw" -> lexerThrowable = false;
                 case "--no-parser-throw" -> parserThrowable = false;
                 case "--no-visitor-throw" -> visitorThrowable = false;
+                // 词法分析输入方式
+                case "--lexer-reader" -> lexerBufferedInput = false;
+                case "--lexer-handwritten" -> lexerTableDriven = false;
+                case "--lexer-streaming" -> lexerStreaming = true;
+                // 语法分析表达式的方式
+                case "--parser-descent" -> parserPrecedenceClimbing = false;
+                case "--parser-parallel" -> parserParallel = true;
+                // 语义分析方式
+                case "--visitor-parallel" -> visitorParallel = true;
+                case "--visitor-no-folding" -> visitorConstantFolding = false;
+                // 中端优化方式
+                case "--optimizer-parallel" -> optimizerParallel = true;
+                // 输出各阶段耗时
+                case "--time" -> dumpStageTime = true;
                 // 调试模式
                 case "--debug" -> {
                     stages = maxStages;
@@ -156,6 +201,13 @@ public class Config {
                     dumpMIPSAssemblyBeforeAllocation = true;
                     dumpMIPSAssemblyAfterAllocation = true;
                 }
+                // 中端优化的pass序列: --passes=mem2reg,sccp,instcombine,gvn,constfold,adce,jumpthreading,simplifycfg
+                default -> {
+                    if (arg.startsWith("--passes=")) {
+                        String passes = arg.substring("--passes=".length());
+                        middlePasses = passes.isEmpty() ? new String[0] : passes.split(",");
+                    }
+                }
             }
         }
     }
@@ -3,19 +3,56 @@ package input;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PushbackReader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class SourceCode {
-    private final PushbackReader sourcecodeReader;
+    private final String inputFilename;
+    // 源代码文件的字节数
+    private final long byteSize;
+    // 源代码的全部字符，第一次使用时一次性读入，供Lexer通过下标直接扫描，Token也从中截取文本
+    private char[] buffer = null;
+    private PushbackReader sourcecodeReader = null;
 
     public SourceCode(String inputFilename) throws IOException {
-        this.sourcecodeReader = new PushbackReader(new FileReader(inputFilename));
+        this.inputFilename = inputFilename;
+        this.byteSize = Files.size(Path.of(inputFilename));
     }
 
-    public PushbackReader reader() {
+    // 读入文件在第一次使用时进行，计入词法分析的时间
+    public char[] buffer() throws IOException {
+        if (this.buffer == null) {
+            try (FileChannel channel = FileChannel.open(Path.of(this.inputFilename), StandardOpenOption.READ)) {
+                // 将文件映射到内存后整体解码，与FileReader一致使用默认字符集
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                CharBuffer decoded = Charset.defaultCharset().decode(mapped);
+                this.buffer = new char[decoded.remaining()];
+                decoded.get(this.buffer);
+            }
+        }
+        return this.buffer;
+    }
+
+    public long byteSize() {
+        return this.byteSize;
+    }
+
+    // 原有的逐字符读取文件的方式，保留给未开启Config.lexerBufferedInput时的Lexer使用
+    public PushbackReader reader() throws IOException {
+        if (this.sourcecodeReader == null) {
+            this.sourcecodeReader = new PushbackReader(new FileReader(this.inputFilename));
+        }
         return this.sourcecodeReader;
     }
 
     public void close() throws IOException {
-        this.sourcecodeReader.close();
+        if (this.sourcecodeReader != null) {
+            this.sourcecodeReader.close();
+        }
     }
 }
@@ -1,23 +1,22 @@
 package output;
 
 import global.Config;
-import frontend.lexer.Token;
+import frontend.lexer.TokenStream;
 import frontend.type.TokenType;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
 
 public class DumpTokenStream {
-    public static void dump(ArrayList<Token> tokens) throws IOException {
+    public static void dump(TokenStream tokens) throws IOException {
         BufferedWriter out = new BufferedWriter(new FileWriter(Config.dumpTokenStreamFileName));
-        for (Token token : tokens) {
-            if (token.type() != TokenType.EOF) {
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.type(i) != TokenType.EOF) {
                 if (Config.dumpTokenStreamLineNumber) {
-                    out.write(token.type().toString() + " " + token.strVal() + " " + token.line() + "\n");
+                    out.write(tokens.type(i).toString() + " " + tokens.strVal(i) + " " + tokens.line(i) + "\n");
                 } else {
-                    out.write(token.type().toString() + " " + token.strVal() + "\n");
+                    out.write(tokens.type(i).toString() + " " + tokens.strVal(i) + "\n");
                 }
             }
         }
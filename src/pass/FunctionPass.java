@@ -0,0 +1,15 @@
+package pass;
+
+import IR.value.IRFunction;
+import pass.analyzer.AnalysisManager;
+
+// 逐个函数运行的pass，只修改给定的函数，需要的分析通过analysisManager获取
+// 并行运行时各函数同时运行，pass不能读取其他函数，也不能依赖全局变量、函数的User的顺序
+public interface FunctionPass extends Pass {
+    boolean run(IRFunction irFunction, AnalysisManager analysisManager);
+
+    // 并行运行时每个函数使用fork()得到的pass，在run()之间保存了状态的pass需要返回新的实例
+    default FunctionPass fork() {
+        return this;
+    }
+}
@@ -0,0 +1,9 @@
+package pass;
+
+import IR.IRModule;
+import pass.analyzer.AnalysisManager;
+
+// 对整个模块运行的pass，修改IR后所有函数未保留的分析都会作废
+public interface ModulePass extends Pass {
+    boolean run(IRModule irModule, AnalysisManager analysisManager);
+}
@@ -1,37 +1,45 @@
 package pass;
 
 import IR.IRModule;
+import IR.value.IRFunction;
 import global.Config;
-import pass.analyzer.GenerateCFG;
-import pass.analyzer.GenerateDominateInfo;
+import pass.analyzer.AnalysisManager;
 import pass.refactor.*;
 
-import java.util.ArrayList;
-
 public class Optimizer {
-    private final ArrayList<Pass> passes;
+    private final IRModule irModule;
+    private final AnalysisManager analysisManager;
+    // 只运行一次的必要pass
+    private final PassManager requiredPasses;
+    // 中端优化的pass，重复运行直到不再修改IR
+    private final PassManager optimizationPasses;
 
     public Optimizer(IRModule irModule) {
-        this.passes = new ArrayList<>();
+        this.irModule = irModule;
+        this.analysisManager = new AnalysisManager(irModule);
+        this.requiredPasses = new PassManager(irModule, this.analysisManager);
         // 必须消除每个基本块第一条终结指令之后的指令，这样才是正确的LLVM
-        this.passes.add(new RemoveInstructionAfterTerminator(irModule));
-        // 后端的跳转依赖CFG信息工作
-        this.passes.add(new GenerateCFG(irModule));
+        this.requiredPasses.addPass(new RemoveInstructionAfterTerminator());
         // 线性寄存器分配依赖于消除不可到达的基本块
         if (Config.enableBackendOptimization || Config.enableMiddleOptimization) {
-            this.passes.add(new RemoveUnreachableBasicBlock(irModule));
+            this.requiredPasses.addPass(new RemoveUnreachableBasicBlock());
         }
+        this.optimizationPasses = new PassManager(irModule, this.analysisManager);
         if (Config.enableMiddleOptimization) {
-            this.passes.add(new GenerateDominateInfo(irModule));
-            this.passes.add(new Mem2Reg(irModule));
-            this.passes.add(new CalculateConst(irModule));
-            this.passes.add(new DeadCodeEmit(irModule));
+            for (String passName : Config.middlePasses) {
+                this.optimizationPasses.addPass(PassManager.createPass(passName));
+            }
         }
     }
 
     public void optimize() {
-        for (Pass pass : passes) {
-            pass.run();
+        this.requiredPasses.run();
+        this.optimizationPasses.runToFixpoint();
+        // 后端的跳转依赖CFG信息工作
+        for (IRFunction irFunction : this.irModule.functions()) {
+            if (!irFunction.isLib()) {
+                this.analysisManager.requireCFG(irFunction);
+            }
         }
     }
 }
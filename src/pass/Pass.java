@@ -1,5 +1,17 @@
 package pass;
 
+import pass.analyzer.AnalysisManager;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+// pass分为FunctionPass与ModulePass两类，由PassManager运行，run()返回是否修改了IR
 public interface Pass {
-    void run();
+    // pass的名称，即--passes=中使用的名称
+    String name();
+
+    // 修改IR后仍然有效的分析，其余分析由AnalysisManager作废，默认全部作废
+    default Set<AnalysisManager.Analysis> preservedAnalyses() {
+        return EnumSet.noneOf(AnalysisManager.Analysis.class);
+    }
 }
@@ -0,0 +1,126 @@
+package pass;
+
+import IR.IRModule;
+import IR.value.IRFunction;
+import global.Config;
+import pass.analyzer.AnalysisManager;
+import pass.refactor.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class PassManager {
+    // 迭代至不动点时的最大轮数，避免互相抵消的pass无限循环
+    private static final int maxIterations = 8;
+
+    private final IRModule irModule;
+    private final AnalysisManager analysisManager;
+    private final ArrayList<Pass> passes;
+
+    public PassManager(IRModule irModule, AnalysisManager analysisManager) {
+        this.irModule = irModule;
+        this.analysisManager = analysisManager;
+        this.passes = new ArrayList<>();
+    }
+
+    // 由--passes=中的名称创建pass
+    public static Pass createPass(String name) {
+        return switch (name) {
+            case "terminator" -> new RemoveInstructionAfterTerminator();
+            case "unreachable" -> new RemoveUnreachableBasicBlock();
+            case "mem2reg" -> new Mem2Reg();
+            case "sccp" -> new SCCP();
+            case "instcombine" -> new InstCombine();
+            case "gvn" -> new GVN();
+            case "constfold" -> new CalculateConst();
+            case "dce" -> new DeadCodeEmit();
+            case "adce" -> new AggressiveDeadCodeEmit();
+            case "simplifycfg" -> new SimplifyCFG();
+            case "jumpthreading" -> new JumpThreading();
+            default -> throw new RuntimeException("When PassManager.createPass(), unknown pass " + name);
+        };
+    }
+
+    public void addPass(Pass pass) {
+        if (pass instanceof FunctionPass || pass instanceof ModulePass) {
+            this.passes.add(pass);
+        } else {
+            throw new RuntimeException("When PassManager.addPass(), " + pass.name() +
+                    " is neither a FunctionPass nor a ModulePass");
+        }
+    }
+
+    // 按顺序运行一轮所有pass，返回是否有pass修改了IR
+    public boolean run() {
+        boolean changed = false;
+        for (Pass pass : this.passes) {
+            long passStart = System.nanoTime();
+            changed |= this.runPass(pass);
+            if (Config.dumpStageTime) {
+                System.err.printf("[Pass %s] %.3f ms%n", pass.name(), (System.nanoTime() - passStart) / 1e6);
+            }
+        }
+        return changed;
+    }
+
+    // 重复运行直到没有pass修改IR
+    public void runToFixpoint() {
+        for (int i = 0; i < maxIterations; i++) {
+            if (!this.run()) {
+                return;
+            }
+        }
+    }
+
+    private boolean runPass(Pass pass) {
+        if (pass instanceof FunctionPass functionPass) {
+            return Config.optimizerParallel ? this.runFunctionPassInParallel(functionPass)
+                    : this.runFunctionPass(functionPass);
+        } else {
+            // CAST addPass()保证pass的类型
+            ModulePass modulePass = (ModulePass) pass;
+            if (modulePass.run(this.irModule, this.analysisManager)) {
+                this.analysisManager.invalidateAll(modulePass.preservedAnalyses());
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    private boolean runFunctionPass(FunctionPass functionPass) {
+        boolean changed = false;
+        for (IRFunction irFunction : this.irModule.functions()) {
+            if (!irFunction.isLib() && functionPass.run(irFunction, this.analysisManager)) {
+                this.analysisManager.invalidate(irFunction, functionPass.preservedAnalyses());
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // 每个函数一个任务，各任务只修改自己的函数与其分析；共享的全局变量、函数的User链表已经同步，常量不维护User
+    // 按函数的顺序等待各任务，输出与顺序运行相同
+    private boolean runFunctionPassInParallel(FunctionPass functionPass) {
+        ArrayList<ForkJoinTask<Boolean>> tasks = new ArrayList<>();
+        for (IRFunction irFunction : this.irModule.functions()) {
+            if (!irFunction.isLib()) {
+                FunctionPass forkedPass = functionPass.fork();
+                tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                    if (forkedPass.run(irFunction, this.analysisManager)) {
+                        this.analysisManager.invalidate(irFunction, forkedPass.preservedAnalyses());
+                        return true;
+                    } else {
+                        return false;
+                    }
+                }));
+            }
+        }
+        boolean changed = false;
+        for (ForkJoinTask<Boolean> task : tasks) {
+            changed |= task.join();
+        }
+        return changed;
+    }
+}
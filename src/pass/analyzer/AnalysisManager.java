@@ -0,0 +1,128 @@
+package pass.analyzer;
+
+import IR.IRModule;
+import IR.value.IRFunction;
+import global.Config;
+
+import java.util.HashMap;
+import java.util.Set;
+
+// 按需计算并缓存各函数的分析，pass修改IR后根据其保留的分析作废其余的分析
+public class AnalysisManager {
+    // 可以缓存的分析，后者依赖于前者：CFG <- DOMINATOR_TREE <- LOOP_INFO，LIVENESS依赖于CFG与指令
+    // POST_DOMINATOR_TREE只依赖于CFG
+    public enum Analysis {
+        CFG,
+        DOMINATOR_TREE,
+        POST_DOMINATOR_TREE,
+        LOOP_INFO,
+        LIVENESS
+    }
+
+    // 一个函数的分析结果，CFG保存在基本块中，只记录是否有效；其余分析失效时为null
+    private static class FunctionAnalyses {
+        private boolean cfgValid = false;
+        private DominatorTree dominatorTree = null;
+        private PostDominatorTree postDominatorTree = null;
+        private LoopInfo loopInfo = null;
+        private Liveness liveness = null;
+    }
+
+    // 构造时为每个函数建立条目，之后只读，不同函数的分析互不影响
+    private final HashMap<IRFunction, FunctionAnalyses> functionAnalyses;
+
+    public AnalysisManager(IRModule irModule) {
+        this.functionAnalyses = new HashMap<>();
+        for (IRFunction irFunction : irModule.functions()) {
+            if (!irFunction.isLib()) {
+                this.functionAnalyses.put(irFunction, new FunctionAnalyses());
+            }
+        }
+    }
+
+    private FunctionAnalyses analysesOf(IRFunction irFunction) {
+        FunctionAnalyses analyses = this.functionAnalyses.get(irFunction);
+        if (analyses == null) {
+            throw new RuntimeException("When AnalysisManager.analysesOf(), the function " + irFunction.name() +
+                    " is a library function or not in the module");
+        }
+        return analyses;
+    }
+
+    // 保证基本块中的前驱、后继是有效的，失效时重新生成
+    public void requireCFG(IRFunction irFunction) {
+        FunctionAnalyses analyses = this.analysesOf(irFunction);
+        if (!analyses.cfgValid) {
+            GenerateCFG.generateCFG(irFunction);
+            analyses.cfgValid = true;
+        }
+    }
+
+    public DominatorTree dominatorTree(IRFunction irFunction) {
+        FunctionAnalyses analyses = this.analysesOf(irFunction);
+        if (analyses.dominatorTree == null) {
+            this.requireCFG(irFunction);
+            analyses.dominatorTree = new DominatorTree(irFunction);
+            if (Config.dumpLLVMDetail) {
+                irFunction.setBasicBlockDetail(analyses.dominatorTree);
+            }
+        }
+        return analyses.dominatorTree;
+    }
+
+    public PostDominatorTree postDominatorTree(IRFunction irFunction) {
+        FunctionAnalyses analyses = this.analysesOf(irFunction);
+        if (analyses.postDominatorTree == null) {
+            this.requireCFG(irFunction);
+            analyses.postDominatorTree = new PostDominatorTree(irFunction);
+        }
+        return analyses.postDominatorTree;
+    }
+
+    public LoopInfo loopInfo(IRFunction irFunction) {
+        FunctionAnalyses analyses = this.analysesOf(irFunction);
+        if (analyses.loopInfo == null) {
+            analyses.loopInfo = new LoopInfo(this.dominatorTree(irFunction));
+        }
+        return analyses.loopInfo;
+    }
+
+    public Liveness liveness(IRFunction irFunction) {
+        FunctionAnalyses analyses = this.analysesOf(irFunction);
+        if (analyses.liveness == null) {
+            analyses.liveness = new Liveness(irFunction, this.dominatorTree(irFunction));
+        }
+        return analyses.liveness;
+    }
+
+    // 作废一个函数中未被保留的分析，依赖于已作废分析的分析也一并作废
+    public void invalidate(IRFunction irFunction, Set<Analysis> preserved) {
+        FunctionAnalyses analyses = this.analysesOf(irFunction);
+        boolean cfgValid = analyses.cfgValid && preserved.contains(Analysis.CFG);
+        boolean dominatorTreeValid = cfgValid && preserved.contains(Analysis.DOMINATOR_TREE);
+        boolean postDominatorTreeValid = cfgValid && preserved.contains(Analysis.POST_DOMINATOR_TREE);
+        boolean loopInfoValid = dominatorTreeValid && preserved.contains(Analysis.LOOP_INFO);
+        boolean livenessValid = dominatorTreeValid && preserved.contains(Analysis.LIVENESS);
+        analyses.cfgValid = cfgValid;
+        if (!dominatorTreeValid && analyses.dominatorTree != null) {
+            analyses.dominatorTree = null;
+            // 过期的支配树不能再用于输出
+            irFunction.setBasicBlockDetail(null);
+        }
+        if (!postDominatorTreeValid) {
+            analyses.postDominatorTree = null;
+        }
+        if (!loopInfoValid) {
+            analyses.loopInfo = null;
+        }
+        if (!livenessValid) {
+            analyses.liveness = null;
+        }
+    }
+
+    public void invalidateAll(Set<Analysis> preserved) {
+        for (IRFunction irFunction : this.functionAnalyses.keySet()) {
+            this.invalidate(irFunction, preserved);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package pass.analyzer;
+
+import IR.value.IRBasicBlock;
+import IR.value.IRFunction;
+import util.LLVMStrRegCounter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DominatorTree implements IRFunction.BasicBlockDetail {
+    // 一个函数的支配树，以基本块的编号为下标保存，基本块的增删会使其失效
+    // 使用Cooper–Harvey–Kennedy算法在逆后序上迭代求直接支配者，再对支配树做先序、后序编号，支配查询为O(1)
+    private final IRBasicBlock[] basicBlocks;
+    // 逆后序中的基本块下标，以及各基本块在逆后序中的位置，不可到达的基本块为-1
+    private final int[] reversePostOrder;
+    private final int[] reversePostOrderNumbers;
+    // 直接支配者的下标，入口基本块与不可到达的基本块为-1
+    private final int[] immediateDominators;
+    // 支配树上的先序、后序编号，a支配b当且仅当pre[a] <= pre[b]且post[b] <= post[a]
+    private final int[] preOrderNumbers;
+    private final int[] postOrderNumbers;
+    // 直接支配的基本块，没有时为null
+    private final ArrayList<ArrayList<IRBasicBlock>> immediateDominating;
+    // 支配边界，没有时为null
+    private final ArrayList<ArrayList<IRBasicBlock>> dominanceFrontiers;
+
+    DominatorTree(IRFunction irFunction) {
+        irFunction.renumber();
+        int basicBlockCount = irFunction.basicBlockCount();
+        this.basicBlocks = irFunction.basicBlocks().toArray(new IRBasicBlock[0]);
+        this.reversePostOrderNumbers = new int[basicBlockCount];
+        this.immediateDominators = new int[basicBlockCount];
+        this.preOrderNumbers = new int[basicBlockCount];
+        this.postOrderNumbers = new int[basicBlockCount];
+        this.immediateDominating = new ArrayList<>(basicBlockCount);
+        this.dominanceFrontiers = new ArrayList<>(basicBlockCount);
+        for (int i = 0; i < basicBlockCount; i++) {
+            this.immediateDominating.add(null);
+            this.dominanceFrontiers.add(null);
+        }
+        this.reversePostOrder = this.calculateReversePostOrder();
+        this.calculateImmediateDominators();
+        this.calculateTreeNumbers();
+        this.calculateDominanceFrontiers();
+    }
+
+    // 从入口基本块出发的非递归DFS，得到逆后序
+    private int[] calculateReversePostOrder() {
+        int[] postOrder = new int[this.basicBlocks.length];
+        int postOrderCount = 0;
+        // DFS栈中保存基本块下标与下一个要访问的后继的序号
+        int[] stackBlocks = new int[this.basicBlocks.length];
+        int[] stackNextSuccessors = new int[this.basicBlocks.length];
+        boolean[] visited = new boolean[this.basicBlocks.length];
+        int stackSize = 0;
+        if (this.basicBlocks.length > 0) {
+            stackBlocks[stackSize++] = 0;
+            visited[0] = true;
+        }
+        while (stackSize > 0) {
+            int block = stackBlocks[stackSize - 1];
+            List<IRBasicBlock> successors = this.basicBlocks[block].successors();
+            if (stackNextSuccessors[stackSize - 1] < successors.size()) {
+                int successor = this.indexOf(successors.get(stackNextSuccessors[stackSize - 1]++));
+                if (!visited[successor]) {
+                    visited[successor] = true;
+                    stackBlocks[stackSize] = successor;
+                    stackNextSuccessors[stackSize] = 0;
+                    stackSize++;
+                }
+            } else {
+                postOrder[postOrderCount++] = block;
+                stackSize--;
+            }
+        }
+        int[] reversePostOrder = new int[postOrderCount];
+        Arrays.fill(this.reversePostOrderNumbers, -1);
+        for (int i = 0; i < postOrderCount; i++) {
+            reversePostOrder[i] = postOrder[postOrderCount - 1 - i];
+            this.reversePostOrderNumbers[reversePostOrder[i]] = i;
+        }
+        return reversePostOrder;
+    }
+
+    private void calculateImmediateDominators() {
+        Arrays.fill(this.immediateDominators, -1);
+        if (this.reversePostOrder.length == 0) {
+            return;
+        }
+        // 迭代时入口基本块暂时以自身为直接支配者，作为intersect()的终点
+        int entry = this.reversePostOrder[0];
+        this.immediateDominators[entry] = entry;
+        boolean hasUpdates = true;
+        while (hasUpdates) {
+            hasUpdates = false;
+            for (int i = 1; i < this.reversePostOrder.length; i++) {
+                int block = this.reversePostOrder[i];
+                int newImmediateDominator = -1;
+                for (IRBasicBlock predecessorBlock : this.basicBlocks[block].predecessors()) {
+                    int predecessor = this.indexOf(predecessorBlock);
+                    if (this.immediateDominators[predecessor] < 0) {
+                        // 尚未处理的前驱（或不可到达的前驱）不参与求交
+                        continue;
+                    }
+                    newImmediateDominator = newImmediateDominator < 0 ? predecessor
+                            : this.intersect(predecessor, newImmediateDominator);
+                }
+                if (this.immediateDominators[block] != newImmediateDominator) {
+                    this.immediateDominators[block] = newImmediateDominator;
+                    hasUpdates = true;
+                }
+            }
+        }
+        this.immediateDominators[entry] = -1;
+        // 按基本块的顺序建立支配树，使子结点的顺序确定
+        for (int block = 0; block < this.basicBlocks.length; block++) {
+            if (this.immediateDominators[block] >= 0) {
+                addToList(this.immediateDominating, this.immediateDominators[block], this.basicBlocks[block]);
+            }
+        }
+    }
+
+    // 沿支配树向上求两个基本块的最近公共支配者，逆后序编号较大的一方先向上
+    private int intersect(int block1, int block2) {
+        while (block1 != block2) {
+            while (this.reversePostOrderNumbers[block1] > this.reversePostOrderNumbers[block2]) {
+                block1 = this.immediateDominators[block1];
+            }
+            while (this.reversePostOrderNumbers[block2] > this.reversePostOrderNumbers[block1]) {
+                block2 = this.immediateDominators[block2];
+            }
+        }
+        return block1;
+    }
+
+    // 对支配树做非递归DFS，得到先序、后序编号
+    private void calculateTreeNumbers() {
+        Arrays.fill(this.preOrderNumbers, -1);
+        Arrays.fill(this.postOrderNumbers, -1);
+        if (this.reversePostOrder.length == 0) {
+            return;
+        }
+        int[] stackBlocks = new int[this.basicBlocks.length];
+        int[] stackNextChildren = new int[this.basicBlocks.length];
+        int stackSize = 0;
+        int preOrderCount = 0;
+        int postOrderCount = 0;
+        stackBlocks[stackSize++] = this.reversePostOrder[0];
+        this.preOrderNumbers[this.reversePostOrder[0]] = preOrderCount++;
+        while (stackSize > 0) {
+            int block = stackBlocks[stackSize - 1];
+            List<IRBasicBlock> children = this.immediateDominating(this.basicBlocks[block]);
+            if (stackNextChildren[stackSize - 1] < children.size()) {
+                int child = this.indexOf(children.get(stackNextChildren[stackSize - 1]++));
+                this.preOrderNumbers[child] = preOrderCount++;
+                stackBlocks[stackSize] = child;
+                stackNextChildren[stackSize] = 0;
+                stackSize++;
+            } else {
+                this.postOrderNumbers[block] = postOrderCount++;
+                stackSize--;
+            }
+        }
+    }
+
+    private void calculateDominanceFrontiers() {
+        // 对于每条边predecessor -> block，从predecessor沿支配树向上直到block的直接支配者，途经的基本块的支配边界包含block
+        // 每条支配树上的边至多为每个block走一次，lastAdded记录每个基本块最后加入的支配边界，以此去重
+        int[] lastAdded = new int[this.basicBlocks.length];
+        Arrays.fill(lastAdded, -1);
+        for (int block = 0; block < this.basicBlocks.length; block++) {
+            if (this.reversePostOrderNumbers[block] < 0) {
+                continue;
+            }
+            for (IRBasicBlock predecessorBlock : this.basicBlocks[block].predecessors()) {
+                int runner = this.indexOf(predecessorBlock);
+                if (this.reversePostOrderNumbers[runner] < 0) {
+                    continue;
+                }
+                while (runner >= 0 && runner != this.immediateDominators[block]) {
+                    if (lastAdded[runner] != block) {
+                        lastAdded[runner] = block;
+                        addToList(this.dominanceFrontiers, runner, this.basicBlocks[block]);
+                    }
+                    runner = this.immediateDominators[runner];
+                }
+            }
+        }
+    }
+
+    private static void addToList(ArrayList<ArrayList<IRBasicBlock>> lists, int index, IRBasicBlock basicBlock) {
+        if (lists.get(index) == null) {
+            lists.set(index, new ArrayList<>(2));
+        }
+        lists.get(index).add(basicBlock);
+    }
+
+    private int indexOf(IRBasicBlock basicBlock) {
+        int index = basicBlock.number();
+        if (index < 0 || index >= this.basicBlocks.length || this.basicBlocks[index] != basicBlock) {
+            throw new RuntimeException("When DominatorTree.indexOf(), the basic block is not analyzed, " +
+                    "the DominatorTree may be outdated");
+        }
+        return index;
+    }
+
+    public IRBasicBlock immediateDominator(IRBasicBlock basicBlock) {
+        int immediateDominator = this.immediateDominators[this.indexOf(basicBlock)];
+        return immediateDominator >= 0 ? this.basicBlocks[immediateDominator] : null;
+    }
+
+    public List<IRBasicBlock> immediateDominating(IRBasicBlock basicBlock) {
+        ArrayList<IRBasicBlock> immediateDominating = this.immediateDominating.get(this.indexOf(basicBlock));
+        return immediateDominating == null ? List.of() : immediateDominating;
+    }
+
+    public List<IRBasicBlock> dominanceFrontiers(IRBasicBlock basicBlock) {
+        ArrayList<IRBasicBlock> dominanceFrontiers = this.dominanceFrontiers.get(this.indexOf(basicBlock));
+        return dominanceFrontiers == null ? List.of() : dominanceFrontiers;
+    }
+
+    // 分析时函数中基本块的个数，基本块的编号小于这个值
+    int basicBlockCount() {
+        return this.basicBlocks.length;
+    }
+
+    // 基本块是否可以从入口到达
+    public boolean isReachable(IRBasicBlock basicBlock) {
+        return this.reversePostOrderNumbers[this.indexOf(basicBlock)] >= 0;
+    }
+
+    // 基本块的逆后序，不包括不可到达的基本块
+    public List<IRBasicBlock> reversePostOrder() {
+        return Arrays.stream(this.reversePostOrder).mapToObj(block -> this.basicBlocks[block]).toList();
+    }
+
+    // dominator是否支配basicBlock（基本块支配自身），不可到达的基本块不支配也不被支配
+    public boolean dominates(IRBasicBlock dominator, IRBasicBlock basicBlock) {
+        int dominatorIndex = this.indexOf(dominator);
+        int basicBlockIndex = this.indexOf(basicBlock);
+        return this.preOrderNumbers[dominatorIndex] >= 0 && this.preOrderNumbers[basicBlockIndex] >= 0
+                && this.preOrderNumbers[dominatorIndex] <= this.preOrderNumbers[basicBlockIndex]
+                && this.postOrderNumbers[basicBlockIndex] <= this.postOrderNumbers[dominatorIndex];
+    }
+
+    // dominator是否严格支配basicBlock
+    public boolean strictlyDominates(IRBasicBlock dominator, IRBasicBlock basicBlock) {
+        return dominator != basicBlock && this.dominates(dominator, basicBlock);
+    }
+
+    @Override
+    public String detailStr(IRBasicBlock basicBlock, LLVMStrRegCounter counter) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\t;dominators: ");
+        for (IRBasicBlock dominator : this.basicBlocks) {
+            if (this.strictlyDominates(dominator, basicBlock)) {
+                sb.append(counter.get(dominator)).append(" ");
+            }
+        }
+        sb.append("\n");
+        sb.append("\t;dominating: ");
+        for (IRBasicBlock dominating : this.basicBlocks) {
+            if (this.strictlyDominates(basicBlock, dominating)) {
+                sb.append(counter.get(dominating)).append(" ");
+            }
+        }
+        sb.append("\n");
+        sb.append("\t;immediateDominator: ").append(counter.get(this.immediateDominator(basicBlock))).append("\n");
+        sb.append("\t;immediateDominating: ");
+        for (IRBasicBlock immediateDominating : this.immediateDominating(basicBlock)) {
+            sb.append(counter.get(immediateDominating)).append(" ");
+        }
+        sb.append("\n");
+        sb.append("\t;dominanceFrontiers: ");
+        for (IRBasicBlock dominanceFrontier : this.dominanceFrontiers(basicBlock)) {
+            sb.append(counter.get(dominanceFrontier)).append(" ");
+        }
+        sb.append("\n");
+        return sb.toString();
+    }
+}
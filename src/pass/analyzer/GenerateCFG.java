@@ -1,42 +1,30 @@
 package pass.analyzer;
 
-import IR.IRModule;
 import IR.value.IRBasicBlock;
 import IR.value.IRFunction;
 import IR.value.instruction.BranchInst;
 import IR.value.instruction.IRInstruction;
-import pass.Pass;
 
-public class GenerateCFG implements Pass {
-    private final IRModule irModule;
-
-    public GenerateCFG(IRModule irModule) {
-        this.irModule = irModule;
-    }
-
-    @Override
-    public void run() {
-        for (IRFunction irFunction : irModule.functions()) {
-            if (!irFunction.isLib()) {
-                this.generateFunctionCFG(irFunction);
-            }
+// 根据各基本块的终结指令生成CFG，由AnalysisManager.requireCFG()在CFG失效时调用
+final class GenerateCFG {
+    static void generateCFG(IRFunction irFunction) {
+        // 先清除旧的边，已经删除的基本块可能仍然留在前驱中
+        for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
+            basicBlock.clearCFG();
         }
-    }
-
-    private void generateFunctionCFG(IRFunction irFunction) {
         for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
             IRInstruction<?> tailInstruction = basicBlock.instructions().tail().value();
             if (tailInstruction instanceof BranchInst tailBranchInstruction) {
                 if (tailBranchInstruction.isConditional()) {
-                    basicBlock.successors().add(tailBranchInstruction.getTrueSuccessor());
-                    basicBlock.successors().add(tailBranchInstruction.getFalseSuccessor());
-                    tailBranchInstruction.getTrueSuccessor().predecessors().add(basicBlock);
-                    tailBranchInstruction.getFalseSuccessor().predecessors().add(basicBlock);
+                    basicBlock.addSuccessor(tailBranchInstruction.getTrueSuccessor());
+                    basicBlock.addSuccessor(tailBranchInstruction.getFalseSuccessor());
                 } else {
-                    basicBlock.successors().add(tailBranchInstruction.getSuccessor());
-                    tailBranchInstruction.getSuccessor().predecessors().add(basicBlock);
+                    basicBlock.addSuccessor(tailBranchInstruction.getSuccessor());
                 }
             }
         }
     }
+
+    private GenerateCFG() {
+    }
 }
@@ -0,0 +1,96 @@
+package pass.analyzer;
+
+import IR.IRValue;
+import IR.value.Argument;
+import IR.value.IRBasicBlock;
+import IR.value.IRFunction;
+import IR.value.instruction.IRInstruction;
+import IR.value.instruction.PHINode;
+import util.DoublyLinkedList;
+
+import java.util.BitSet;
+import java.util.List;
+
+public class Liveness {
+    // 一个函数中SSA值（Argument与指令）在各基本块入口、出口的活跃性，以基本块的编号为下标，集合以值的编号为下标
+    // PHI的操作数只在对应前驱的出口活跃，PHI本身在所在基本块的入口处定义，不属于入口的活跃集合
+    private final BitSet[] liveIns;
+    private final BitSet[] liveOuts;
+
+    Liveness(IRFunction irFunction, DominatorTree dominatorTree) {
+        // 基本块没有变化时重新编号不改变基本块的编号，支配树仍然有效
+        irFunction.renumber();
+        int basicBlockCount = dominatorTree.basicBlockCount();
+        this.liveIns = new BitSet[basicBlockCount];
+        this.liveOuts = new BitSet[basicBlockCount];
+        BitSet[] defs = new BitSet[basicBlockCount];
+        List<IRBasicBlock> reversePostOrder = dominatorTree.reversePostOrder();
+        for (IRBasicBlock basicBlock : reversePostOrder) {
+            int block = basicBlock.number();
+            this.liveIns[block] = new BitSet();
+            this.liveOuts[block] = new BitSet();
+            defs[block] = new BitSet();
+        }
+        // 块内向上暴露的使用直接加入入口集合，PHI的操作数加入对应前驱的出口集合
+        for (IRBasicBlock basicBlock : reversePostOrder) {
+            int block = basicBlock.number();
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : basicBlock.instructions()) {
+                IRInstruction<?> instruction = instructionNode.value();
+                if (instruction instanceof PHINode) {
+                    for (int i = 0; i < instruction.getNumOperands(); i = i + 2) {
+                        // CAST PHINode的操作数为值与基本块交替
+                        IRBasicBlock incomingBlock = (IRBasicBlock) instruction.getOperand(i + 1);
+                        if (isTracked(instruction.getOperand(i)) && dominatorTree.isReachable(incomingBlock)) {
+                            this.liveOuts[incomingBlock.number()].set(instruction.getOperand(i).number());
+                        }
+                    }
+                } else {
+                    for (int i = 0; i < instruction.getNumOperands(); i++) {
+                        IRValue<?> operand = instruction.getOperand(i);
+                        if (isTracked(operand) && !defs[block].get(operand.number())) {
+                            this.liveIns[block].set(operand.number());
+                        }
+                    }
+                }
+                defs[block].set(instruction.number());
+            }
+        }
+        // 按后序迭代至不动点：out = phiUses ∪ (∪ in[succ])，in = upwardUses ∪ (out - def)
+        BitSet liveThrough = new BitSet();
+        boolean hasUpdates = true;
+        while (hasUpdates) {
+            hasUpdates = false;
+            for (int i = reversePostOrder.size() - 1; i >= 0; i--) {
+                IRBasicBlock basicBlock = reversePostOrder.get(i);
+                int block = basicBlock.number();
+                for (IRBasicBlock successor : basicBlock.successors()) {
+                    this.liveOuts[block].or(this.liveIns[successor.number()]);
+                }
+                liveThrough.clear();
+                liveThrough.or(this.liveOuts[block]);
+                liveThrough.andNot(defs[block]);
+                // 只有新加入的值才会使入口集合变化
+                liveThrough.andNot(this.liveIns[block]);
+                if (!liveThrough.isEmpty()) {
+                    this.liveIns[block].or(liveThrough);
+                    hasUpdates = true;
+                }
+            }
+        }
+    }
+
+    // 只有函数内的Argument与指令会被分析，常量、全局变量等总是可用
+    private static boolean isTracked(IRValue<?> value) {
+        return value instanceof Argument || value instanceof IRInstruction<?>;
+    }
+
+    public boolean isLiveIn(IRValue<?> value, IRBasicBlock basicBlock) {
+        BitSet liveIn = this.liveIns[basicBlock.number()];
+        return isTracked(value) && liveIn != null && liveIn.get(value.number());
+    }
+
+    public boolean isLiveOut(IRValue<?> value, IRBasicBlock basicBlock) {
+        BitSet liveOut = this.liveOuts[basicBlock.number()];
+        return isTracked(value) && liveOut != null && liveOut.get(value.number());
+    }
+}
@@ -0,0 +1,108 @@
+package pass.analyzer;
+
+import IR.value.IRBasicBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoopInfo {
+    // 一个函数中的自然循环，以基本块的编号为下标保存，与所依赖的DominatorTree同时失效
+    // 后继支配前驱的边为回边，同一个头结点的回边合并为一个循环；按逆后序处理头结点，外层循环总是先于内层循环
+    public static class Loop {
+        private final IRBasicBlock header;
+        private final Loop parent;
+        private final int depth;
+        // 循环中的基本块，包括头结点与内层循环的基本块
+        private final ArrayList<IRBasicBlock> basicBlocks;
+
+        private Loop(IRBasicBlock header, Loop parent) {
+            this.header = header;
+            this.parent = parent;
+            this.depth = parent == null ? 1 : parent.depth + 1;
+            this.basicBlocks = new ArrayList<>();
+        }
+
+        public IRBasicBlock header() {
+            return header;
+        }
+
+        public Loop parent() {
+            return parent;
+        }
+
+        public int depth() {
+            return depth;
+        }
+
+        public List<IRBasicBlock> basicBlocks() {
+            return basicBlocks;
+        }
+    }
+
+    private final ArrayList<Loop> loops;
+    // 包含各基本块的最内层循环，不在循环中时为null
+    private final Loop[] innermostLoops;
+
+    LoopInfo(DominatorTree dominatorTree) {
+        this.loops = new ArrayList<>();
+        this.innermostLoops = new Loop[dominatorTree.basicBlockCount()];
+        // 以头结点的编号作为标记，各循环共用
+        int[] visitStamps = new int[dominatorTree.basicBlockCount()];
+        IRBasicBlock[] stack = new IRBasicBlock[dominatorTree.basicBlockCount()];
+        for (IRBasicBlock header : dominatorTree.reversePostOrder()) {
+            int stamp = header.number() + 1;
+            boolean hasBackEdge = false;
+            int stackSize = 0;
+            visitStamps[header.number()] = stamp;
+            for (IRBasicBlock predecessor : header.predecessors()) {
+                if (dominatorTree.isReachable(predecessor) && dominatorTree.dominates(header, predecessor)) {
+                    hasBackEdge = true;
+                    if (visitStamps[predecessor.number()] != stamp) {
+                        visitStamps[predecessor.number()] = stamp;
+                        stack[stackSize++] = predecessor;
+                    }
+                }
+            }
+            if (!hasBackEdge) {
+                continue;
+            }
+            Loop loop = new Loop(header, this.innermostLoops[header.number()]);
+            this.loops.add(loop);
+            loop.basicBlocks.add(header);
+            this.innermostLoops[header.number()] = loop;
+            // 从回边的起点沿前驱反向搜索到头结点为止，得到循环体
+            while (stackSize > 0) {
+                IRBasicBlock basicBlock = stack[--stackSize];
+                loop.basicBlocks.add(basicBlock);
+                this.innermostLoops[basicBlock.number()] = loop;
+                for (IRBasicBlock predecessor : basicBlock.predecessors()) {
+                    if (dominatorTree.isReachable(predecessor) && visitStamps[predecessor.number()] != stamp) {
+                        visitStamps[predecessor.number()] = stamp;
+                        stack[stackSize++] = predecessor;
+                    }
+                }
+            }
+        }
+    }
+
+    // 所有循环，外层循环在内层循环之前
+    public List<Loop> loops() {
+        return loops;
+    }
+
+    // 包含基本块的最内层循环，不在循环中时为null
+    public Loop loopOf(IRBasicBlock basicBlock) {
+        return this.innermostLoops[basicBlock.number()];
+    }
+
+    // 基本块所在的循环的嵌套深度，不在循环中时为0
+    public int loopDepth(IRBasicBlock basicBlock) {
+        Loop loop = this.loopOf(basicBlock);
+        return loop == null ? 0 : loop.depth;
+    }
+
+    public boolean isLoopHeader(IRBasicBlock basicBlock) {
+        Loop loop = this.loopOf(basicBlock);
+        return loop != null && loop.header == basicBlock;
+    }
+}
@@ -0,0 +1,227 @@
+package pass.analyzer;
+
+import IR.value.IRBasicBlock;
+import IR.value.IRFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PostDominatorTree {
+    // 一个函数的后支配树，以基本块的编号为下标保存，基本块的增删会使其失效
+    // 在反向CFG上使用与DominatorTree相同的Cooper–Harvey–Kennedy算法，根为下标为basicBlocks.length的虚拟出口
+    // 以ret结尾的基本块连到虚拟出口；无法到达ret的基本块（死循环）中也选取基本块连到虚拟出口，使每个基本块都有后支配者
+    private final IRBasicBlock[] basicBlocks;
+    private final int exit;
+    // 连到虚拟出口的基本块
+    private final boolean[] exitPredecessors;
+    // 能否到达以ret结尾的基本块
+    private final boolean[] reachesReturn;
+    // 反向CFG的逆后序中的下标，以及各下标在逆后序中的位置
+    private final int[] reversePostOrder;
+    private final int[] reversePostOrderNumbers;
+    // 直接后支配者的下标，虚拟出口为exit，虚拟出口自身为-1
+    private final int[] immediatePostDominators;
+    // 后支配边界，即控制依赖，没有时为null
+    private final ArrayList<ArrayList<IRBasicBlock>> postDominanceFrontiers;
+
+    PostDominatorTree(IRFunction irFunction) {
+        irFunction.renumber();
+        this.basicBlocks = irFunction.basicBlocks().toArray(new IRBasicBlock[0]);
+        this.exit = this.basicBlocks.length;
+        this.exitPredecessors = new boolean[this.basicBlocks.length];
+        this.reachesReturn = new boolean[this.basicBlocks.length];
+        this.reversePostOrderNumbers = new int[this.basicBlocks.length + 1];
+        this.immediatePostDominators = new int[this.basicBlocks.length + 1];
+        this.postDominanceFrontiers = new ArrayList<>(this.basicBlocks.length);
+        for (int i = 0; i < this.basicBlocks.length; i++) {
+            this.postDominanceFrontiers.add(null);
+        }
+        this.calculateExitPredecessors();
+        this.reversePostOrder = this.calculateReversePostOrder();
+        this.calculateImmediatePostDominators();
+        this.calculatePostDominanceFrontiers();
+    }
+
+    // 先从所有以ret结尾的基本块反向搜索，再按从后往前的顺序为尚未到达的基本块补充到虚拟出口的边
+    private void calculateExitPredecessors() {
+        boolean[] visited = new boolean[this.basicBlocks.length];
+        int[] stack = new int[this.basicBlocks.length];
+        for (int block = 0; block < this.basicBlocks.length; block++) {
+            if (this.basicBlocks[block].successors().isEmpty()) {
+                this.exitPredecessors[block] = true;
+                this.markReverseReachable(block, visited, stack);
+            }
+        }
+        System.arraycopy(visited, 0, this.reachesReturn, 0, visited.length);
+        for (int block = this.basicBlocks.length - 1; block >= 0; block--) {
+            if (!visited[block]) {
+                this.exitPredecessors[block] = true;
+                this.markReverseReachable(block, visited, stack);
+            }
+        }
+    }
+
+    private void markReverseReachable(int block, boolean[] visited, int[] stack) {
+        if (visited[block]) {
+            return;
+        }
+        int stackSize = 0;
+        visited[block] = true;
+        stack[stackSize++] = block;
+        while (stackSize > 0) {
+            for (IRBasicBlock predecessorBlock : this.basicBlocks[stack[--stackSize]].predecessors()) {
+                int predecessor = this.indexOf(predecessorBlock);
+                if (!visited[predecessor]) {
+                    visited[predecessor] = true;
+                    stack[stackSize++] = predecessor;
+                }
+            }
+        }
+    }
+
+    // 反向CFG中的后继，即CFG中的前驱；虚拟出口的后继为连到虚拟出口的基本块
+    private int reverseSuccessorCount(int node) {
+        if (node == this.exit) {
+            int count = 0;
+            for (boolean exitPredecessor : this.exitPredecessors) {
+                count += exitPredecessor ? 1 : 0;
+            }
+            return count;
+        } else {
+            return this.basicBlocks[node].predecessors().size();
+        }
+    }
+
+    // 从虚拟出口出发的非递归DFS，得到反向CFG的逆后序
+    private int[] calculateReversePostOrder() {
+        int nodeCount = this.basicBlocks.length + 1;
+        int[] exitSuccessors = new int[this.reverseSuccessorCount(this.exit)];
+        for (int block = 0, i = 0; block < this.basicBlocks.length; block++) {
+            if (this.exitPredecessors[block]) {
+                exitSuccessors[i++] = block;
+            }
+        }
+        int[] postOrder = new int[nodeCount];
+        int postOrderCount = 0;
+        // DFS栈中保存结点下标与下一个要访问的后继的序号
+        int[] stackNodes = new int[nodeCount];
+        int[] stackNextSuccessors = new int[nodeCount];
+        boolean[] visited = new boolean[nodeCount];
+        int stackSize = 0;
+        stackNodes[stackSize++] = this.exit;
+        visited[this.exit] = true;
+        while (stackSize > 0) {
+            int node = stackNodes[stackSize - 1];
+            int nextSuccessor = stackNextSuccessors[stackSize - 1];
+            if (nextSuccessor < (node == this.exit ? exitSuccessors.length : this.reverseSuccessorCount(node))) {
+                stackNextSuccessors[stackSize - 1]++;
+                int successor = node == this.exit ? exitSuccessors[nextSuccessor]
+                        : this.indexOf(this.basicBlocks[node].predecessors().get(nextSuccessor));
+                if (!visited[successor]) {
+                    visited[successor] = true;
+                    stackNodes[stackSize] = successor;
+                    stackNextSuccessors[stackSize] = 0;
+                    stackSize++;
+                }
+            } else {
+                postOrder[postOrderCount++] = node;
+                stackSize--;
+            }
+        }
+        int[] reversePostOrder = new int[postOrderCount];
+        Arrays.fill(this.reversePostOrderNumbers, -1);
+        for (int i = 0; i < postOrderCount; i++) {
+            reversePostOrder[i] = postOrder[postOrderCount - 1 - i];
+            this.reversePostOrderNumbers[reversePostOrder[i]] = i;
+        }
+        return reversePostOrder;
+    }
+
+    private void calculateImmediatePostDominators() {
+        Arrays.fill(this.immediatePostDominators, -1);
+        // 迭代时虚拟出口暂时以自身为直接后支配者，作为intersect()的终点
+        this.immediatePostDominators[this.exit] = this.exit;
+        boolean hasUpdates = true;
+        while (hasUpdates) {
+            hasUpdates = false;
+            for (int i = 1; i < this.reversePostOrder.length; i++) {
+                int block = this.reversePostOrder[i];
+                int newImmediatePostDominator = this.exitPredecessors[block] ? this.exit : -1;
+                for (IRBasicBlock successorBlock : this.basicBlocks[block].successors()) {
+                    int successor = this.indexOf(successorBlock);
+                    if (this.immediatePostDominators[successor] < 0) {
+                        // 尚未处理的后继不参与求交
+                        continue;
+                    }
+                    newImmediatePostDominator = newImmediatePostDominator < 0 ? successor
+                            : this.intersect(successor, newImmediatePostDominator);
+                }
+                if (this.immediatePostDominators[block] != newImmediatePostDominator) {
+                    this.immediatePostDominators[block] = newImmediatePostDominator;
+                    hasUpdates = true;
+                }
+            }
+        }
+        this.immediatePostDominators[this.exit] = -1;
+    }
+
+    private int intersect(int node1, int node2) {
+        while (node1 != node2) {
+            while (this.reversePostOrderNumbers[node1] > this.reversePostOrderNumbers[node2]) {
+                node1 = this.immediatePostDominators[node1];
+            }
+            while (this.reversePostOrderNumbers[node2] > this.reversePostOrderNumbers[node1]) {
+                node2 = this.immediatePostDominators[node2];
+            }
+        }
+        return node1;
+    }
+
+    private void calculatePostDominanceFrontiers() {
+        // 对于每条边block -> successor，从successor沿后支配树向上直到block的直接后支配者，途经的基本块控制依赖于block
+        int[] lastAdded = new int[this.basicBlocks.length];
+        Arrays.fill(lastAdded, -1);
+        for (int block = 0; block < this.basicBlocks.length; block++) {
+            for (IRBasicBlock successorBlock : this.basicBlocks[block].successors()) {
+                int runner = this.indexOf(successorBlock);
+                while (runner != this.exit && runner != this.immediatePostDominators[block]) {
+                    if (lastAdded[runner] != block) {
+                        lastAdded[runner] = block;
+                        if (this.postDominanceFrontiers.get(runner) == null) {
+                            this.postDominanceFrontiers.set(runner, new ArrayList<>(2));
+                        }
+                        this.postDominanceFrontiers.get(runner).add(this.basicBlocks[block]);
+                    }
+                    runner = this.immediatePostDominators[runner];
+                }
+            }
+        }
+    }
+
+    private int indexOf(IRBasicBlock basicBlock) {
+        int index = basicBlock.number();
+        if (index < 0 || index >= this.basicBlocks.length || this.basicBlocks[index] != basicBlock) {
+            throw new RuntimeException("When PostDominatorTree.indexOf(), the basic block is not analyzed, " +
+                    "the PostDominatorTree may be outdated");
+        }
+        return index;
+    }
+
+    // 直接后支配者，为虚拟出口时返回null
+    public IRBasicBlock immediatePostDominator(IRBasicBlock basicBlock) {
+        int immediatePostDominator = this.immediatePostDominators[this.indexOf(basicBlock)];
+        return immediatePostDominator != this.exit ? this.basicBlocks[immediatePostDominator] : null;
+    }
+
+    // 后支配边界，即basicBlock控制依赖的基本块
+    public List<IRBasicBlock> postDominanceFrontiers(IRBasicBlock basicBlock) {
+        ArrayList<IRBasicBlock> postDominanceFrontiers = this.postDominanceFrontiers.get(this.indexOf(basicBlock));
+        return postDominanceFrontiers == null ? List.of() : postDominanceFrontiers;
+    }
+
+    // 基本块能否到达以ret结尾的基本块，不能时处于死循环中
+    public boolean reachesReturn(IRBasicBlock basicBlock) {
+        return this.reachesReturn[this.indexOf(basicBlock)];
+    }
+}
@@ -0,0 +1,209 @@
+package pass.refactor;
+
+import IR.IRModule;
+import IR.IRValue;
+import IR.value.IRBasicBlock;
+import IR.value.IRFunction;
+import IR.value.instruction.*;
+import pass.ModulePass;
+import pass.analyzer.AnalysisManager;
+import pass.analyzer.PostDominatorTree;
+import util.DenseSet;
+import util.DoublyLinkedList;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+// 激进的死代码删除：与DeadCodeEmit不同，跳转并不总是活跃的
+// 从有副作用的指令出发用工作表标记活跃，活跃指令所在基本块的后支配边界（即其控制依赖的跳转）也是活跃的
+// 不活跃的条件跳转改为跳转到直接后支配者，其间不再可达的基本块整体删除
+// 需要知道被调用的函数有无副作用，因此是ModulePass
+public class AggressiveDeadCodeEmit implements ModulePass {
+    // 没有副作用的用户函数，对其结果未被使用的调用可以删除
+    private final HashSet<IRFunction> pureFunctions;
+    private final DenseSet<IRInstruction<?>> liveInstructions;
+    private final ArrayDeque<IRInstruction<?>> workList;
+    // 以基本块的编号为下标，只在eliminateDeadCode()中有效
+    private boolean[] liveBlocks;
+
+    public AggressiveDeadCodeEmit() {
+        this.pureFunctions = new HashSet<>();
+        this.liveInstructions = new DenseSet<>();
+        this.workList = new ArrayDeque<>();
+    }
+
+    @Override
+    public String name() {
+        return "adce";
+    }
+
+    // 删除基本块时同时维护CFG，但基本块的编号随之失效
+    @Override
+    public Set<AnalysisManager.Analysis> preservedAnalyses() {
+        return EnumSet.of(AnalysisManager.Analysis.CFG);
+    }
+
+    @Override
+    public boolean run(IRModule irModule, AnalysisManager analysisManager) {
+        this.calculatePureFunctions(irModule);
+        boolean changed = false;
+        for (IRFunction irFunction : irModule.functions()) {
+            if (!irFunction.isLib()) {
+                changed |= this.eliminateDeadCode(irFunction, analysisManager);
+            }
+        }
+        return changed;
+    }
+
+    // 先假定所有用户函数都没有副作用，再不断去除有副作用的函数直到不动点，互相递归的函数也能得到正确的结果
+    // 假定函数总会返回，不考虑死循环与过深的递归
+    private void calculatePureFunctions(IRModule irModule) {
+        this.pureFunctions.clear();
+        for (IRFunction irFunction : irModule.functions()) {
+            if (!irFunction.isLib()) {
+                this.pureFunctions.add(irFunction);
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (IRFunction irFunction : irModule.functions()) {
+                if (this.pureFunctions.contains(irFunction) && this.hasSideEffect(irFunction)) {
+                    this.pureFunctions.remove(irFunction);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    // 写入函数自己的alloca以外的内存，或调用库函数、有副作用的函数，即有副作用
+    private boolean hasSideEffect(IRFunction irFunction) {
+        for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : basicBlock.instructions()) {
+                IRInstruction<?> instruction = instructionNode.value();
+                if (instruction instanceof StoreInst storeInst) {
+                    IRValue<?> pointer = storeInst.getPointerOperand();
+                    while (pointer instanceof GetElementPtrInst getElementPtrInst) {
+                        pointer = getElementPtrInst.getPointerOperand();
+                    }
+                    if (!(pointer instanceof AllocaInst)) {
+                        return true;
+                    }
+                } else if (instruction instanceof CallInst callInst &&
+                        !this.pureFunctions.contains(callInst.getCalledFunction())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isRoot(IRInstruction<?> instruction) {
+        return instruction instanceof ReturnInst ||
+                instruction instanceof StoreInst ||
+                instruction instanceof CallInst callInst && !this.pureFunctions.contains(callInst.getCalledFunction());
+    }
+
+    private boolean eliminateDeadCode(IRFunction irFunction, AnalysisManager analysisManager) {
+        PostDominatorTree postDominatorTree = analysisManager.postDominatorTree(irFunction);
+        // 基本块没有变化，编号与后支配树一致
+        irFunction.renumber();
+        this.liveInstructions.clear();
+        this.liveBlocks = new boolean[irFunction.basicBlockCount()];
+        for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : basicBlock.instructions()) {
+                if (this.isRoot(instructionNode.value())) {
+                    this.markLive(instructionNode.value());
+                }
+            }
+            IRInstruction<?> terminator = basicBlock.instructions().tail().value();
+            // 死循环中的跳转，以及后支配者为虚拟出口、无法改写的条件跳转，都需要保留
+            if (!postDominatorTree.reachesReturn(basicBlock) ||
+                    terminator instanceof BranchInst branchInst && branchInst.isConditional() &&
+                            postDominatorTree.immediatePostDominator(basicBlock) == null) {
+                this.markLive(terminator);
+            }
+        }
+        this.propagateLiveness(postDominatorTree);
+
+        boolean changed = false;
+        ArrayList<IRInstruction<?>> deadInstructions = new ArrayList<>();
+        ArrayList<BranchInst> deadBranches = new ArrayList<>();
+        for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : basicBlock.instructions()) {
+                IRInstruction<?> instruction = instructionNode.value();
+                if (this.liveInstructions.contains(instruction)) {
+                    continue;
+                }
+                if (instruction instanceof BranchInst branchInst) {
+                    // 无条件跳转不影响控制依赖，保持不变
+                    if (branchInst.isConditional()) {
+                        deadBranches.add(branchInst);
+                    }
+                } else {
+                    deadInstructions.add(instruction);
+                }
+            }
+        }
+        // 不活跃的指令之间可能互相使用，整体删除
+        for (IRInstruction<?> deadInstruction : deadInstructions) {
+            deadInstruction.eliminateWithoutCheck();
+            changed = true;
+        }
+        for (BranchInst deadBranch : deadBranches) {
+            this.redirectBranch(deadBranch, postDominatorTree.immediatePostDominator(deadBranch.parent()));
+            changed = true;
+        }
+        if (!deadBranches.isEmpty()) {
+            // 其中都是不活跃的指令，可达的基本块中也没有以其为入边的活跃PHI
+            RemoveUnreachableBasicBlock.removeUnreachableBasicBlocks(irFunction);
+        }
+        this.liveBlocks = null;
+        return changed;
+    }
+
+    private void markLive(IRInstruction<?> instruction) {
+        if (this.liveInstructions.add(instruction)) {
+            this.workList.add(instruction);
+        }
+    }
+
+    // 用工作表代替递归，很长的依赖链也不会造成过深的递归
+    private void propagateLiveness(PostDominatorTree postDominatorTree) {
+        while (!this.workList.isEmpty()) {
+            IRInstruction<?> instruction = this.workList.poll();
+            IRBasicBlock basicBlock = instruction.parent();
+            if (!this.liveBlocks[basicBlock.number()]) {
+                // 基本块是否执行由其控制依赖的跳转决定
+                this.liveBlocks[basicBlock.number()] = true;
+                for (IRBasicBlock controlBlock : postDominatorTree.postDominanceFrontiers(basicBlock)) {
+                    this.markLive(controlBlock.instructions().tail().value());
+                }
+            }
+            for (int i = 0; i < instruction.getNumOperands(); i++) {
+                IRValue<?> operand = instruction.getOperand(i);
+                if (operand instanceof IRInstruction<?> operandInstruction) {
+                    this.markLive(operandInstruction);
+                } else if (instruction instanceof PHINode && operand instanceof IRBasicBlock incomingBlock) {
+                    // PHI的取值由从哪个前驱到达决定，前驱的跳转也是活跃的
+                    this.markLive(incomingBlock.instructions().tail().value());
+                }
+            }
+        }
+    }
+
+    // 不活跃的条件跳转控制的区域中没有活跃的指令，直接跳转到直接后支配者
+    // 直接后支配者中的PHI若活跃，其来自该区域的入边会使跳转活跃，因此此时其中的PHI都已经被删除
+    private void redirectBranch(BranchInst branchInst, IRBasicBlock immediatePostDominator) {
+        IRBasicBlock basicBlock = branchInst.parent();
+        branchInst.eliminate();
+        for (IRBasicBlock successor : basicBlock.successors().toArray(new IRBasicBlock[0])) {
+            basicBlock.removeSuccessor(successor);
+        }
+        new BranchInst(immediatePostDominator, basicBlock);
+        basicBlock.addSuccessor(immediatePostDominator);
+    }
+}
@@ -1,36 +1,44 @@
 package pass.refactor;
 
-import IR.IRModule;
 import IR.value.IRBasicBlock;
 import IR.value.IRFunction;
 import IR.value.instruction.*;
-import pass.Pass;
+import pass.FunctionPass;
+import pass.analyzer.AnalysisManager;
+import util.DenseSet;
 import util.DoublyLinkedList;
 
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.Set;
 
-public class DeadCodeEmit implements Pass {
-    private final IRModule irModule;
-    private boolean finished = false;
+public class DeadCodeEmit implements FunctionPass {
+    private final DenseSet<IRInstruction<?>> liveInstruction;
 
-    private final HashSet<IRInstruction<?>> liveInstruction;
+    public DeadCodeEmit() {
+        this.liveInstruction = new DenseSet<>();
+    }
 
-    public DeadCodeEmit(IRModule irModule) {
-        this.irModule = irModule;
-        this.liveInstruction = new HashSet<>();
+    @Override
+    public FunctionPass fork() {
+        return new DeadCodeEmit();
     }
 
     @Override
-    public void run() {
-        if (finished) {
-            throw new RuntimeException("When DeadCodeEmit.run(), the pass is finished");
-        }
-        for (IRFunction irFunction : irModule.functions()) {
-            if (!irFunction.isLib()) {
-                this.deadCodeEmit(irFunction);
-            }
-        }
-        this.finished = true;
+    public String name() {
+        return "dce";
+    }
+
+    // 终结指令总是活跃的，不改变基本块与CFG
+    @Override
+    public Set<AnalysisManager.Analysis> preservedAnalyses() {
+        return EnumSet.of(AnalysisManager.Analysis.CFG, AnalysisManager.Analysis.DOMINATOR_TREE,
+                AnalysisManager.Analysis.POST_DOMINATOR_TREE, AnalysisManager.Analysis.LOOP_INFO);
+    }
+
+    @Override
+    public boolean run(IRFunction irFunction, AnalysisManager analysisManager) {
+        return this.deadCodeEmit(irFunction);
     }
 
     private static boolean isLive(IRInstruction<?> irInstruction) {
@@ -40,7 +48,9 @@ public class DeadCodeEmit implements Pass {
                 irInstruction instanceof CallInst;
     }
 
-    private void deadCodeEmit(IRFunction irFunction) {
+    private boolean deadCodeEmit(IRFunction irFunction) {
+        boolean changed = false;
+        irFunction.renumber();
         this.liveInstruction.clear();
         for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
             DoublyLinkedList.Node<IRInstruction<?>> instructionNode = basicBlock.instructions().tail();
@@ -58,18 +68,26 @@ public class DeadCodeEmit implements Pass {
                 IRInstruction<?> instruction = instructionNode.value();
                 if (!this.liveInstruction.contains(instruction)) {
                     instruction.eliminateWithoutCheck();
+                    changed = true;
                 }
                 instructionNode = instructionNode.pred();
             }
         }
+        return changed;
     }
 
+    // 用栈代替递归，很长的依赖链也不会造成过深的递归
     private void calculateClosure(IRInstruction<?> irInstruction) {
-        if (!this.liveInstruction.contains(irInstruction)) {
-            this.liveInstruction.add(irInstruction);
-            for (int i = 0; i < irInstruction.getNumOperands(); i++) {
-                if (irInstruction.getOperand(i) instanceof IRInstruction<?> usedInstruction) {
-                    this.calculateClosure(usedInstruction);
+        if (this.liveInstruction.add(irInstruction)) {
+            ArrayDeque<IRInstruction<?>> closureStack = new ArrayDeque<>();
+            closureStack.push(irInstruction);
+            while (!closureStack.isEmpty()) {
+                IRInstruction<?> liveInstruction = closureStack.pop();
+                for (int i = 0; i < liveInstruction.getNumOperands(); i++) {
+                    if (liveInstruction.getOperand(i) instanceof IRInstruction<?> usedInstruction &&
+                            this.liveInstruction.add(usedInstruction)) {
+                        closureStack.push(usedInstruction);
+                    }
                 }
             }
         }
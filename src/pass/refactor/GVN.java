@@ -0,0 +1,207 @@
+package pass.refactor;
+
+import IR.IRValue;
+import IR.type.IntegerType;
+import IR.value.IRBasicBlock;
+import IR.value.IRFunction;
+import IR.value.constant.ConstantInt;
+import IR.value.instruction.*;
+import pass.FunctionPass;
+import pass.analyzer.AnalysisManager;
+import pass.analyzer.DominatorTree;
+import util.DoublyLinkedList;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+// 沿支配树的作用域化的值编号：以操作码与操作数为键记录已经计算过的纯指令，被支配的相同计算直接使用先前的结果
+// 离开基本块时撤销其中加入的键，因此表中的值总是支配当前的基本块
+// load以内存版本区分，store与call使内存版本增加；只有唯一前驱为直接支配者的基本块继承其结束时的内存版本，
+// 其余基本块的路径上可能有未经过的store，使用新的内存版本
+public class GVN implements FunctionPass {
+    // opcode区分指令的种类与运算，extra为TruncInst、ZExtInst的目标位宽或load的内存版本
+    // 操作数的比较使用IRValue的同一性，整数常量是唯一化的，相同的常量也是同一个对象
+    private record Expression(Object opcode, int extra, List<IRValue<?>> operands) {
+    }
+
+    private final HashMap<Expression, IRValue<?>> availableValues;
+    // undoLog中交替保存加入的键与被覆盖的值（可以为null）
+    private final ArrayList<Object> undoLog;
+    // 各基本块结束时的内存版本，以基本块的编号为下标
+    private int[] endGenerations;
+    private int currentGeneration;
+    private int generationCount;
+
+    public GVN() {
+        this.availableValues = new HashMap<>();
+        this.undoLog = new ArrayList<>();
+    }
+
+    @Override
+    public FunctionPass fork() {
+        return new GVN();
+    }
+
+    @Override
+    public String name() {
+        return "gvn";
+    }
+
+    // 只删除指令，不改变基本块与CFG
+    @Override
+    public Set<AnalysisManager.Analysis> preservedAnalyses() {
+        return EnumSet.of(AnalysisManager.Analysis.CFG, AnalysisManager.Analysis.DOMINATOR_TREE,
+                AnalysisManager.Analysis.POST_DOMINATOR_TREE, AnalysisManager.Analysis.LOOP_INFO);
+    }
+
+    @Override
+    public boolean run(IRFunction irFunction, AnalysisManager analysisManager) {
+        DominatorTree dominatorTree = analysisManager.dominatorTree(irFunction);
+        // 交换律运算按编号排列操作数，基本块没有变化，编号与支配树一致
+        irFunction.renumber();
+        this.availableValues.clear();
+        this.undoLog.clear();
+        this.endGenerations = new int[irFunction.basicBlockCount()];
+        this.generationCount = 0;
+        boolean changed = this.numberDominatorTree(irFunction.basicBlocks().get(0), dominatorTree);
+        this.endGenerations = null;
+        return changed;
+    }
+
+    // DFS栈中保存基本块、进入时undoLog的长度以及下一个要访问的子结点的序号
+    private boolean numberDominatorTree(IRBasicBlock entryBlock, DominatorTree dominatorTree) {
+        boolean changed = false;
+        ArrayList<IRBasicBlock> stackBlocks = new ArrayList<>();
+        ArrayList<Integer> stackUndoMarks = new ArrayList<>();
+        ArrayList<Integer> stackNextChildren = new ArrayList<>();
+        changed |= this.numberBasicBlock(entryBlock, dominatorTree);
+        stackBlocks.add(entryBlock);
+        stackUndoMarks.add(0);
+        stackNextChildren.add(0);
+        while (!stackBlocks.isEmpty()) {
+            int top = stackBlocks.size() - 1;
+            List<IRBasicBlock> children = dominatorTree.immediateDominating(stackBlocks.get(top));
+            int nextChild = stackNextChildren.get(top);
+            if (nextChild < children.size()) {
+                stackNextChildren.set(top, nextChild + 1);
+                IRBasicBlock child = children.get(nextChild);
+                int undoMark = this.undoLog.size();
+                changed |= this.numberBasicBlock(child, dominatorTree);
+                stackBlocks.add(child);
+                stackUndoMarks.add(undoMark);
+                stackNextChildren.add(0);
+            } else {
+                // 离开基本块，撤销其中加入的键
+                int undoMark = stackUndoMarks.get(top);
+                while (this.undoLog.size() > undoMark) {
+                    IRValue<?> overwrittenValue = (IRValue<?>) this.undoLog.remove(this.undoLog.size() - 1);
+                    // CAST undoLog中键与值交替保存
+                    Expression expression = (Expression) this.undoLog.remove(this.undoLog.size() - 1);
+                    if (overwrittenValue == null) {
+                        this.availableValues.remove(expression);
+                    } else {
+                        this.availableValues.put(expression, overwrittenValue);
+                    }
+                }
+                stackBlocks.remove(top);
+                stackUndoMarks.remove(top);
+                stackNextChildren.remove(top);
+            }
+        }
+        return changed;
+    }
+
+    private boolean numberBasicBlock(IRBasicBlock basicBlock, DominatorTree dominatorTree) {
+        boolean changed = false;
+        IRBasicBlock immediateDominator = dominatorTree.immediateDominator(basicBlock);
+        if (immediateDominator != null && basicBlock.predecessors().size() == 1 &&
+                basicBlock.predecessors().get(0) == immediateDominator) {
+            this.currentGeneration = this.endGenerations[immediateDominator.number()];
+        } else {
+            this.currentGeneration = ++this.generationCount;
+        }
+        Iterator<DoublyLinkedList.Node<IRInstruction<?>>> instructionIterator = basicBlock.instructions().iterator();
+        while (instructionIterator.hasNext()) {
+            IRInstruction<?> instruction = instructionIterator.next().value();
+            if (instruction instanceof StoreInst storeInst) {
+                // 之后对同一地址的load在没有其他store、call时得到存入的值
+                this.currentGeneration = ++this.generationCount;
+                this.addAvailable(new Expression(LoadInst.class, this.currentGeneration,
+                        List.of(storeInst.getPointerOperand())), storeInst.getValueOperand());
+                continue;
+            } else if (instruction instanceof CallInst) {
+                // 被调用的函数可能修改全局变量与数组
+                this.currentGeneration = ++this.generationCount;
+                continue;
+            }
+            Expression expression = this.expressionOf(instruction);
+            if (expression == null) {
+                continue;
+            }
+            IRValue<?> availableValue = this.availableValues.get(expression);
+            if (availableValue != null) {
+                instruction.replaceAllUsesWith(availableValue);
+                instruction.dropAllOperands();
+                // 指令的User已经被全部替换，可以直接删除
+                instructionIterator.remove();
+                changed = true;
+            } else {
+                this.addAvailable(expression, instruction);
+            }
+        }
+        this.endGenerations[basicBlock.number()] = this.currentGeneration;
+        return changed;
+    }
+
+    private void addAvailable(Expression expression, IRValue<?> value) {
+        this.undoLog.add(expression);
+        this.undoLog.add(this.availableValues.put(expression, value));
+    }
+
+    // 可以编号的指令的键，其余指令返回null
+    private Expression expressionOf(IRInstruction<?> instruction) {
+        if (instruction instanceof BinaryOperator binaryOperator) {
+            BinaryOperator.BinaryOps binaryOp = binaryOperator.binaryOp();
+            boolean commutative = binaryOp == BinaryOperator.BinaryOps.ADD || binaryOp == BinaryOperator.BinaryOps.MUL;
+            return new Expression(binaryOp, 0,
+                    orderedOperands(binaryOperator.getOperand1(), binaryOperator.getOperand2(), commutative));
+        } else if (instruction instanceof IcmpInst icmpInst) {
+            IcmpInst.Predicate predicate = icmpInst.predicate();
+            boolean commutative = predicate == IcmpInst.Predicate.EQ || predicate == IcmpInst.Predicate.NE;
+            return new Expression(predicate, 0,
+                    orderedOperands(icmpInst.getOperand1(), icmpInst.getOperand2(), commutative));
+        } else if (instruction instanceof CastInst.ZExtInst || instruction instanceof CastInst.TruncInst) {
+            // CAST ZExtInst与TruncInst的结果一定是整数
+            return new Expression(instruction.getClass(), ((IntegerType) instruction.type()).getBitWidth(),
+                    List.of(((CastInst<?>) instruction).getSourceOperand()));
+        } else if (instruction instanceof GetElementPtrInst || instruction instanceof PHINode) {
+            // PHI只与同一基本块中的PHI相同，将所在的基本块也作为操作数
+            ArrayList<IRValue<?>> operands = new ArrayList<>(instruction.getNumOperands() + 1);
+            for (int i = 0; i < instruction.getNumOperands(); i++) {
+                operands.add(instruction.getOperand(i));
+            }
+            if (instruction instanceof PHINode) {
+                operands.add(instruction.parent());
+            }
+            return new Expression(instruction.getClass(), 0, operands);
+        } else if (instruction instanceof LoadInst loadInst) {
+            return new Expression(LoadInst.class, this.currentGeneration, List.of(loadInst.getPointerOperand()));
+        } else {
+            return null;
+        }
+    }
+
+    // 满足交换律时，常量放在右侧，两个非常量按编号排列
+    private static List<IRValue<?>> orderedOperands(IRValue<?> operand1, IRValue<?> operand2, boolean commutative) {
+        if (commutative && (operand1 instanceof ConstantInt && !(operand2 instanceof ConstantInt) ||
+                !(operand2 instanceof ConstantInt) && operand1.number() > operand2.number())) {
+            return List.of(operand2, operand1);
+        } else {
+            return List.of(operand1, operand2);
+        }
+    }
+}
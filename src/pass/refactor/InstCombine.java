@@ -0,0 +1,429 @@
+package pass.refactor;
+
+import IR.IRUse;
+import IR.IRValue;
+import IR.type.IRType;
+import IR.type.IntegerType;
+import IR.value.IRFunction;
+import IR.value.IRBasicBlock;
+import IR.value.constant.ConstantInt;
+import IR.value.instruction.*;
+import pass.FunctionPass;
+import pass.analyzer.AnalysisManager;
+import util.DenseSet;
+import util.DoublyLinkedList;
+
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.Set;
+
+// 以工作表驱动的指令合并，处理Visitor生成的布尔值的zext/icmp链、char运算的zext/trunc往返以及常见的代数恒等式
+// 一条指令被替换后只有它的User需要重新合并，被修改的指令重新加入工作表，变为无用的操作数随之删除，不需要重新扫描整个函数
+public class InstCombine implements FunctionPass {
+    private final ArrayDeque<IRInstruction<?>> workList;
+    // 在工作表中的指令，被删除的指令同时移出，出队时不在其中的指令直接跳过
+    private final DenseSet<IRInstruction<?>> inWorkList;
+    private boolean changed;
+
+    public InstCombine() {
+        this.workList = new ArrayDeque<>();
+        this.inWorkList = new DenseSet<>();
+    }
+
+    @Override
+    public FunctionPass fork() {
+        return new InstCombine();
+    }
+
+    @Override
+    public String name() {
+        return "instcombine";
+    }
+
+    // 只增删指令，不改变基本块与CFG
+    @Override
+    public Set<AnalysisManager.Analysis> preservedAnalyses() {
+        return EnumSet.of(AnalysisManager.Analysis.CFG, AnalysisManager.Analysis.DOMINATOR_TREE,
+                AnalysisManager.Analysis.POST_DOMINATOR_TREE, AnalysisManager.Analysis.LOOP_INFO);
+    }
+
+    @Override
+    public boolean run(IRFunction irFunction, AnalysisManager analysisManager) {
+        irFunction.renumber();
+        this.workList.clear();
+        this.inWorkList.clear();
+        this.changed = false;
+        // 按程序顺序处理，操作数一般先于User被合并
+        for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : basicBlock.instructions()) {
+                this.pushWorkList(instructionNode.value());
+            }
+        }
+        while (!this.workList.isEmpty()) {
+            IRInstruction<?> instruction = this.workList.poll();
+            if (this.inWorkList.contains(instruction)) {
+                this.inWorkList.remove(instruction);
+                this.combineInstruction(instruction);
+            }
+        }
+        return this.changed;
+    }
+
+    private void pushWorkList(IRValue<?> value) {
+        if (value instanceof IRInstruction<?> instruction && this.inWorkList.add(instruction)) {
+            this.workList.offer(instruction);
+        }
+    }
+
+    // 没有副作用的指令，不被使用时可以删除
+    private static boolean isRemovable(IRInstruction<?> instruction) {
+        return instruction instanceof BinaryOperator ||
+                instruction instanceof IcmpInst ||
+                instruction instanceof CastInst<?> ||
+                instruction instanceof GetElementPtrInst ||
+                instruction instanceof LoadInst ||
+                instruction instanceof PHINode;
+    }
+
+    private void combineInstruction(IRInstruction<?> instruction) {
+        if (!instruction.isUsed() && isRemovable(instruction)) {
+            this.eraseInstruction(instruction);
+            return;
+        }
+        IRValue<?> replacement = null;
+        if (instruction instanceof BinaryOperator binaryOperator) {
+            replacement = this.combineBinaryOperator(binaryOperator);
+        } else if (instruction instanceof IcmpInst icmpInst) {
+            replacement = this.combineIcmp(icmpInst);
+        } else if (instruction instanceof CastInst.ZExtInst || instruction instanceof CastInst.TruncInst) {
+            // CAST ZExtInst与TruncInst的结果一定是整数
+            replacement = this.combineIntegerCast((CastInst<?>) instruction, (IntegerType) instruction.type());
+        } else if (instruction instanceof PHINode phiNode) {
+            replacement = combinePhi(phiNode);
+        }
+        if (replacement != null) {
+            this.replaceInstruction(instruction, replacement);
+        }
+    }
+
+    private void replaceInstruction(IRInstruction<?> instruction, IRValue<?> replacement) {
+        for (IRUse use : instruction.uses()) {
+            this.pushWorkList(use.user());
+        }
+        instruction.replaceAllUsesWith(replacement);
+        this.eraseInstruction(instruction);
+    }
+
+    // 删除不被使用的指令，变为无用的操作数加入工作表
+    private void eraseInstruction(IRInstruction<?> instruction) {
+        IRValue<?>[] operands = new IRValue<?>[instruction.getNumOperands()];
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = instruction.getOperand(i);
+        }
+        instruction.eliminate();
+        this.inWorkList.remove(instruction);
+        for (IRValue<?> operand : operands) {
+            if (!operand.isUsed()) {
+                this.pushWorkList(operand);
+            }
+        }
+        this.changed = true;
+    }
+
+    // 在position之前插入新建的指令（构造时parent为null），新指令也加入工作表
+    private <I extends IRInstruction<?>> I insertBefore(I newInstruction, IRInstruction<?> position) {
+        newInstruction.setParent(position.parent());
+        newInstruction.listNode().insertBefore(position.listNode());
+        this.pushWorkList(newInstruction);
+        return newInstruction;
+    }
+
+    // 原地修改二元运算的操作数，结果不变，User不需要重新合并
+    private void setOperands(BinaryOperator binaryOperator, IRValue<?> operand1, IRValue<?> operand2) {
+        IRValue<?> oldOperand1 = binaryOperator.getOperand1();
+        IRValue<?> oldOperand2 = binaryOperator.getOperand2();
+        binaryOperator.setOperand(0, operand1);
+        binaryOperator.setOperand(1, operand2);
+        this.pushWorkList(binaryOperator);
+        if (!oldOperand1.isUsed()) {
+            this.pushWorkList(oldOperand1);
+        }
+        if (!oldOperand2.isUsed()) {
+            this.pushWorkList(oldOperand2);
+        }
+        this.changed = true;
+    }
+
+    private static boolean isConstant(IRValue<?> value, int constantValue) {
+        return value instanceof ConstantInt constantInt && constantInt.constantValue() == constantValue;
+    }
+
+    // value是否为第二个操作数是常量的binaryOp运算
+    private static boolean isConstantOperation(IRValue<?> value, BinaryOperator.BinaryOps binaryOp) {
+        return value instanceof BinaryOperator binaryOperator && binaryOperator.binaryOp() == binaryOp &&
+                binaryOperator.getOperand2() instanceof ConstantInt;
+    }
+
+    // 0 - x
+    private static boolean isNegation(IRValue<?> value) {
+        return value instanceof BinaryOperator binaryOperator &&
+                binaryOperator.binaryOp() == BinaryOperator.BinaryOps.SUB && isConstant(binaryOperator.getOperand1(), 0);
+    }
+
+    private IRValue<?> combineBinaryOperator(BinaryOperator binaryOperator) {
+        IntegerType type = binaryOperator.type();
+        BinaryOperator.BinaryOps binaryOp = binaryOperator.binaryOp();
+        boolean commutative = binaryOp == BinaryOperator.BinaryOps.ADD || binaryOp == BinaryOperator.BinaryOps.MUL;
+        if (commutative && binaryOperator.getOperand1() instanceof ConstantInt &&
+                !(binaryOperator.getOperand2() instanceof ConstantInt)) {
+            // 满足交换律时常量放在右侧
+            this.setOperands(binaryOperator, binaryOperator.getOperand2(), binaryOperator.getOperand1());
+        }
+        IRValue<IntegerType> operand1 = binaryOperator.getOperand1();
+        IRValue<IntegerType> operand2 = binaryOperator.getOperand2();
+        if (operand1 instanceof ConstantInt constantInt1 && operand2 instanceof ConstantInt constantInt2) {
+            int value1 = constantInt1.constantValue();
+            int value2 = constantInt2.constantValue();
+            if (value2 == 0 && (binaryOp == BinaryOperator.BinaryOps.DIV || binaryOp == BinaryOperator.BinaryOps.MOD)) {
+                // 除0留到运行时
+                return null;
+            }
+            return ConstantInt.get(type, switch (binaryOp) {
+                case ADD -> value1 + value2;
+                case SUB -> value1 - value2;
+                case MUL -> value1 * value2;
+                case DIV -> value1 / value2;
+                case MOD -> value1 % value2;
+            });
+        } else if (operand2 instanceof ConstantInt constantInt2) {
+            return this.combineConstantOperand(binaryOperator, operand1, constantInt2.constantValue());
+        } else if (isConstant(operand1, 0) && binaryOp != BinaryOperator.BinaryOps.SUB) {
+            // 0 / x = 0，0 % x = 0（除0是未定义行为）
+            return ConstantInt.get(type, 0);
+        } else if (operand1 == operand2 && binaryOp != BinaryOperator.BinaryOps.ADD &&
+                binaryOp != BinaryOperator.BinaryOps.MUL) {
+            // x - x = 0，x / x = 1，x % x = 0（除0是未定义行为）
+            return ConstantInt.get(type, binaryOp == BinaryOperator.BinaryOps.DIV ? 1 : 0);
+        }
+        if (binaryOp == BinaryOperator.BinaryOps.ADD) {
+            if (operand1 instanceof BinaryOperator subOperator && subOperator.binaryOp() == BinaryOperator.BinaryOps.SUB &&
+                    subOperator.getOperand2() == operand2) {
+                // (a - y) + y = a
+                return subOperator.getOperand1();
+            } else if (operand2 instanceof BinaryOperator subOperator && subOperator.binaryOp() == BinaryOperator.BinaryOps.SUB &&
+                    subOperator.getOperand2() == operand1) {
+                // x + (a - x) = a
+                return subOperator.getOperand1();
+            } else if (isNegation(operand2)) {
+                // x + (0 - y) = x - y
+                return this.insertBefore(new BinaryOperator(BinaryOperator.BinaryOps.SUB, operand1,
+                        ((BinaryOperator) operand2).getOperand2(), null), binaryOperator);
+            } else if (isNegation(operand1)) {
+                // (0 - x) + y = y - x
+                return this.insertBefore(new BinaryOperator(BinaryOperator.BinaryOps.SUB, operand2,
+                        ((BinaryOperator) operand1).getOperand2(), null), binaryOperator);
+            }
+        } else if (binaryOp == BinaryOperator.BinaryOps.SUB) {
+            if (isNegation(operand2)) {
+                if (isConstant(operand1, 0)) {
+                    // 0 - (0 - y) = y
+                    return ((BinaryOperator) operand2).getOperand2();
+                }
+                // x - (0 - y) = x + y
+                return this.insertBefore(new BinaryOperator(BinaryOperator.BinaryOps.ADD, operand1,
+                        ((BinaryOperator) operand2).getOperand2(), null), binaryOperator);
+            } else if (operand1 instanceof BinaryOperator addOperator && addOperator.binaryOp() == BinaryOperator.BinaryOps.ADD) {
+                // (a + y) - y = a，(y + b) - y = b
+                if (addOperator.getOperand2() == operand2) {
+                    return addOperator.getOperand1();
+                } else if (addOperator.getOperand1() == operand2) {
+                    return addOperator.getOperand2();
+                }
+            }
+        }
+        return null;
+    }
+
+    // 第二个操作数为常量constantValue，第一个操作数不是常量
+    private IRValue<?> combineConstantOperand(BinaryOperator binaryOperator, IRValue<IntegerType> operand1, int constantValue) {
+        IntegerType type = binaryOperator.type();
+        switch (binaryOperator.binaryOp()) {
+            case ADD -> {
+                if (constantValue == 0) {
+                    // x + 0 = x
+                    return operand1;
+                } else if (isConstantOperation(operand1, BinaryOperator.BinaryOps.ADD)) {
+                    // (x + c1) + c2 = x + (c1 + c2)
+                    BinaryOperator innerOperator = (BinaryOperator) operand1;
+                    // CAST isConstantOperation()保证第二个操作数为常量
+                    int innerConstantValue = ((ConstantInt) innerOperator.getOperand2()).constantValue();
+                    this.setOperands(binaryOperator, innerOperator.getOperand1(),
+                            ConstantInt.get(type, innerConstantValue + constantValue));
+                }
+            }
+            case SUB -> {
+                if (constantValue == 0) {
+                    // x - 0 = x
+                    return operand1;
+                }
+                // x - c = x + (-c)，以便与其他加法合并
+                return this.insertBefore(new BinaryOperator(BinaryOperator.BinaryOps.ADD, operand1,
+                        ConstantInt.get(type, -constantValue), null), binaryOperator);
+            }
+            case MUL -> {
+                if (constantValue == 0) {
+                    // x * 0 = 0
+                    return ConstantInt.get(type, 0);
+                } else if (constantValue == 1) {
+                    // x * 1 = x
+                    return operand1;
+                } else if (constantValue == -1) {
+                    // x * -1 = 0 - x
+                    return this.insertBefore(new BinaryOperator(BinaryOperator.BinaryOps.SUB,
+                            ConstantInt.get(type, 0), operand1, null), binaryOperator);
+                } else if (isConstantOperation(operand1, BinaryOperator.BinaryOps.MUL)) {
+                    // (x * c1) * c2 = x * (c1 * c2)
+                    BinaryOperator innerOperator = (BinaryOperator) operand1;
+                    // CAST isConstantOperation()保证第二个操作数为常量
+                    int innerConstantValue = ((ConstantInt) innerOperator.getOperand2()).constantValue();
+                    this.setOperands(binaryOperator, innerOperator.getOperand1(),
+                            ConstantInt.get(type, innerConstantValue * constantValue));
+                }
+            }
+            case DIV -> {
+                if (constantValue == 1) {
+                    // x / 1 = x
+                    return operand1;
+                } else if (constantValue == -1) {
+                    // x / -1 = 0 - x
+                    return this.insertBefore(new BinaryOperator(BinaryOperator.BinaryOps.SUB,
+                            ConstantInt.get(type, 0), operand1, null), binaryOperator);
+                }
+            }
+            case MOD -> {
+                if (constantValue == 1 || constantValue == -1) {
+                    // x % 1 = x % -1 = 0
+                    return ConstantInt.get(type, 0);
+                }
+            }
+        }
+        return null;
+    }
+
+    private IRValue<?> combineIcmp(IcmpInst icmpInst) {
+        IcmpInst.Predicate predicate = icmpInst.predicate();
+        IRValue<IntegerType> operand1 = icmpInst.getOperand1();
+        IRValue<IntegerType> operand2 = icmpInst.getOperand2();
+        if (operand1 instanceof ConstantInt constantInt1 && operand2 instanceof ConstantInt constantInt2) {
+            return booleanConstant(predicate.evaluate(constantInt1.constantValue(), constantInt2.constantValue()));
+        } else if (operand1 instanceof ConstantInt) {
+            // 常量放在右侧
+            return this.insertBefore(new IcmpInst(predicate.swapped(), operand2, operand1, null), icmpInst);
+        } else if (operand1 == operand2) {
+            return booleanConstant(predicate.evaluate(0, 0));
+        }
+        if (!(operand2 instanceof ConstantInt constantInt2)) {
+            return null;
+        }
+        int constantValue = constantInt2.constantValue();
+        if (operand1 instanceof CastInst.ZExtInst zExtInst) {
+            // CAST ZExtInst的源操作数一定是整数
+            IRValue<IntegerType> source = IRValue.cast(zExtInst.getSourceOperand());
+            int sourceBitWidth = source.type().getBitWidth();
+            if (sourceBitWidth == 1) {
+                // Visitor将条件表示为zext i1后与0比较，按i1的两种取值求出比较的结果
+                boolean resultOfFalse = predicate.evaluate(0, constantValue);
+                boolean resultOfTrue = predicate.evaluate(1, constantValue);
+                if (resultOfFalse == resultOfTrue) {
+                    return booleanConstant(resultOfTrue);
+                } else if (resultOfTrue) {
+                    return source;
+                } else {
+                    return this.insertNot(source, icmpInst);
+                }
+            } else {
+                // 零扩展的值在[0, 2^w - 1]之间，常量在此之外或两端的比较结果相同时，结果是确定的
+                int maxValue = (1 << sourceBitWidth) - 1;
+                if (predicate == IcmpInst.Predicate.EQ || predicate == IcmpInst.Predicate.NE) {
+                    if (constantValue < 0 || constantValue > maxValue) {
+                        return booleanConstant(predicate == IcmpInst.Predicate.NE);
+                    }
+                } else if (predicate.evaluate(0, constantValue) == predicate.evaluate(maxValue, constantValue)) {
+                    return booleanConstant(predicate.evaluate(0, constantValue));
+                }
+            }
+        } else if ((predicate == IcmpInst.Predicate.EQ || predicate == IcmpInst.Predicate.NE) &&
+                isConstantOperation(operand1, BinaryOperator.BinaryOps.ADD)) {
+            // x + c1 == c2 即 x == c2 - c1，溢出时两侧同样回绕，只对相等比较成立
+            BinaryOperator addOperator = (BinaryOperator) operand1;
+            // CAST isConstantOperation()保证第二个操作数为常量
+            int addConstantValue = ((ConstantInt) addOperator.getOperand2()).constantValue();
+            return this.insertBefore(new IcmpInst(predicate, addOperator.getOperand1(),
+                    ConstantInt.get(addOperator.type(), constantValue - addConstantValue), null), icmpInst);
+        }
+        return null;
+    }
+
+    // 对i1取反，是比较的结果时直接使用相反的谓词
+    private IRValue<?> insertNot(IRValue<IntegerType> value, IRInstruction<?> position) {
+        if (value instanceof IcmpInst icmpInst) {
+            return this.insertBefore(new IcmpInst(icmpInst.predicate().inverse(),
+                    icmpInst.getOperand1(), icmpInst.getOperand2(), null), position);
+        } else {
+            return this.insertBefore(new IcmpInst(IcmpInst.Predicate.EQ, value,
+                    ConstantInt.get(IRType.getInt1Ty(), 0), null), position);
+        }
+    }
+
+    private static ConstantInt booleanConstant(boolean value) {
+        return ConstantInt.get(IRType.getInt1Ty(), value ? 1 : 0);
+    }
+
+    private IRValue<?> combineIntegerCast(CastInst<?> castInst, IntegerType destType) {
+        IRValue<?> source = castInst.getSourceOperand();
+        if (source instanceof ConstantInt constantInt) {
+            int constantValue = constantInt.constantValue();
+            if (castInst instanceof CastInst.ZExtInst) {
+                // ConstantInt按有符号数存储，零扩展时需要去掉高位
+                int sourceBitWidth = constantInt.type().getBitWidth();
+                constantValue = sourceBitWidth < 32 ? constantValue & ((1 << sourceBitWidth) - 1) : constantValue;
+            }
+            // ConstantInt会按照位宽截断
+            return ConstantInt.get(destType, constantValue);
+        } else if (source instanceof CastInst.ZExtInst innerZExtInst) {
+            // CAST ZExtInst的源操作数一定是整数
+            IRValue<IntegerType> innerSource = IRValue.cast(innerZExtInst.getSourceOperand());
+            int innerSourceBitWidth = innerSource.type().getBitWidth();
+            if (castInst instanceof CastInst.ZExtInst || innerSourceBitWidth < destType.getBitWidth()) {
+                // zext (zext x) = zext x，trunc (zext x) = zext x（x更窄时）
+                return this.insertBefore(new CastInst.ZExtInst(innerSource, destType, null), castInst);
+            } else if (innerSourceBitWidth == destType.getBitWidth()) {
+                // trunc (zext x) = x
+                return innerSource;
+            } else {
+                return this.insertBefore(new CastInst.TruncInst(innerSource, destType, null), castInst);
+            }
+        } else if (source instanceof CastInst.TruncInst innerTruncInst && castInst instanceof CastInst.TruncInst) {
+            // trunc (trunc x) = trunc x
+            // CAST TruncInst的源操作数一定是整数
+            return this.insertBefore(new CastInst.TruncInst(IRValue.cast(innerTruncInst.getSourceOperand()),
+                    destType, null), castInst);
+        }
+        return null;
+    }
+
+    // 除自身外只有一个不同的入值时，PHI就是这个值，这个值支配所有的前驱，因而支配PHI
+    private static IRValue<?> combinePhi(PHINode phiNode) {
+        IRValue<?> uniqueValue = null;
+        for (int i = 0; i < phiNode.getNumOperands(); i = i + 2) {
+            IRValue<?> incomingValue = phiNode.getOperand(i);
+            if (incomingValue == phiNode || incomingValue == uniqueValue) {
+                continue;
+            } else if (uniqueValue != null) {
+                return null;
+            }
+            uniqueValue = incomingValue;
+        }
+        return uniqueValue;
+    }
+}
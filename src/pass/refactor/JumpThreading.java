@@ -0,0 +1,363 @@
+package pass.refactor;
+
+import IR.IRUse;
+import IR.IRValue;
+import IR.type.IntegerType;
+import IR.value.IRBasicBlock;
+import IR.value.IRFunction;
+import IR.value.constant.ConstantInt;
+import IR.value.instruction.*;
+import pass.FunctionPass;
+import pass.analyzer.AnalysisManager;
+import pass.analyzer.DominatorTree;
+import pass.analyzer.LoopInfo;
+import util.DoublyLinkedList;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+// 跳转线程化：条件跳转的条件由本基本块的PHI决定，某个前驱对应的入边为常量时，该前驱必然到达确定的后继
+// 把这个前驱直接连到该后继，省去一次比较与跳转；本基本块中有副作用的指令或后继的PHI需要的值，复制到边上新建的小基本块中
+// 本基本块中的非PHI指令只允许在本基本块内与后继PHI来自本基本块的入边中使用；PHI在其他基本块中使用时，
+// 要求所有前驱都能线程化，且使用都被只有本基本块一个前驱的后继支配，先在该后继中插入只有一个入边的PHI代替这些使用
+public class JumpThreading implements FunctionPass {
+    // 复制到边上的非PHI指令的最大条数，不含终结指令
+    private static final int maxDuplicateInstructions = 8;
+
+    // 修改CFG后支配树失效，需要时重新获取
+    private boolean dominatorTreeOutdated;
+
+    @Override
+    public FunctionPass fork() {
+        return new JumpThreading();
+    }
+
+    @Override
+    public String name() {
+        return "jumpthreading";
+    }
+
+    // 增删基本块时同时维护CFG，但基本块的编号随之失效
+    @Override
+    public Set<AnalysisManager.Analysis> preservedAnalyses() {
+        return EnumSet.of(AnalysisManager.Analysis.CFG);
+    }
+
+    @Override
+    public boolean run(IRFunction irFunction, AnalysisManager analysisManager) {
+        // 循环头的前驱直接连到循环体会使循环有多个入口，在修改CFG之前确定不处理的基本块
+        LoopInfo loopInfo = analysisManager.loopInfo(irFunction);
+        ArrayList<IRBasicBlock> candidateBlocks = new ArrayList<>();
+        Iterator<IRBasicBlock> basicBlockIterator = irFunction.getIteratorFromStartBlock();
+        // 开始基本块没有PHI，在后端中也不能有前驱，跳过
+        basicBlockIterator.next();
+        while (basicBlockIterator.hasNext()) {
+            IRBasicBlock basicBlock = basicBlockIterator.next();
+            if (!loopInfo.isLoopHeader(basicBlock) && isCandidate(basicBlock)) {
+                candidateBlocks.add(basicBlock);
+            }
+        }
+        boolean changed = false;
+        this.dominatorTreeOutdated = false;
+        for (IRBasicBlock basicBlock : candidateBlocks) {
+            if (this.threadBasicBlock(basicBlock, irFunction, analysisManager)) {
+                changed = true;
+                this.dominatorTreeOutdated = true;
+            }
+        }
+        if (changed) {
+            // 前驱都已经线程化的基本块，以及所有前驱都线程化到同一个后继时的另一个后继，都不再可达
+            RemoveUnreachableBasicBlock.removeUnreachableBasicBlocks(irFunction);
+        }
+        return changed;
+    }
+
+    // 以条件跳转结尾、有PHI，指令都可以复制，且其中的非PHI指令没有在其他地方使用
+    private static boolean isCandidate(IRBasicBlock basicBlock) {
+        if (!(basicBlock.instructions().tail().value() instanceof BranchInst branchInst) ||
+                !branchInst.isConditional() || branchInst.getCondition() instanceof ConstantInt ||
+                !(basicBlock.instructions().head().value() instanceof PHINode)) {
+            return false;
+        }
+        int duplicateInstructions = 0;
+        for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : basicBlock.instructions()) {
+            IRInstruction<?> instruction = instructionNode.value();
+            if (instruction == branchInst) {
+                break;
+            } else if (!(instruction instanceof PHINode) &&
+                    (!isDuplicable(instruction) || ++duplicateInstructions > maxDuplicateInstructions)) {
+                return false;
+            }
+            if (!(instruction instanceof PHINode)) {
+                for (IRUse use : instruction.uses()) {
+                    if (!isLocalUse(use, basicBlock)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDuplicable(IRInstruction<?> instruction) {
+        return instruction instanceof BinaryOperator || instruction instanceof IcmpInst ||
+                instruction instanceof CastInst.ZExtInst || instruction instanceof CastInst.TruncInst ||
+                instruction instanceof GetElementPtrInst || instruction instanceof LoadInst ||
+                instruction instanceof StoreInst || instruction instanceof CallInst;
+    }
+
+    // 在本基本块内的使用，或后继的PHI中来自本基本块的入边
+    private static boolean isLocalUse(IRUse use, IRBasicBlock basicBlock) {
+        // CAST 指令只被指令使用
+        IRInstruction<?> user = (IRInstruction<?>) use.user();
+        if (user.parent() == basicBlock) {
+            return true;
+        } else {
+            return user instanceof PHINode phiNode && phiNode.getOperand(use.operandNo() + 1) == basicBlock;
+        }
+    }
+
+    private boolean threadBasicBlock(IRBasicBlock basicBlock, IRFunction irFunction, AnalysisManager analysisManager) {
+        // CAST isCandidate()保证
+        BranchInst branchInst = (BranchInst) basicBlock.instructions().tail().value();
+        if (!this.localizePhiUses(basicBlock, branchInst, irFunction, analysisManager)) {
+            return false;
+        }
+        boolean changed = false;
+        for (IRBasicBlock predecessor : basicBlock.predecessors().toArray(new IRBasicBlock[0])) {
+            if (predecessor == basicBlock) {
+                continue;
+            }
+            Integer condition = evaluate(branchInst.getCondition(), basicBlock, predecessor);
+            if (condition == null) {
+                continue;
+            }
+            IRBasicBlock target = condition != 0 ? branchInst.getTrueSuccessor() : branchInst.getFalseSuccessor();
+            if (target == basicBlock) {
+                continue;
+            }
+            // 本基本块中的PHI在该前驱上的取值，复制的指令也加入其中
+            HashMap<IRValue<?>, IRValue<?>> valueMap = new HashMap<>();
+            boolean needDuplicate = false;
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : basicBlock.instructions()) {
+                IRInstruction<?> instruction = instructionNode.value();
+                if (instruction instanceof PHINode phiNode) {
+                    valueMap.put(phiNode, phiNode.getIncomingValueForBlock(predecessor));
+                } else if (instruction instanceof StoreInst || instruction instanceof CallInst) {
+                    needDuplicate = true;
+                }
+            }
+            boolean targetHasPhi = false;
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : target.instructions()) {
+                if (instructionNode.value() instanceof PHINode phiNode) {
+                    targetHasPhi = true;
+                    IRValue<?> incomingValue = phiNode.getIncomingValueForBlock(basicBlock);
+                    if (incomingValue instanceof IRInstruction<?> incomingInstruction &&
+                            incomingInstruction.parent() == basicBlock && !(incomingInstruction instanceof PHINode)) {
+                        needDuplicate = true;
+                    }
+                } else {
+                    break;
+                }
+            }
+            // 前驱已经是目标的前驱时，目标的PHI中不能有两个来自它的入边，经过新的基本块到达目标
+            if (targetHasPhi && target.predecessors().contains(predecessor)) {
+                needDuplicate = true;
+            }
+            IRBasicBlock incomingBlock = needDuplicate ?
+                    this.duplicateBasicBlock(basicBlock, target, valueMap, irFunction) : predecessor;
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : target.instructions()) {
+                if (instructionNode.value() instanceof PHINode phiNode) {
+                    IRValue<?> incomingValue = phiNode.getIncomingValueForBlock(basicBlock);
+                    phiNode.addIncoming(valueMap.getOrDefault(incomingValue, incomingValue), incomingBlock);
+                } else {
+                    break;
+                }
+            }
+            this.redirectPredecessor(predecessor, basicBlock, needDuplicate ? incomingBlock : target);
+            changed = true;
+        }
+        if (changed && basicBlock.predecessors().isEmpty()) {
+            // 所有前驱都已经线程化，其中定义的值只被后继PHI来自它的入边使用，断开到后继的边后随其他不可达的基本块一起删除
+            for (IRBasicBlock successor : basicBlock.successors().toArray(new IRBasicBlock[0])) {
+                successor.removePhiIncoming(basicBlock);
+                basicBlock.removeSuccessor(successor);
+            }
+        }
+        return changed;
+    }
+
+    // 在其他基本块中使用的PHI线程化后不再支配这些使用，在支配这些使用的后继中插入PHI，线程化时随之添加入边
+    // 不能处理时返回false，此时不能线程化任何前驱
+    private boolean localizePhiUses(IRBasicBlock basicBlock, BranchInst branchInst,
+                                    IRFunction irFunction, AnalysisManager analysisManager) {
+        ArrayList<PHINode> escapingPhis = new ArrayList<>();
+        for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : basicBlock.instructions()) {
+            if (!(instructionNode.value() instanceof PHINode phiNode)) {
+                break;
+            }
+            for (IRUse use : phiNode.uses()) {
+                if (!isLocalUse(use, basicBlock)) {
+                    escapingPhis.add(phiNode);
+                    break;
+                }
+            }
+        }
+        if (escapingPhis.isEmpty()) {
+            return true;
+        }
+        // 有前驱不能线程化时，本基本块仍然保留，插入的PHI没有意义
+        for (IRBasicBlock predecessor : basicBlock.predecessors()) {
+            Integer condition = evaluate(branchInst.getCondition(), basicBlock, predecessor);
+            if (condition == null ||
+                    (condition != 0 ? branchInst.getTrueSuccessor() : branchInst.getFalseSuccessor()) == basicBlock) {
+                return false;
+            }
+        }
+        if (this.dominatorTreeOutdated) {
+            analysisManager.invalidate(irFunction, EnumSet.of(AnalysisManager.Analysis.CFG));
+            this.dominatorTreeOutdated = false;
+        }
+        DominatorTree dominatorTree = analysisManager.dominatorTree(irFunction);
+        // 每个使用所在的后继，后继只有本基本块一个前驱时，其支配的基本块都只经由它到达
+        ArrayList<IRUse> escapingUses = new ArrayList<>();
+        ArrayList<IRBasicBlock> useSuccessors = new ArrayList<>();
+        for (PHINode phiNode : escapingPhis) {
+            for (IRUse use : phiNode.uses()) {
+                if (isLocalUse(use, basicBlock)) {
+                    continue;
+                }
+                // CAST 指令只被指令使用，PHI的使用位于对应入边的前驱的末尾
+                IRInstruction<?> user = (IRInstruction<?>) use.user();
+                IRBasicBlock useBlock = user instanceof PHINode ?
+                        (IRBasicBlock) user.getOperand(use.operandNo() + 1) : user.parent();
+                IRBasicBlock useSuccessor = null;
+                for (IRBasicBlock successor : basicBlock.successors()) {
+                    if (successor.predecessors().size() == 1 && dominatorTree.dominates(successor, useBlock)) {
+                        useSuccessor = successor;
+                    }
+                }
+                if (useSuccessor == null) {
+                    return false;
+                }
+                escapingUses.add(use);
+                useSuccessors.add(useSuccessor);
+            }
+        }
+        // 每个PHI在每个后继中只插入一个PHI
+        HashMap<IRBasicBlock, HashMap<PHINode, PHINode>> localPhis = new HashMap<>();
+        for (int i = 0; i < escapingUses.size(); i++) {
+            IRUse use = escapingUses.get(i);
+            // CAST escapingUses中都是PHI的使用
+            PHINode phiNode = (PHINode) use.value();
+            HashMap<PHINode, PHINode> successorPhis = localPhis.computeIfAbsent(useSuccessors.get(i), key -> new HashMap<>());
+            PHINode localPhi = successorPhis.get(phiNode);
+            if (localPhi == null) {
+                localPhi = new PHINode(phiNode.type(), useSuccessors.get(i));
+                localPhi.addIncoming(phiNode, basicBlock);
+                successorPhis.put(phiNode, localPhi);
+            }
+            use.set(localPhi);
+        }
+        return true;
+    }
+
+    // 在前驱上条件的取值，只沿本基本块中的PHI、icmp与zext求值，不能确定时返回null
+    private static Integer evaluate(IRValue<?> value, IRBasicBlock basicBlock, IRBasicBlock predecessor) {
+        if (value instanceof ConstantInt constantInt) {
+            return constantInt.constantValue();
+        } else if (!(value instanceof IRInstruction<?> instruction) || instruction.parent() != basicBlock) {
+            return null;
+        } else if (instruction instanceof PHINode phiNode) {
+            return phiNode.getIncomingValueForBlock(predecessor) instanceof ConstantInt constantInt ?
+                    constantInt.constantValue() : null;
+        } else if (instruction instanceof IcmpInst icmpInst) {
+            Integer value1 = evaluate(icmpInst.getOperand1(), basicBlock, predecessor);
+            Integer value2 = evaluate(icmpInst.getOperand2(), basicBlock, predecessor);
+            if (value1 == null || value2 == null) {
+                return null;
+            }
+            return icmpInst.predicate().evaluate(value1, value2) ? 1 : 0;
+        } else if (instruction instanceof CastInst.ZExtInst zExtInst) {
+            Integer source = evaluate(zExtInst.getSourceOperand(), basicBlock, predecessor);
+            if (source == null) {
+                return null;
+            }
+            // CAST ZExtInst的操作数一定是整数，常量按位宽符号扩展保存
+            int bitWidth = ((IntegerType) zExtInst.getSourceOperand().type()).getBitWidth();
+            return bitWidth >= 32 ? source : source & ((1 << bitWidth) - 1);
+        } else {
+            return null;
+        }
+    }
+
+    // 新建跳转到target的基本块，按顺序复制basicBlock中除PHI与终结指令外的指令，操作数按valueMap替换
+    private IRBasicBlock duplicateBasicBlock(IRBasicBlock basicBlock, IRBasicBlock target,
+                                             HashMap<IRValue<?>, IRValue<?>> valueMap, IRFunction irFunction) {
+        IRBasicBlock duplicateBlock = new IRBasicBlock();
+        irFunction.appendBasicBlock(duplicateBlock);
+        for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : basicBlock.instructions()) {
+            IRInstruction<?> instruction = instructionNode.value();
+            if (instruction instanceof PHINode) {
+                continue;
+            } else if (instruction instanceof BranchInst) {
+                break;
+            }
+            valueMap.put(instruction, duplicateInstruction(instruction, valueMap, duplicateBlock));
+        }
+        new BranchInst(target, duplicateBlock);
+        duplicateBlock.addSuccessor(target);
+        return duplicateBlock;
+    }
+
+    private static IRInstruction<?> duplicateInstruction(IRInstruction<?> instruction,
+                                                         HashMap<IRValue<?>, IRValue<?>> valueMap, IRBasicBlock parent) {
+        ArrayList<IRValue<?>> operands = new ArrayList<>(instruction.getNumOperands());
+        for (int i = 0; i < instruction.getNumOperands(); i++) {
+            operands.add(valueMap.getOrDefault(instruction.getOperand(i), instruction.getOperand(i)));
+        }
+        // CAST 复制的指令与原指令的操作数类型相同
+        if (instruction instanceof BinaryOperator binaryOperator) {
+            return new BinaryOperator(binaryOperator.binaryOp(),
+                    IRValue.cast(operands.get(0)), IRValue.cast(operands.get(1)), parent);
+        } else if (instruction instanceof IcmpInst icmpInst) {
+            return new IcmpInst(icmpInst.predicate(), IRValue.cast(operands.get(0)), IRValue.cast(operands.get(1)), parent);
+        } else if (instruction instanceof CastInst.ZExtInst) {
+            return new CastInst.ZExtInst(IRValue.cast(operands.get(0)), (IntegerType) instruction.type(), parent);
+        } else if (instruction instanceof CastInst.TruncInst) {
+            return new CastInst.TruncInst(IRValue.cast(operands.get(0)), (IntegerType) instruction.type(), parent);
+        } else if (instruction instanceof GetElementPtrInst) {
+            ArrayList<IRValue<IntegerType>> indexList = new ArrayList<>(operands.size() - 1);
+            for (int i = 1; i < operands.size(); i++) {
+                indexList.add(IRValue.cast(operands.get(i)));
+            }
+            return new GetElementPtrInst(IRValue.cast(operands.get(0)), indexList, parent);
+        } else if (instruction instanceof LoadInst) {
+            return new LoadInst(IRValue.cast(operands.get(0)), parent);
+        } else if (instruction instanceof StoreInst) {
+            return new StoreInst(operands.get(0), IRValue.cast(operands.get(1)), parent);
+        } else if (instruction instanceof CallInst) {
+            return new CallInst((IRFunction) operands.get(0), new ArrayList<>(operands.subList(1, operands.size())), parent);
+        } else {
+            throw new RuntimeException("When JumpThreading.duplicateInstruction(), the instruction " + instruction +
+                    " can not be duplicated");
+        }
+    }
+
+    // 把predecessor到basicBlock的边改为到target，并删除basicBlock中PHI来自predecessor的入边
+    private void redirectPredecessor(IRBasicBlock predecessor, IRBasicBlock basicBlock, IRBasicBlock target) {
+        // CAST 有后继的基本块以跳转结尾
+        BranchInst branchInst = (BranchInst) predecessor.instructions().tail().value();
+        branchInst.replaceUsesOfWith(basicBlock, target);
+        predecessor.removeSuccessor(basicBlock);
+        predecessor.addSuccessor(target);
+        basicBlock.removePhiIncoming(predecessor);
+        if (branchInst.isConditional() && branchInst.getTrueSuccessor() == branchInst.getFalseSuccessor()) {
+            branchInst.eliminate();
+            new BranchInst(target, predecessor);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package pass.refactor;
 
-import IR.IRModule;
-import IR.IRUser;
+import IR.IRUse;
 import IR.IRValue;
 import IR.type.IntegerType;
 import IR.type.PointerType;
@@ -9,45 +8,69 @@ import IR.value.IRBasicBlock;
 import IR.value.IRFunction;
 import IR.value.constant.ConstantInt;
 import IR.value.instruction.*;
-import pass.Pass;
+import pass.FunctionPass;
+import pass.analyzer.AnalysisManager;
+import pass.analyzer.DominatorTree;
+import util.DenseMap;
+import util.DenseSet;
 import util.DoublyLinkedList;
 import util.Pair;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
 
-public class Mem2Reg implements Pass {
-    private final IRModule irModule;
-    private boolean finished = false;
+public class Mem2Reg implements FunctionPass {
+    // 可以提升的变量，按程序顺序排列，变量在其中的下标即为currentDefs的下标
+    private final ArrayList<AllocaInst> allocaVariables;
+    private final DenseMap<AllocaInst, Integer> allocaIndexes;
+    private final DenseMap<PHINode, Integer> phiMap;
+    private final ArrayList<PHINode> insertedPhis;
 
-    private final HashSet<AllocaInst> allocaVariables;
-    private final HashMap<PHINode, AllocaInst> phiMap;
+    public Mem2Reg() {
+        this.allocaVariables = new ArrayList<>();
+        this.allocaIndexes = new DenseMap<>();
+        this.phiMap = new DenseMap<>();
+        this.insertedPhis = new ArrayList<>();
+    }
 
-    public Mem2Reg(IRModule irModule) {
-        this.irModule = irModule;
-        this.allocaVariables = new HashSet<>();
-        this.phiMap = new HashMap<>();
+    @Override
+    public FunctionPass fork() {
+        return new Mem2Reg();
     }
 
     @Override
-    public void run() {
-        if (finished) {
-            throw new RuntimeException("When Mem2Reg.run(), the pass is finished");
-        }
-        for (IRFunction irFunction : irModule.functions()) {
-            if (!irFunction.isLib()) {
-                this.allocaVariables.clear();
-                this.phiMap.clear();
-                this.insertPhi(irFunction);
-                this.renameVariable(irFunction);
-            }
+    public String name() {
+        return "mem2reg";
+    }
+
+    // 只增删指令，不改变基本块与CFG
+    @Override
+    public Set<AnalysisManager.Analysis> preservedAnalyses() {
+        return EnumSet.of(AnalysisManager.Analysis.CFG, AnalysisManager.Analysis.DOMINATOR_TREE,
+                AnalysisManager.Analysis.POST_DOMINATOR_TREE, AnalysisManager.Analysis.LOOP_INFO);
+    }
+
+    @Override
+    public boolean run(IRFunction irFunction, AnalysisManager analysisManager) {
+        this.allocaVariables.clear();
+        this.allocaIndexes.clear();
+        this.phiMap.clear();
+        this.insertedPhis.clear();
+        DominatorTree dominatorTree = analysisManager.dominatorTree(irFunction);
+        this.insertPhi(irFunction, dominatorTree);
+        if (this.allocaVariables.isEmpty()) {
+            return false;
         }
-        this.finished = true;
+        this.renameVariable(irFunction, dominatorTree);
+        return true;
     }
 
-    private void insertPhi(IRFunction irFunction) {
+    private void collectAllocaVariables(IRFunction irFunction) {
         // argBlock
         for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : irFunction.basicBlocks().get(0).instructions()) {
             if (instructionNode.value() instanceof AllocaInst allocaInst &&
@@ -62,79 +85,216 @@ public class Mem2Reg implements Pass {
                 this.allocaVariables.add(allocaInst);
             }
         }
-        for (AllocaInst variable : this.allocaVariables) {
-            HashSet<IRBasicBlock> phiBasicBlocks = new HashSet<>();
-            HashSet<IRBasicBlock> originDefBasicBlocks = new HashSet<>();
-            LinkedList<IRBasicBlock> defBasicBlocksQueue = new LinkedList<>();
-            for (IRUser<?> user : variable.users()) {
-                if (user instanceof StoreInst storeInst) {
-                    originDefBasicBlocks.add(storeInst.parent());
-                    defBasicBlocksQueue.offer(storeInst.parent());
+        for (int i = 0; i < this.allocaVariables.size(); i++) {
+            this.allocaIndexes.put(this.allocaVariables.get(i), i);
+        }
+    }
+
+    // 指令读写的可以提升的变量的下标，不是对可以提升的变量的load/store时为-1
+    private int variableIndexOf(IRInstruction<?> instruction) {
+        if (instruction instanceof StoreInst storeInst && storeInst.getPointerOperand() instanceof AllocaInst allocaInst) {
+            Integer index = this.allocaIndexes.get(allocaInst);
+            return index == null ? -1 : index;
+        } else if (instruction instanceof LoadInst loadInst && loadInst.getPointerOperand() instanceof AllocaInst allocaInst) {
+            Integer index = this.allocaIndexes.get(allocaInst);
+            return index == null ? -1 : index;
+        } else {
+            return -1;
+        }
+    }
+
+    // 只为跨基本块活跃的变量在其迭代支配边界中插入PHI，其余不活跃的PHI在重命名后删除，最终得到剪枝的SSA
+    private void insertPhi(IRFunction irFunction, DominatorTree dominatorTree) {
+        irFunction.renumber();
+        this.collectAllocaVariables(irFunction);
+        IRBasicBlock[] basicBlocks = irFunction.basicBlocks().toArray(new IRBasicBlock[0]);
+        // 一次扫描得到各变量的定义基本块与向上暴露的使用（在块内第一次store之前的load）所在的基本块
+        ArrayList<ArrayList<IRBasicBlock>> defBasicBlocks = new ArrayList<>();
+        ArrayList<ArrayList<IRBasicBlock>> useBasicBlocks = new ArrayList<>();
+        for (int i = 0; i < this.allocaVariables.size(); i++) {
+            defBasicBlocks.add(new ArrayList<>());
+            useBasicBlocks.add(new ArrayList<>());
+        }
+        int[] lastDefBlock = new int[this.allocaVariables.size()];
+        int[] lastUseBlock = new int[this.allocaVariables.size()];
+        Arrays.fill(lastDefBlock, -1);
+        Arrays.fill(lastUseBlock, -1);
+        for (IRBasicBlock basicBlock : basicBlocks) {
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : basicBlock.instructions()) {
+                int variable = this.variableIndexOf(instructionNode.value());
+                if (variable < 0) {
+                    continue;
+                }
+                if (instructionNode.value() instanceof StoreInst && lastDefBlock[variable] != basicBlock.number()) {
+                    lastDefBlock[variable] = basicBlock.number();
+                    defBasicBlocks.get(variable).add(basicBlock);
+                } else if (instructionNode.value() instanceof LoadInst && lastDefBlock[variable] != basicBlock.number()
+                        && lastUseBlock[variable] != basicBlock.number()) {
+                    lastUseBlock[variable] = basicBlock.number();
+                    useBasicBlocks.get(variable).add(basicBlock);
                 }
             }
-            while (!defBasicBlocksQueue.isEmpty()) {
-                IRBasicBlock defBasicBlock = defBasicBlocksQueue.pop();
-                for (IRBasicBlock frontier : defBasicBlock.dominanceFrontiers()) {
-                    if (!phiBasicBlocks.contains(frontier)) {
-                        this.phiMap.put(new PHINode(variable.allocatedType(), frontier), variable);
-                        phiBasicBlocks.add(frontier);
-                        if (!originDefBasicBlocks.contains(frontier)) {
-                            defBasicBlocksQueue.offer(frontier);
+        }
+        // 以下数组以变量的下标+1作为标记，各变量共用，不需要为每个变量分配与基本块个数相同的集合
+        int[] defStamps = new int[basicBlocks.length];
+        int[] phiStamps = new int[basicBlocks.length];
+        ArrayDeque<IRBasicBlock> workList = new ArrayDeque<>();
+        ArrayList<Pair<PHINode, Integer>> phiNodes = new ArrayList<>();
+        for (int i = 0; i < this.allocaVariables.size(); i++) {
+            // 没有向上暴露的使用的变量不会跨基本块活跃，不需要PHI（semi-pruned）
+            if (useBasicBlocks.get(i).isEmpty()) {
+                continue;
+            }
+            int stamp = i + 1;
+            AllocaInst variable = this.allocaVariables.get(i);
+            for (IRBasicBlock defBasicBlock : defBasicBlocks.get(i)) {
+                defStamps[defBasicBlock.number()] = stamp;
+            }
+            // 在迭代支配边界中插入PHI，其中不活跃的PHI在重命名后由removeDeadPhi()删除
+            workList.addAll(defBasicBlocks.get(i));
+            while (!workList.isEmpty()) {
+                for (IRBasicBlock frontier : dominatorTree.dominanceFrontiers(workList.poll())) {
+                    if (phiStamps[frontier.number()] != stamp) {
+                        phiStamps[frontier.number()] = stamp;
+                        phiNodes.add(new Pair<>(new PHINode(variable.allocatedType(), frontier), i));
+                        if (defStamps[frontier.number()] != stamp) {
+                            workList.offer(frontier);
                         }
                     }
                 }
             }
         }
+        // 插入PHI后重新编号，之后的删除不会使编号失效；基本块没有变化，编号与支配树一致
+        irFunction.renumber();
+        this.allocaIndexes.clear();
+        for (int i = 0; i < this.allocaVariables.size(); i++) {
+            this.allocaIndexes.put(this.allocaVariables.get(i), i);
+        }
+        for (Pair<PHINode, Integer> phiNode : phiNodes) {
+            this.phiMap.put(phiNode.key(), phiNode.value());
+            this.insertedPhis.add(phiNode.key());
+        }
     }
 
-    private void renameVariable(IRFunction irFunction) {
-        HashMap<IRBasicBlock, Boolean> dfsVisit = new HashMap<>();
-        LinkedList<Pair<IRBasicBlock, HashMap<AllocaInst, IRValue<?>>>> dfsStack = new LinkedList<>();
-        irFunction.basicBlocks().forEach(block -> dfsVisit.put(block, false));
+    // 沿支配树重命名，currentDefs为各变量当前的定义，进入基本块时修改的定义记入undoLog，离开时恢复
+    private void renameVariable(IRFunction irFunction, DominatorTree dominatorTree) {
+        IRValue<?>[] currentDefs = new IRValue<?>[this.allocaVariables.size()];
         // 对于未赋值就使用变量的值是不确定的，给0也是合理的
-        HashMap<AllocaInst, IRValue<?>> defaultReachingDefs = new HashMap<>();
-        allocaVariables.forEach(variable -> defaultReachingDefs.put(variable, ConstantInt.ZERO_I32()));
-        dfsStack.push(new Pair<>(irFunction.basicBlocks().get(0), defaultReachingDefs));
-        dfsVisit.put(irFunction.basicBlocks().get(0), true);
-        while (!dfsStack.isEmpty()) {
-            Pair<IRBasicBlock, HashMap<AllocaInst, IRValue<?>>> dfsNowPair = dfsStack.pop();
-            IRBasicBlock currentBasicBlock = dfsNowPair.key();
-            HashMap<AllocaInst, IRValue<?>> reachingDefs = dfsNowPair.value();
-            Iterator<DoublyLinkedList.Node<IRInstruction<?>>> instructionIterator = currentBasicBlock.instructions().iterator();
-            while (instructionIterator.hasNext()) {
-                DoublyLinkedList.Node<IRInstruction<?>> instructionNode = instructionIterator.next();
-                if (instructionNode.value() instanceof PHINode phiNode) {
-                    reachingDefs.put(this.phiMap.get(phiNode), phiNode);
-                } else if (instructionNode.value() instanceof StoreInst storeInst &&
-                        storeInst.getPointerOperand() instanceof AllocaInst storeAllocaInst &&
-                        this.allocaVariables.contains(storeAllocaInst)) {
-                    reachingDefs.put(storeAllocaInst, storeInst.getValueOperand());
-                    storeInst.dropAllOperands();
-                    // StoreInst没有User，可以直接删除
-                    instructionIterator.remove();
-                } else if (instructionNode.value() instanceof LoadInst loadInst &&
-                        loadInst.getPointerOperand() instanceof AllocaInst loadAllocaInst &&
-                        this.allocaVariables.contains(loadAllocaInst)) {
-                    loadInst.replaceAllUsesWith(reachingDefs.get(loadAllocaInst));
-                    loadInst.dropAllOperands();
-                    // LoadInst的User已经被全部替换，可以直接删除
-                    instructionIterator.remove();
+        for (int i = 0; i < this.allocaVariables.size(); i++) {
+            currentDefs[i] = this.allocaVariables.get(i).allocatedType() instanceof IntegerType integerType ?
+                    ConstantInt.get(integerType, 0) : ConstantInt.ZERO_I32();
+        }
+        // undoLog中交替保存变量的下标与被覆盖的定义
+        ArrayList<Object> undoLog = new ArrayList<>();
+        // DFS栈中保存基本块、进入时undoLog的长度以及下一个要访问的子结点的序号
+        ArrayList<IRBasicBlock> stackBlocks = new ArrayList<>();
+        ArrayList<Integer> stackUndoMarks = new ArrayList<>();
+        ArrayList<Integer> stackNextChildren = new ArrayList<>();
+        IRBasicBlock entryBlock = irFunction.basicBlocks().get(0);
+        this.renameBasicBlock(entryBlock, currentDefs, undoLog);
+        stackBlocks.add(entryBlock);
+        stackUndoMarks.add(0);
+        stackNextChildren.add(0);
+        while (!stackBlocks.isEmpty()) {
+            int top = stackBlocks.size() - 1;
+            List<IRBasicBlock> children = dominatorTree.immediateDominating(stackBlocks.get(top));
+            int nextChild = stackNextChildren.get(top);
+            if (nextChild < children.size()) {
+                stackNextChildren.set(top, nextChild + 1);
+                IRBasicBlock child = children.get(nextChild);
+                int undoMark = undoLog.size();
+                this.renameBasicBlock(child, currentDefs, undoLog);
+                stackBlocks.add(child);
+                stackUndoMarks.add(undoMark);
+                stackNextChildren.add(0);
+            } else {
+                // 离开基本块，恢复进入前的定义
+                int undoMark = stackUndoMarks.get(top);
+                while (undoLog.size() > undoMark) {
+                    IRValue<?> overwrittenDef = (IRValue<?>) undoLog.remove(undoLog.size() - 1);
+                    currentDefs[(Integer) undoLog.remove(undoLog.size() - 1)] = overwrittenDef;
                 }
+                stackBlocks.remove(top);
+                stackUndoMarks.remove(top);
+                stackNextChildren.remove(top);
             }
-            for (IRBasicBlock successor : currentBasicBlock.successors()) {
-                for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : successor.instructions()) {
-                    if (instructionNode.value() instanceof PHINode phiNode) {
-                        phiNode.addIncoming(reachingDefs.get(this.phiMap.get(phiNode)), currentBasicBlock);
-                    }
+        }
+        for (AllocaInst allocaInst : this.allocaVariables) {
+            allocaInst.eliminate();
+        }
+        this.removeDeadPhi();
+    }
+
+    // 只被PHI使用的PHI对应的变量在该处并不活跃，从被其他指令使用的PHI出发沿操作数标记，未被标记的PHI都可以删除
+    // 这样得到的PHI与按活跃性剪枝插入的PHI相同，但不需要为每个变量做一次活跃性分析
+    private void removeDeadPhi() {
+        DenseSet<PHINode> livePhis = new DenseSet<>();
+        ArrayDeque<PHINode> workList = new ArrayDeque<>();
+        for (PHINode phiNode : this.insertedPhis) {
+            for (IRUse use : phiNode.uses()) {
+                if (!(use.user() instanceof PHINode userPhiNode && this.phiMap.containsKey(userPhiNode))) {
+                    livePhis.add(phiNode);
+                    workList.offer(phiNode);
+                    break;
                 }
-                if (!dfsVisit.get(successor)) {
-                    dfsStack.push(new Pair<>(successor, new HashMap<>(reachingDefs)));
-                    dfsVisit.put(successor, true);
+            }
+        }
+        while (!workList.isEmpty()) {
+            PHINode phiNode = workList.poll();
+            for (int i = 0; i < phiNode.getNumOperands(); i = i + 2) {
+                if (phiNode.getOperand(i) instanceof PHINode incomingPhiNode && this.phiMap.containsKey(incomingPhiNode) &&
+                        livePhis.add(incomingPhiNode)) {
+                    workList.offer(incomingPhiNode);
                 }
             }
         }
-        for (AllocaInst allocaInst : this.allocaVariables) {
-            allocaInst.eliminate();
+        // 死PHI之间可能互相使用，整体删除
+        for (PHINode phiNode : this.insertedPhis) {
+            if (!livePhis.contains(phiNode)) {
+                phiNode.eliminateWithoutCheck();
+            }
         }
     }
+
+    private void renameBasicBlock(IRBasicBlock currentBasicBlock, IRValue<?>[] currentDefs, ArrayList<Object> undoLog) {
+        Iterator<DoublyLinkedList.Node<IRInstruction<?>>> instructionIterator = currentBasicBlock.instructions().iterator();
+        while (instructionIterator.hasNext()) {
+            IRInstruction<?> instruction = instructionIterator.next().value();
+            if (instruction instanceof PHINode phiNode && this.phiMap.containsKey(phiNode)) {
+                setCurrentDef(currentDefs, undoLog, this.phiMap.get(phiNode), phiNode);
+                continue;
+            }
+            int variable = this.variableIndexOf(instruction);
+            if (instruction instanceof StoreInst storeInst && variable >= 0) {
+                setCurrentDef(currentDefs, undoLog, variable, storeInst.getValueOperand());
+                storeInst.dropAllOperands();
+                // StoreInst没有User，可以直接删除
+                instructionIterator.remove();
+            } else if (instruction instanceof LoadInst loadInst && variable >= 0) {
+                loadInst.replaceAllUsesWith(currentDefs[variable]);
+                loadInst.dropAllOperands();
+                // LoadInst的User已经被全部替换，可以直接删除
+                instructionIterator.remove();
+            }
+        }
+        for (IRBasicBlock successor : currentBasicBlock.successors()) {
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : successor.instructions()) {
+                if (instructionNode.value() instanceof PHINode phiNode) {
+                    Integer variable = this.phiMap.get(phiNode);
+                    if (variable != null) {
+                        phiNode.addIncoming(currentDefs[variable], currentBasicBlock);
+                    }
+                } else {
+                    // PHINode集中在基本块的开始处
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void setCurrentDef(IRValue<?>[] currentDefs, ArrayList<Object> undoLog, int variable, IRValue<?> def) {
+        undoLog.add(variable);
+        undoLog.add(currentDefs[variable]);
+        currentDefs[variable] = def;
+    }
 }
@@ -1,41 +1,33 @@
 package pass.refactor;
 
-import IR.IRModule;
 import IR.value.IRBasicBlock;
 import IR.value.IRFunction;
 import IR.value.instruction.BranchInst;
 import IR.value.instruction.IRInstruction;
 import IR.value.instruction.ReturnInst;
-import pass.Pass;
+import pass.FunctionPass;
+import pass.analyzer.AnalysisManager;
 import util.DoublyLinkedList;
 
 import java.util.Iterator;
 import java.util.Objects;
 
-public class RemoveInstructionAfterTerminator implements Pass {
-    private final IRModule irModule;
-    private boolean finished = false;
-
-    public RemoveInstructionAfterTerminator(IRModule irModule) {
-        this.irModule = irModule;
+public class RemoveInstructionAfterTerminator implements FunctionPass {
+    @Override
+    public String name() {
+        return "terminator";
     }
 
     @Override
-    public void run() {
-        if (finished) {
-            throw new RuntimeException("When RemoveInstructionAfterTerminator.run(), the pass is finished");
-        }
-        for (IRFunction irFunction : irModule.functions()) {
-            if (!irFunction.isLib()) {
-                for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
-                    this.processBasicBlock(basicBlock);
-                }
-            }
+    public boolean run(IRFunction irFunction, AnalysisManager analysisManager) {
+        boolean changed = false;
+        for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
+            changed |= this.processBasicBlock(basicBlock);
         }
-        this.finished = true;
+        return changed;
     }
 
-    private void processBasicBlock(IRBasicBlock irBasicBlock) {
+    private boolean processBasicBlock(IRBasicBlock irBasicBlock) {
         Iterator<DoublyLinkedList.Node<IRInstruction<?>>> iterator = irBasicBlock.instructions().iterator();
         IRInstruction<?> terminator = null;
         while (iterator.hasNext()) {
@@ -46,9 +38,12 @@ public class RemoveInstructionAfterTerminator implements Pass {
             }
         }
         if (terminator != null) {
+            boolean changed = false;
             while (!Objects.equals(irBasicBlock.instructions().tail().value(), terminator)) {
                 irBasicBlock.instructions().tail().value().eliminate();
+                changed = true;
             }
+            return changed;
         } else {
             throw new RuntimeException("When RemoveInstructionAfterTerminator.run(), irBasicBlock is not end with a terminator. " +
                     "Got " + irBasicBlock);
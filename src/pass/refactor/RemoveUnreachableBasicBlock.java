@@ -1,67 +1,69 @@
 package pass.refactor;
 
-import IR.IRModule;
 import IR.value.IRBasicBlock;
 import IR.value.IRFunction;
-import pass.Pass;
+import pass.FunctionPass;
+import pass.analyzer.AnalysisManager;
 
 import java.util.*;
 
-public class RemoveUnreachableBasicBlock implements Pass {
-    private final IRModule irModule;
-    private boolean finished = false;
+public class RemoveUnreachableBasicBlock implements FunctionPass {
+    @Override
+    public String name() {
+        return "unreachable";
+    }
 
-    public RemoveUnreachableBasicBlock(IRModule irModule) {
-        this.irModule = irModule;
+    // 删除基本块时同时维护CFG，但基本块的编号随之失效
+    @Override
+    public Set<AnalysisManager.Analysis> preservedAnalyses() {
+        return EnumSet.of(AnalysisManager.Analysis.CFG);
     }
 
     @Override
-    public void run() {
-        if (finished) {
-            throw new RuntimeException("When RemoveUnreachableBasicBlock.run(), the pass is finished");
-        }
-        for (IRFunction irFunction : irModule.functions()) {
-            if (!irFunction.isLib()) {
-                this.removeUnreachableBasicBlock(irFunction);
-            }
-        }
-        this.finished = true;
+    public boolean run(IRFunction irFunction, AnalysisManager analysisManager) {
+        analysisManager.requireCFG(irFunction);
+        return removeUnreachableBasicBlocks(irFunction);
     }
 
-    private void removeUnreachableBasicBlock(IRFunction irFunction) {
-        // 消除除了参数块外的所有没有前驱的基本块
-        Iterator<IRBasicBlock> iterator = irFunction.basicBlocks().iterator();
-        while (iterator.hasNext()) {
-            IRBasicBlock basicBlock = iterator.next();
-            if (!Objects.equals(basicBlock, irFunction.basicBlocks().get(0)) &&
-                    basicBlock.predecessors().isEmpty()) {
-                basicBlock.eraseAllInstruction();
-                basicBlock.successors().forEach(block -> block.predecessors().remove(basicBlock));
-                iterator.remove();
+    // 删除从函数入口不可达的基本块，并删除可达的基本块中PHI来自它们的入边，也供其他修改CFG的pass使用
+    // 可达的基本块中的值不会被不可达的基本块中的指令定义，除了PHI的入边；基本块的编号随之失效
+    static boolean removeUnreachableBasicBlocks(IRFunction irFunction) {
+        irFunction.renumber();
+        boolean[] reachable = new boolean[irFunction.basicBlockCount()];
+        ArrayDeque<IRBasicBlock> stack = new ArrayDeque<>();
+        reachable[0] = true;
+        stack.push(irFunction.basicBlocks().get(0));
+        while (!stack.isEmpty()) {
+            for (IRBasicBlock successor : stack.pop().successors()) {
+                if (!reachable[successor.number()]) {
+                    reachable[successor.number()] = true;
+                    stack.push(successor);
+                }
             }
         }
-        // 消除无法从函数入口到达的基本块
-        // 如果把所有的以ret结尾的块都消除了，说明编译时识别出了死循环
-        HashMap<IRBasicBlock, Boolean> dfsVisit = new HashMap<>();
-        irFunction.basicBlocks().forEach(block -> dfsVisit.put(block, false));
-        LinkedList<IRBasicBlock> dfsStack = new LinkedList<>();
-        dfsStack.push(irFunction.basicBlocks().get(0));
-        dfsVisit.put(irFunction.basicBlocks().get(0), true);
-        while (!dfsStack.isEmpty()) {
-            IRBasicBlock currentBasicBlock = dfsStack.pop();
-            for (IRBasicBlock successor : currentBasicBlock.successors()) {
-                if (!dfsVisit.get(successor)) {
-                    dfsStack.push(successor);
-                    dfsVisit.put(successor, true);
+        boolean changed = false;
+        for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
+            if (!reachable[basicBlock.number()]) {
+                for (IRBasicBlock successor : basicBlock.successors().toArray(new IRBasicBlock[0])) {
+                    if (reachable[successor.number()]) {
+                        successor.removePhiIncoming(basicBlock);
+                    }
+                    basicBlock.removeSuccessor(successor);
                 }
+                changed = true;
             }
         }
-        for (Map.Entry<IRBasicBlock, Boolean> entry : dfsVisit.entrySet()) {
-            if (!entry.getValue()) {
-                entry.getKey().eraseAllInstruction();
-                entry.getKey().successors().forEach(block -> block.predecessors().remove(entry.getKey()));
+        if (changed) {
+            // 不可达的指令之间可能互相使用，整体删除
+            for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
+                if (!reachable[basicBlock.number()]) {
+                    while (basicBlock.instructions().tail() != null) {
+                        basicBlock.instructions().tail().value().eliminateWithoutCheck();
+                    }
+                }
             }
+            irFunction.basicBlocks().removeIf(basicBlock -> !reachable[basicBlock.number()]);
         }
-        irFunction.basicBlocks().removeIf(basicBlock -> !dfsVisit.get(basicBlock));
+        return changed;
     }
 }
@@ -0,0 +1,372 @@
+package pass.refactor;
+
+import IR.IRUse;
+import IR.IRValue;
+import IR.type.IntegerType;
+import IR.value.IRBasicBlock;
+import IR.value.IRFunction;
+import IR.value.constant.ConstantInt;
+import IR.value.instruction.*;
+import pass.FunctionPass;
+import pass.analyzer.AnalysisManager;
+import util.DoublyLinkedList;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Set;
+
+// 稀疏条件常量传播（Wegman–Zadeck），同时在SSA边与CFG边上传播：
+// 只有可执行的边才参与PHI的求值，常量条件的跳转只使一个后继可执行，最后删除不可执行的基本块并把跳转改为无条件跳转
+public class SCCP implements FunctionPass {
+    // 格的三种状态：未定义（尚未求值）、常量、超定义（不是常量），只会沿这个顺序下降
+    private static final byte UNDEFINED = 0;
+    private static final byte CONSTANT = 1;
+    private static final byte OVERDEFINED = 2;
+
+    // 以下数组以Value与基本块的编号为下标，只在run()中有效
+    private byte[] states;
+    private int[] constants;
+    private boolean[] executableBlocks;
+    // 各基本块到其第i个后继的边是否可执行，第i位表示successors().get(i)
+    private byte[] executableEdges;
+    private final ArrayDeque<IRBasicBlock> blockWorkList;
+    private final ArrayDeque<IRInstruction<?>> instructionWorkList;
+
+    public SCCP() {
+        this.blockWorkList = new ArrayDeque<>();
+        this.instructionWorkList = new ArrayDeque<>();
+    }
+
+    @Override
+    public FunctionPass fork() {
+        return new SCCP();
+    }
+
+    @Override
+    public String name() {
+        return "sccp";
+    }
+
+    @Override
+    public boolean run(IRFunction irFunction, AnalysisManager analysisManager) {
+        analysisManager.requireCFG(irFunction);
+        irFunction.renumber();
+        this.states = new byte[irFunction.valueCount()];
+        this.constants = new int[irFunction.valueCount()];
+        this.executableBlocks = new boolean[irFunction.basicBlockCount()];
+        this.executableEdges = new byte[irFunction.basicBlockCount()];
+        this.solve(irFunction.basicBlocks().get(0));
+        boolean changed = this.replaceConstants(irFunction);
+        changed |= this.removeNonExecutable(irFunction);
+        this.states = null;
+        this.constants = null;
+        this.executableBlocks = null;
+        this.executableEdges = null;
+        return changed;
+    }
+
+    // 删除了不可执行的基本块与边，基本块的编号失效，CFG由本pass维护
+    @Override
+    public Set<AnalysisManager.Analysis> preservedAnalyses() {
+        return EnumSet.of(AnalysisManager.Analysis.CFG);
+    }
+
+    private void solve(IRBasicBlock entryBlock) {
+        this.executableBlocks[entryBlock.number()] = true;
+        this.blockWorkList.offer(entryBlock);
+        while (!this.blockWorkList.isEmpty() || !this.instructionWorkList.isEmpty()) {
+            // 先处理值的变化，减少基本块被重复访问时的无用求值
+            while (!this.instructionWorkList.isEmpty()) {
+                IRInstruction<?> instruction = this.instructionWorkList.poll();
+                if (this.executableBlocks[instruction.parent().number()]) {
+                    this.visitInstruction(instruction);
+                }
+            }
+            if (!this.blockWorkList.isEmpty()) {
+                for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : this.blockWorkList.poll().instructions()) {
+                    this.visitInstruction(instructionNode.value());
+                }
+            }
+        }
+    }
+
+    private void markEdgeExecutable(IRBasicBlock from, IRBasicBlock to) {
+        int edgeBit = 1 << from.successors().indexOf(to);
+        if ((this.executableEdges[from.number()] & edgeBit) != 0) {
+            return;
+        }
+        this.executableEdges[from.number()] |= (byte) edgeBit;
+        if (!this.executableBlocks[to.number()]) {
+            // 第一次可执行，访问整个基本块
+            this.executableBlocks[to.number()] = true;
+            this.blockWorkList.offer(to);
+        } else {
+            // 新的可执行边只影响PHI
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : to.instructions()) {
+                if (instructionNode.value() instanceof PHINode phiNode) {
+                    this.visitInstruction(phiNode);
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean isEdgeExecutable(IRBasicBlock from, IRBasicBlock to) {
+        int successorIndex = from.successors().indexOf(to);
+        return successorIndex >= 0 && (this.executableEdges[from.number()] & (1 << successorIndex)) != 0;
+    }
+
+    private byte stateOf(IRValue<?> value) {
+        if (value instanceof ConstantInt) {
+            return CONSTANT;
+        } else if (value instanceof IRInstruction<?> instruction) {
+            return this.states[instruction.number()];
+        } else {
+            // Argument、全局变量等在函数内不是常量
+            return OVERDEFINED;
+        }
+    }
+
+    private int constantOf(IRValue<?> value) {
+        return value instanceof ConstantInt constantInt ? constantInt.constantValue() : this.constants[value.number()];
+    }
+
+    private void markConstant(IRInstruction<?> instruction, int constantValue) {
+        int number = instruction.number();
+        if (this.states[number] == UNDEFINED) {
+            this.states[number] = CONSTANT;
+            this.constants[number] = constantValue;
+            this.pushUsers(instruction);
+        } else if (this.states[number] == CONSTANT && this.constants[number] != constantValue) {
+            this.markOverdefined(instruction);
+        }
+    }
+
+    private void markOverdefined(IRInstruction<?> instruction) {
+        if (this.states[instruction.number()] != OVERDEFINED) {
+            this.states[instruction.number()] = OVERDEFINED;
+            this.pushUsers(instruction);
+        }
+    }
+
+    private void pushUsers(IRInstruction<?> instruction) {
+        for (IRUse use : instruction.uses()) {
+            // CAST 在SysY中，User的子类仅限于Instruction
+            this.instructionWorkList.offer((IRInstruction<?>) use.user());
+        }
+    }
+
+    private void visitInstruction(IRInstruction<?> instruction) {
+        if (instruction instanceof BranchInst branchInst) {
+            this.visitBranch(branchInst);
+        } else if (!(instruction.type() instanceof IntegerType integerType)) {
+            // 只传播整数常量，指针等其他类型总是超定义
+            if (!(instruction instanceof ReturnInst || instruction instanceof StoreInst)) {
+                this.markOverdefined(instruction);
+            }
+        } else if (instruction instanceof PHINode phiNode) {
+            this.visitPhi(phiNode, integerType);
+        } else if (instruction instanceof BinaryOperator binaryOperator) {
+            this.visitBinaryOperator(binaryOperator, integerType);
+        } else if (instruction instanceof IcmpInst icmpInst) {
+            this.visitIcmp(icmpInst);
+        } else if (instruction instanceof CastInst.ZExtInst || instruction instanceof CastInst.TruncInst) {
+            // CAST ZExtInst与TruncInst的源操作数一定是整数
+            IRValue<?> source = ((CastInst<?>) instruction).getSourceOperand();
+            byte sourceState = this.stateOf(source);
+            if (sourceState == CONSTANT) {
+                int sourceValue = this.constantOf(source);
+                if (instruction instanceof CastInst.ZExtInst) {
+                    int sourceBitWidth = ((IntegerType) source.type()).getBitWidth();
+                    sourceValue = sourceBitWidth < 32 ? sourceValue & ((1 << sourceBitWidth) - 1) : sourceValue;
+                }
+                this.markConstant(instruction, ConstantInt.get(integerType, sourceValue).constantValue());
+            } else if (sourceState == OVERDEFINED) {
+                this.markOverdefined(instruction);
+            }
+        } else {
+            // load、call等
+            this.markOverdefined(instruction);
+        }
+    }
+
+    private void visitBranch(BranchInst branchInst) {
+        IRBasicBlock basicBlock = branchInst.parent();
+        if (!branchInst.isConditional()) {
+            this.markEdgeExecutable(basicBlock, branchInst.getSuccessor());
+            return;
+        }
+        IRValue<?> condition = branchInst.getCondition();
+        byte conditionState = this.stateOf(condition);
+        if (conditionState == CONSTANT) {
+            this.markEdgeExecutable(basicBlock, this.constantOf(condition) != 0 ?
+                    branchInst.getTrueSuccessor() : branchInst.getFalseSuccessor());
+        } else {
+            // 可执行基本块中的条件在访问跳转时总已求值，未定义的条件按超定义保守处理
+            this.markEdgeExecutable(basicBlock, branchInst.getTrueSuccessor());
+            this.markEdgeExecutable(basicBlock, branchInst.getFalseSuccessor());
+        }
+    }
+
+    // PHI的值为所有可执行的入边上的值的交
+    private void visitPhi(PHINode phiNode, IntegerType integerType) {
+        if (this.states[phiNode.number()] == OVERDEFINED) {
+            return;
+        }
+        boolean hasConstant = false;
+        int constantValue = 0;
+        for (int i = 0; i < phiNode.getNumOperands(); i = i + 2) {
+            // CAST PHINode的操作数为值与基本块交替
+            if (!this.isEdgeExecutable((IRBasicBlock) phiNode.getOperand(i + 1), phiNode.parent())) {
+                continue;
+            }
+            IRValue<?> incomingValue = phiNode.getOperand(i);
+            byte incomingState = this.stateOf(incomingValue);
+            if (incomingState == OVERDEFINED) {
+                this.markOverdefined(phiNode);
+                return;
+            } else if (incomingState == CONSTANT) {
+                int incomingConstant = ConstantInt.get(integerType, this.constantOf(incomingValue)).constantValue();
+                if (hasConstant && incomingConstant != constantValue) {
+                    this.markOverdefined(phiNode);
+                    return;
+                }
+                hasConstant = true;
+                constantValue = incomingConstant;
+            }
+        }
+        if (hasConstant) {
+            this.markConstant(phiNode, constantValue);
+        }
+    }
+
+    private void visitBinaryOperator(BinaryOperator binaryOperator, IntegerType integerType) {
+        IRValue<?> operand1 = binaryOperator.getOperand1();
+        IRValue<?> operand2 = binaryOperator.getOperand2();
+        byte state1 = this.stateOf(operand1);
+        byte state2 = this.stateOf(operand2);
+        BinaryOperator.BinaryOps binaryOp = binaryOperator.binaryOp();
+        // 与CalculateConst相同：0 * x = x * 0 = 0，0 / x = 0 % x = 0（除0是未定义行为）
+        if ((state1 == CONSTANT && this.constantOf(operand1) == 0 && binaryOp != BinaryOperator.BinaryOps.ADD &&
+                binaryOp != BinaryOperator.BinaryOps.SUB) ||
+                (state2 == CONSTANT && this.constantOf(operand2) == 0 && binaryOp == BinaryOperator.BinaryOps.MUL)) {
+            this.markConstant(binaryOperator, 0);
+        } else if (state1 == CONSTANT && state2 == CONSTANT) {
+            int value1 = this.constantOf(operand1);
+            int value2 = this.constantOf(operand2);
+            if (value2 == 0 && (binaryOp == BinaryOperator.BinaryOps.DIV || binaryOp == BinaryOperator.BinaryOps.MOD)) {
+                // 除0留到运行时
+                this.markOverdefined(binaryOperator);
+                return;
+            }
+            int result = switch (binaryOp) {
+                case ADD -> value1 + value2;
+                case SUB -> value1 - value2;
+                case MUL -> value1 * value2;
+                case DIV -> value1 / value2;
+                case MOD -> value1 % value2;
+            };
+            this.markConstant(binaryOperator, ConstantInt.get(integerType, result).constantValue());
+        } else if (state1 == OVERDEFINED || state2 == OVERDEFINED) {
+            this.markOverdefined(binaryOperator);
+        }
+    }
+
+    private void visitIcmp(IcmpInst icmpInst) {
+        byte state1 = this.stateOf(icmpInst.getOperand1());
+        byte state2 = this.stateOf(icmpInst.getOperand2());
+        if (state1 == CONSTANT && state2 == CONSTANT) {
+            boolean result = icmpInst.predicate().evaluate(this.constantOf(icmpInst.getOperand1()),
+                    this.constantOf(icmpInst.getOperand2()));
+            this.markConstant(icmpInst, ConstantInt.get(icmpInst.type(), result ? 1 : 0).constantValue());
+        } else if (state1 == OVERDEFINED || state2 == OVERDEFINED) {
+            this.markOverdefined(icmpInst);
+        }
+    }
+
+    // 用常量替换可执行基本块中值为常量的指令，并把条件为常量的跳转改为无条件跳转
+    private boolean replaceConstants(IRFunction irFunction) {
+        boolean changed = false;
+        for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
+            if (!this.executableBlocks[basicBlock.number()]) {
+                continue;
+            }
+            DoublyLinkedList.Node<IRInstruction<?>> instructionNode = basicBlock.instructions().head();
+            while (instructionNode != null) {
+                IRInstruction<?> instruction = instructionNode.value();
+                instructionNode = instructionNode.next();
+                if (instruction instanceof BranchInst branchInst && branchInst.isConditional() &&
+                        this.stateOf(branchInst.getCondition()) == CONSTANT) {
+                    // 条件可能定义在之后才遍历到的基本块中，按格中的值判断
+                    this.foldBranch(branchInst, this.constantOf(branchInst.getCondition()) != 0);
+                    changed = true;
+                } else if (this.states[instruction.number()] == CONSTANT &&
+                        instruction.type() instanceof IntegerType integerType) {
+                    // 求值为常量的指令都没有副作用
+                    instruction.replaceAllUsesWith(ConstantInt.get(integerType, this.constants[instruction.number()]));
+                    instruction.eliminate();
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void foldBranch(BranchInst branchInst, boolean condition) {
+        IRBasicBlock basicBlock = branchInst.parent();
+        IRBasicBlock taken = condition ? branchInst.getTrueSuccessor() : branchInst.getFalseSuccessor();
+        IRBasicBlock notTaken = condition ? branchInst.getFalseSuccessor() : branchInst.getTrueSuccessor();
+        branchInst.eliminate();
+        new BranchInst(taken, basicBlock);
+        if (notTaken != taken) {
+            basicBlock.removeSuccessor(notTaken);
+            // 不可执行的基本块随后整体删除，不需要维护其中的PHI
+            if (this.executableBlocks[notTaken.number()]) {
+                notTaken.removePhiIncoming(basicBlock);
+            }
+        }
+    }
+
+    // 删除不可执行的基本块，可执行的基本块中的值不会被不可执行的基本块中的指令定义，除了PHI的入边
+    private boolean removeNonExecutable(IRFunction irFunction) {
+        ArrayList<IRBasicBlock> deadBlocks = new ArrayList<>();
+        for (IRBasicBlock basicBlock : irFunction.basicBlocks()) {
+            if (!this.executableBlocks[basicBlock.number()]) {
+                deadBlocks.add(basicBlock);
+            }
+        }
+        if (deadBlocks.isEmpty()) {
+            return false;
+        }
+        for (IRBasicBlock deadBlock : deadBlocks) {
+            for (IRBasicBlock successor : deadBlock.successors()) {
+                if (this.executableBlocks[successor.number()]) {
+                    successor.removePhiIncoming(deadBlock);
+                }
+            }
+        }
+        // 不可执行的指令之间可能互相使用，先全部去掉操作数，再从基本块中移除
+        for (IRBasicBlock deadBlock : deadBlocks) {
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : deadBlock.instructions()) {
+                instructionNode.value().dropAllOperands();
+            }
+        }
+        for (IRBasicBlock deadBlock : deadBlocks) {
+            while (deadBlock.instructions().tail() != null) {
+                deadBlock.instructions().tail().eliminate();
+            }
+            for (IRBasicBlock successor : deadBlock.successors().toArray(new IRBasicBlock[0])) {
+                deadBlock.removeSuccessor(successor);
+            }
+        }
+        for (IRBasicBlock deadBlock : deadBlocks) {
+            for (IRBasicBlock predecessor : deadBlock.predecessors().toArray(new IRBasicBlock[0])) {
+                predecessor.removeSuccessor(deadBlock);
+            }
+        }
+        irFunction.basicBlocks().removeIf(basicBlock -> !this.executableBlocks[basicBlock.number()]);
+        return true;
+    }
+}
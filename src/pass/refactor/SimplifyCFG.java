@@ -0,0 +1,171 @@
+package pass.refactor;
+
+import IR.value.IRBasicBlock;
+import IR.value.IRFunction;
+import IR.value.constant.ConstantInt;
+import IR.value.instruction.BranchInst;
+import IR.value.instruction.IRInstruction;
+import IR.value.instruction.PHINode;
+import pass.FunctionPass;
+import pass.analyzer.AnalysisManager;
+import util.DoublyLinkedList;
+
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Set;
+
+// 化简CFG：条件为常量或两个目标相同的跳转改为无条件跳转，基本块与其唯一前驱合并，只有跳转的基本块被越过
+// 每次修改都同时维护前驱、后继与PHI的入边，最后删除不再可达的基本块
+// argBlock与defBlock的格式由后端约定，不参与化简；开始基本块在后端中不能有前驱，也不能被其他基本块代替
+public class SimplifyCFG implements FunctionPass {
+    // 以基本块的编号为下标，记录一轮化简中被合并或越过的基本块，只在run()中有效
+    private boolean[] removedBlocks;
+    private IRBasicBlock startBlock;
+
+    @Override
+    public FunctionPass fork() {
+        return new SimplifyCFG();
+    }
+
+    @Override
+    public String name() {
+        return "simplifycfg";
+    }
+
+    // 删除基本块时同时维护CFG，但基本块的编号随之失效
+    @Override
+    public Set<AnalysisManager.Analysis> preservedAnalyses() {
+        return EnumSet.of(AnalysisManager.Analysis.CFG);
+    }
+
+    @Override
+    public boolean run(IRFunction irFunction, AnalysisManager analysisManager) {
+        analysisManager.requireCFG(irFunction);
+        this.startBlock = irFunction.startBlock();
+        boolean changed = false;
+        boolean hasUpdates = true;
+        while (hasUpdates) {
+            hasUpdates = false;
+            irFunction.renumber();
+            this.removedBlocks = new boolean[irFunction.basicBlockCount()];
+            Iterator<IRBasicBlock> basicBlockIterator = irFunction.getIteratorFromStartBlock();
+            while (basicBlockIterator.hasNext()) {
+                IRBasicBlock basicBlock = basicBlockIterator.next();
+                if (!this.removedBlocks[basicBlock.number()]) {
+                    hasUpdates |= this.simplifyBasicBlock(basicBlock);
+                }
+            }
+            // 被合并或越过的基本块已经没有前驱，与常量条件折叠后不可达的基本块一起删除
+            hasUpdates |= RemoveUnreachableBasicBlock.removeUnreachableBasicBlocks(irFunction);
+            changed |= hasUpdates;
+        }
+        this.removedBlocks = null;
+        this.startBlock = null;
+        return changed;
+    }
+
+    private boolean simplifyBasicBlock(IRBasicBlock basicBlock) {
+        // CAST 基本块以跳转或返回结尾
+        if (!(basicBlock.instructions().tail().value() instanceof BranchInst branchInst)) {
+            return false;
+        }
+        if (branchInst.isConditional()) {
+            if (branchInst.getCondition() instanceof ConstantInt condition) {
+                this.foldBranch(branchInst, condition.constantValue() != 0);
+                return true;
+            } else if (branchInst.getTrueSuccessor() == branchInst.getFalseSuccessor()) {
+                // CFG中只记录了一条边，PHI中也只有一个入边
+                IRBasicBlock successor = branchInst.getTrueSuccessor();
+                branchInst.eliminate();
+                new BranchInst(successor, basicBlock);
+                return true;
+            } else {
+                return false;
+            }
+        }
+        IRBasicBlock successor = branchInst.getSuccessor();
+        if (successor != basicBlock && successor.predecessors().size() == 1) {
+            this.mergeIntoPredecessor(successor, basicBlock);
+            return true;
+        } else if (basicBlock != this.startBlock && basicBlock.instructions().size() == 1 && successor != basicBlock) {
+            return this.forwardEmptyBlock(basicBlock, successor);
+        } else {
+            return false;
+        }
+    }
+
+    private void foldBranch(BranchInst branchInst, boolean condition) {
+        IRBasicBlock basicBlock = branchInst.parent();
+        IRBasicBlock taken = condition ? branchInst.getTrueSuccessor() : branchInst.getFalseSuccessor();
+        IRBasicBlock notTaken = condition ? branchInst.getFalseSuccessor() : branchInst.getTrueSuccessor();
+        branchInst.eliminate();
+        new BranchInst(taken, basicBlock);
+        if (notTaken != taken) {
+            basicBlock.removeSuccessor(notTaken);
+            notTaken.removePhiIncoming(basicBlock);
+        }
+    }
+
+    // successor只有basicBlock一个前驱，把其中的指令移到basicBlock的末尾，其后继改为basicBlock的后继
+    private void mergeIntoPredecessor(IRBasicBlock successor, IRBasicBlock basicBlock) {
+        // 只有一个入边的PHI即为其唯一的值
+        while (successor.instructions().head().value() instanceof PHINode phiNode) {
+            phiNode.replaceAllUsesWith(phiNode.getOperand(0));
+            phiNode.eliminate();
+        }
+        basicBlock.instructions().tail().value().eliminate();
+        basicBlock.removeSuccessor(successor);
+        DoublyLinkedList.Node<IRInstruction<?>> instructionNode = successor.instructions().head();
+        while (instructionNode != null) {
+            DoublyLinkedList.Node<IRInstruction<?>> nextNode = instructionNode.next();
+            instructionNode.eliminate();
+            instructionNode.value().setParent(basicBlock);
+            basicBlock.appendInstruction(instructionNode.value());
+            instructionNode = nextNode;
+        }
+        for (IRBasicBlock successorOfSuccessor : successor.successors().toArray(new IRBasicBlock[0])) {
+            successor.removeSuccessor(successorOfSuccessor);
+            basicBlock.addSuccessor(successorOfSuccessor);
+        }
+        // 此时successor只被后继中PHI的入边使用
+        successor.replaceAllUsesWith(basicBlock);
+        this.removedBlocks[successor.number()] = true;
+    }
+
+    // basicBlock中只有一条无条件跳转，使其前驱直接跳转到successor，全部前驱都改写后删除basicBlock
+    // successor中有PHI时，已经是successor前驱的前驱改写后会有两个不同的入边，不能改写
+    private boolean forwardEmptyBlock(IRBasicBlock basicBlock, IRBasicBlock successor) {
+        boolean hasPhi = successor.instructions().head().value() instanceof PHINode;
+        boolean changed = false;
+        for (IRBasicBlock predecessor : basicBlock.predecessors().toArray(new IRBasicBlock[0])) {
+            if (hasPhi && successor.predecessors().contains(predecessor)) {
+                continue;
+            }
+            // CAST 有后继的基本块以跳转结尾
+            BranchInst branchInst = (BranchInst) predecessor.instructions().tail().value();
+            branchInst.replaceUsesOfWith(basicBlock, successor);
+            predecessor.removeSuccessor(basicBlock);
+            predecessor.addSuccessor(successor);
+            // 来自basicBlock的值支配basicBlock，也支配其前驱
+            for (DoublyLinkedList.Node<IRInstruction<?>> instructionNode : successor.instructions()) {
+                if (instructionNode.value() instanceof PHINode phiNode) {
+                    phiNode.addIncoming(phiNode.getIncomingValueForBlock(basicBlock), predecessor);
+                } else {
+                    break;
+                }
+            }
+            if (branchInst.isConditional() && branchInst.getTrueSuccessor() == branchInst.getFalseSuccessor()) {
+                branchInst.eliminate();
+                new BranchInst(successor, predecessor);
+            }
+            changed = true;
+        }
+        if (basicBlock.predecessors().isEmpty()) {
+            basicBlock.instructions().tail().value().eliminate();
+            basicBlock.removeSuccessor(successor);
+            successor.removePhiIncoming(basicBlock);
+            this.removedBlocks[basicBlock.number()] = true;
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,98 @@
+package util;
+
+import IR.IRValue;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+// 以IRValue的编号（见IRFunction.renumber()）为下标的映射，查找与插入不需要计算哈希
+// 没有编号或编号已经过期（被其他Value占用）的Key放入overflow，结果仍然正确，只是退化为哈希
+public class DenseMap<K extends IRValue<?>, V> {
+    private Object[] keys;
+    private Object[] values;
+    private final IdentityHashMap<K, V> overflow;
+    private int size;
+
+    public DenseMap() {
+        this(16);
+    }
+
+    public DenseMap(int capacity) {
+        this.keys = new Object[Math.max(capacity, 1)];
+        this.values = new Object[Math.max(capacity, 1)];
+        this.overflow = new IdentityHashMap<>();
+        this.size = 0;
+    }
+
+    // 复制一个映射，只复制数组，不复制Key和Value
+    public DenseMap(DenseMap<K, V> other) {
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.overflow = new IdentityHashMap<>(other.overflow);
+        this.size = other.size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        int number = key.number();
+        if (number >= 0 && number < this.keys.length && this.keys[number] == key) {
+            // CAST put()保证数组中的类型
+            return (V) this.values[number];
+        } else {
+            return this.overflow.isEmpty() ? null : this.overflow.get(key);
+        }
+    }
+
+    public boolean containsKey(K key) {
+        int number = key.number();
+        if (number >= 0 && number < this.keys.length && this.keys[number] == key) {
+            return true;
+        } else {
+            return !this.overflow.isEmpty() && this.overflow.containsKey(key);
+        }
+    }
+
+    public void put(K key, V value) {
+        int number = key.number();
+        if (number < 0) {
+            this.putOverflow(key, value);
+            return;
+        }
+        if (number >= this.keys.length) {
+            int newLength = Math.max(number + 1, this.keys.length * 2);
+            this.keys = Arrays.copyOf(this.keys, newLength);
+            this.values = Arrays.copyOf(this.values, newLength);
+        }
+        if (this.keys[number] == null) {
+            this.keys[number] = key;
+            this.values[number] = value;
+            this.size++;
+        } else if (this.keys[number] == key) {
+            this.values[number] = value;
+        } else {
+            this.putOverflow(key, value);
+        }
+    }
+
+    private void putOverflow(K key, V value) {
+        if (!this.overflow.containsKey(key)) {
+            this.size++;
+        }
+        this.overflow.put(key, value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, null);
+        Arrays.fill(this.values, null);
+        this.overflow.clear();
+        this.size = 0;
+    }
+}
@@ -0,0 +1,109 @@
+package util;
+
+import IR.IRValue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// 以IRValue的编号（见IRFunction.renumber()）为下标的集合，用BitSet记录成员
+// 按编号的顺序迭代，编号由程序顺序决定，因此迭代顺序是确定的
+// 没有编号或编号已经过期的Value放入overflow，迭代时排在有编号的Value之后
+public class DenseSet<K extends IRValue<?>> implements Iterable<K> {
+    private final BitSet bits;
+    private Object[] keys;
+    private final Set<K> overflow;
+
+    public DenseSet() {
+        this(16);
+    }
+
+    public DenseSet(int capacity) {
+        this.bits = new BitSet(capacity);
+        this.keys = new Object[Math.max(capacity, 1)];
+        this.overflow = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    public boolean contains(K key) {
+        int number = key.number();
+        if (number >= 0 && number < this.keys.length && this.keys[number] == key) {
+            return this.bits.get(number);
+        } else {
+            return !this.overflow.isEmpty() && this.overflow.contains(key);
+        }
+    }
+
+    // 返回是否是新加入的
+    public boolean add(K key) {
+        int number = key.number();
+        if (number < 0) {
+            return this.overflow.add(key);
+        }
+        if (number >= this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, Math.max(number + 1, this.keys.length * 2));
+        }
+        if (this.keys[number] == null || this.keys[number] == key) {
+            this.keys[number] = key;
+            boolean absent = !this.bits.get(number);
+            this.bits.set(number);
+            return absent;
+        } else {
+            return this.overflow.add(key);
+        }
+    }
+
+    public void remove(K key) {
+        int number = key.number();
+        if (number >= 0 && number < this.keys.length && this.keys[number] == key) {
+            this.bits.clear(number);
+        } else {
+            this.overflow.remove(key);
+        }
+    }
+
+    public int size() {
+        return this.bits.cardinality() + this.overflow.size();
+    }
+
+    public boolean isEmpty() {
+        return this.bits.isEmpty() && this.overflow.isEmpty();
+    }
+
+    public void clear() {
+        this.bits.clear();
+        Arrays.fill(this.keys, null);
+        this.overflow.clear();
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        Iterator<K> overflowIterator = this.overflow.iterator();
+        return new Iterator<>() {
+            private int nextNumber = DenseSet.this.bits.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return this.nextNumber >= 0 || overflowIterator.hasNext();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public K next() {
+                if (this.nextNumber >= 0) {
+                    // CAST add()保证数组中的类型
+                    K key = (K) DenseSet.this.keys[this.nextNumber];
+                    this.nextNumber = DenseSet.this.bits.nextSetBit(this.nextNumber + 1);
+                    return key;
+                } else if (overflowIterator.hasNext()) {
+                    return overflowIterator.next();
+                } else {
+                    throw new NoSuchElementException();
+                }
+            }
+        };
+    }
+}
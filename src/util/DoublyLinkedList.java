@@ -40,6 +40,8 @@ public class DoublyLinkedList<T> implements Iterable<DoublyLinkedList.Node<T>> {
             this.tail = node;
             this.nodeNumber++;
             node.parent = this;
+            node.pred = null;
+            node.next = null;
         } else {
             node.insertBefore(this.head);
         }
@@ -51,6 +53,8 @@ public class DoublyLinkedList<T> implements Iterable<DoublyLinkedList.Node<T>> {
             this.tail = node;
             this.nodeNumber++;
             node.parent = this;
+            node.pred = null;
+            node.next = null;
         } else {
             node.insertAfter(this.tail);
         }
@@ -191,6 +195,8 @@ public class DoublyLinkedList<T> implements Iterable<DoublyLinkedList.Node<T>> {
             if (this.parent.tail == this) {
                 this.parent.tail = this.pred;
             }
+            // 保留pred与next，边遍历边删除时仍可以移动到相邻节点；清除parent后可以再插入到其他链表中
+            this.parent = null;
         }
     }
 }
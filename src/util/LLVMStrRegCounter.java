@@ -6,17 +6,23 @@ import IR.value.IRFunction;
 import IR.value.IRGlobalVariable;
 import IR.value.constant.IRConstant;
 
-import java.util.HashMap;
-
 public class LLVMStrRegCounter {
-    private final HashMap<IRValue<?>, Integer> llvmRegTable;
-    private final HashMap<IRBasicBlock, Integer> llvmBasicBlockTable;
+    private final DenseMap<IRValue<?>, Integer> llvmRegTable;
+    private final DenseMap<IRBasicBlock, Integer> llvmBasicBlockTable;
     private int count;
     private int basicBlockCount;
 
     public LLVMStrRegCounter() {
-        this.llvmRegTable = new HashMap<>();
-        this.llvmBasicBlockTable = new HashMap<>();
+        this.llvmRegTable = new DenseMap<>();
+        this.llvmBasicBlockTable = new DenseMap<>();
+        this.count = 0;
+        this.basicBlockCount = 0;
+    }
+
+    // 已知函数的编号范围时，预先分配好表的大小
+    public LLVMStrRegCounter(int valueCount, int basicBlockCount) {
+        this.llvmRegTable = new DenseMap<>(valueCount);
+        this.llvmBasicBlockTable = new DenseMap<>(basicBlockCount);
         this.count = 0;
         this.basicBlockCount = 0;
     }
@@ -29,16 +35,18 @@ public class LLVMStrRegCounter {
         } else if (value instanceof IRConstant<?> constant) {
             return constant.llvmStr();
         } else if (value instanceof IRBasicBlock basicBlock) {
-            if (this.llvmBasicBlockTable.containsKey(basicBlock)) {
-                return "%B" + this.llvmBasicBlockTable.get(basicBlock);
+            Integer basicBlockNumber = this.llvmBasicBlockTable.get(basicBlock);
+            if (basicBlockNumber != null) {
+                return "%B" + basicBlockNumber;
             } else {
                 this.llvmBasicBlockTable.put(basicBlock, this.basicBlockCount);
                 return "%B" + this.basicBlockCount++;
             }
         } else {
             // 由于实际上在后续才输出的内容先申请到了寄存器，故临时加入T跳过LLVM的检测
-            if (this.llvmRegTable.containsKey(value)) {
-                return "%T" + this.llvmRegTable.get(value);
+            Integer regNumber = this.llvmRegTable.get(value);
+            if (regNumber != null) {
+                return "%T" + regNumber;
             } else {
                 // 为Value分配新的编号
                 this.llvmRegTable.put(value, this.count);
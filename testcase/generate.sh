@@ -5,7 +5,7 @@ rm -rf src
 mkdir src
 rm -f src.zip
 
-for (( i=1; i<=6; i=i+1 )); do
+for (( i=1; i<=9; i=i+1 )); do
     # 忽略有意的注释导致的警告
     gcc "sourcecode${i}.c" "libsysy.c" -o "program${i}.out" -Wno-comment
     cp "sourcecode${i}.c" "./src/testfile${i}.txt"
@@ -0,0 +1,25 @@
+#include "libsysy.h"
+
+/*
+    Filename: sourcecode7.c
+    Author: @Ap0stader
+    Date: 2024-12-02
+*/
+
+// 除以常数：除数为负的2的幂次，以及被除数为负且恰好整除
+
+int a[8];
+
+int main() {
+    int n, i, x;
+    n = getint();
+    for (i = 0; i < n; i = i + 1) {
+        a[i] = getint();
+    }
+    for (i = 0; i < n; i = i + 1) {
+        x = a[i];
+        printf("%d %d %d %d\n", x / -4, x / -1024, x % -8, -x / -2);
+        printf("%d %d %d %d\n", x / 7, x / -7, x % 7, x / 100000);
+    }
+    return 0;
+}
@@ -0,0 +1,39 @@
+#include "libsysy.h"
+
+/*
+    Filename: sourcecode8.c
+    Author: @Ap0stader
+    Date: 2024-12-02
+*/
+
+// 跳转线程化：由if-else设置的标志决定的跳转，被线程化的基本块中有存储与调用
+
+int g = 0;
+
+int mark(int v) {
+    g = g + v;
+    return g;
+}
+
+int main() {
+    int n, i, x, r, flag;
+    n = getint();
+    for (i = 0; i < n; i = i + 1) {
+        x = getint();
+        if (x > 10) {
+            flag = 1;
+            x = x - 10;
+        } else {
+            flag = 0;
+            x = x + 1;
+        }
+        g = x * 3;
+        if (flag) {
+            r = mark(x);
+        } else {
+            r = mark(1) + 100;
+        }
+        printf("%d %d\n", r, g);
+    }
+    return 0;
+}
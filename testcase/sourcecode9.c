@@ -0,0 +1,48 @@
+#include "libsysy.h"
+
+/*
+    Filename: sourcecode9.c
+    Author: @Ap0stader
+    Date: 2024-12-02
+*/
+
+// 流式词法分析：语句开头的检查点保留到表达式解析结束，跨多行的长表达式需要扩容环形缓冲区
+
+int a[8] = {3, 1, 4, 1, 5, 9, 2, 6};
+
+int weight(int x, int y) {
+    return x * 2 + y;
+}
+
+int main() {
+    int n, m, s, t, i;
+    n = getint();
+    m = getint();
+    for (i = 0; i < 8; i = i + 1) {
+        if (a[i] % 2 == 0) {
+            a[i] = a[i] / 2 + n;
+        } else {
+            a[i] = a[i] * 3 - m;
+        }
+    }
+    s = a[0] * n + a[1] * m
+        + a[2] * (n - m) + a[3] * (n + m)
+        + a[4] * n * m + a[5] * (n / 2)
+        + a[6] * (m % 3) + a[7] * weight(n, m)
+        + weight(a[0] + a[1], a[2] - a[3])
+        + weight(a[4] * a[5], a[6] + a[7] * n)
+        + (n * n - m * m) / (n + 1)
+        + ((n + m) * (n - m) + a[n % 8] * a[m % 8]) % 97;
+    t = s;
+    a[n % 8] + a[m % 8] * 2 + a[(n + m) % 8] * 3
+        + weight(a[0], a[1]) + weight(a[2], a[3]) + weight(a[4], a[5])
+        + weight(a[6], a[7]) * (n + m) - (n * m) % 7
+        + (a[0] + a[1] + a[2] + a[3] + a[4] + a[5] + a[6] + a[7]) * n
+        + ((n - 1) * (m + 1) + (n + 2) * (m - 2)) / 3;
+    printf("22371000\n");
+    printf("a = %d %d %d %d\n", a[0], a[1], a[6], a[7]);
+    printf("s = %d\n", s);
+    printf("t = %d\n", t);
+    printf("sum = %d\n", s + t * 2 - n * m);
+    return 0;
+}